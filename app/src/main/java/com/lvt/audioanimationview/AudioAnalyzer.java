@@ -0,0 +1,405 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 音频分析
+ * <p>
+ * 在录音线程对每个缓冲只计算一次柱子电平、{@link LevelMeter 电平表}读数、人声标记，
+ * 通过三缓冲交给绘制线程，最新值优先，不论挂了多少个渲染器开销都一样，且不分配内存。
+ * {@link #analyze(byte[], int)} 只能在一个线程调用，{@link #acquireLatest()} 只能在另一个线程调用，
+ * 所以一个分析器只能绑定一个 View，结果监听也只有一个。
+ * <p>
+ * 录音按小块读取时，可用 {@link #setWindowSize(int)} 把最近的样本累积成固定长度的窗口再分析：
+ * 每块都发布结果，延迟由读取周期决定，柱子的稳定程度由窗口长度决定。
+ */
+public final class AudioAnalyzer {
+  private static final int INDEX_MASK = 3;
+  /**
+   * 中间缓冲有未读取的新数据
+   */
+  private static final int FRESH = 4;
+
+  /**
+   * 分析结果监听，在录音线程回调
+   */
+  public interface OnFeaturesListener {
+    void onFeatures(@NonNull AudioAnalyzer analyzer);
+  }
+
+  private final int mBandCount;
+  @NonNull
+  private final AudioFeatures[] mFrames;
+  /**
+   * 中间缓冲的下标 与 {@link #FRESH} 标记
+   */
+  private final AtomicInteger mMiddle = new AtomicInteger(1);
+  private int mBack = 0;
+  private int mFront = 2;
+  @Nullable
+  private SpectrumAnalyzer mSpectrumAnalyzer;
+  @Nullable
+  private volatile OnFeaturesListener mOnFeaturesListener;
+  private long mSequence;
+  /**
+   * 下一个结果的采集时刻，0 表示以分析完成的时刻为准
+   */
+  private long mCaptureTimeNanos;
+  //<editor-fold desc="滑动窗口">
+  private int mWindowSize;
+  @Nullable
+  private short[] mWindowShorts;
+  @Nullable
+  private ShortBuffer mWindowShortBuffer;
+  @Nullable
+  private float[] mWindowFloats;
+  @Nullable
+  private FloatBuffer mWindowFloatBuffer;
+  /**
+   * 窗口中已有的样本数，不足一个窗口时只分析已有的样本
+   */
+  private int mWindowFill;
+  private boolean mWindowFloat;
+  //</editor-fold>
+  @NonNull
+  private final LevelMeter mOwnLevelMeter = new LevelMeter();
+  /**
+   * 读数来源，录音时为录音工具按原采样率测量的电平表，此时不再自己测量
+   */
+  @NonNull
+  private LevelMeter mLevelMeter = mOwnLevelMeter;
+  /**
+   * 人声标记的来源，录音时为录音工具的人声检测
+   */
+  @Nullable
+  private VoiceActivityDetector mVoiceActivityDetector;
+
+  /**
+   * @param bandCount 柱子个数，应与渲染器的柱子个数一致
+   */
+  public AudioAnalyzer(int bandCount) {
+    if (bandCount <= 0) {
+      throw new IllegalArgumentException("bad band count");
+    }
+    mBandCount = bandCount;
+    mFrames = new AudioFeatures[3];
+    for (int i = 0; i < mFrames.length; i++) {
+      mFrames[i] = new AudioFeatures(bandCount);
+    }
+  }
+
+  /**
+   * 设置频谱分析，设置后柱子电平为频带电平，否则为时域分段的 dBFS 电平，需在开始录音前设置
+   *
+   * @param analyzer 频谱分析
+   */
+  public void setSpectrumAnalyzer(@Nullable SpectrumAnalyzer analyzer) {
+    if (analyzer != null && analyzer.getBarCount() != mBandCount) {
+      throw new IllegalArgumentException("bar count mismatch");
+    }
+    mSpectrumAnalyzer = analyzer;
+  }
+
+  /**
+   * 单独使用时的电平表，可设置采样率与表头特性；通过 {@link WavRecorderUtils} 录音时改用录音工具的电平表
+   */
+  @NonNull
+  public LevelMeter getLevelMeter() {
+    return mOwnLevelMeter;
+  }
+
+  /**
+   * 使用外部已测量的电平表，null 恢复自己测量，在录音线程调用
+   */
+  void setSharedLevelMeter(@Nullable LevelMeter meter) {
+    mLevelMeter = meter != null ? meter : mOwnLevelMeter;
+  }
+
+  /**
+   * 使用录音工具的人声检测，结果的人声标记取自这里，null 时不检测，标记为 true，在录音线程调用
+   */
+  void setVoiceActivityDetector(@Nullable VoiceActivityDetector detector) {
+    mVoiceActivityDetector = detector;
+  }
+
+  /**
+   * 设置分析结果监听，只能有一个，换监听前先设为 null
+   *
+   * @param listener 监听
+   * @throws IllegalStateException 已设置了其他监听，例如分析器已绑定到另一个 View
+   */
+  public synchronized void setOnFeaturesListener(@Nullable OnFeaturesListener listener) {
+    if (listener != null && mOnFeaturesListener != null && mOnFeaturesListener != listener) {
+      throw new IllegalStateException("analyzer already has a listener");
+    }
+    mOnFeaturesListener = listener;
+  }
+
+  /**
+   * 设置分析窗口，之后每次 analyze 都分析最近 windowSize 个样本，而不是只分析传入的样本，需在开始录音前设置
+   *
+   * @param windowSize 窗口样本数，0 表示不累积（默认），频谱分析时通常等于 FFT 点数
+   */
+  public void setWindowSize(int windowSize) {
+    if (windowSize < 0) {
+      throw new IllegalArgumentException("bad window size");
+    }
+    mWindowSize = windowSize;
+    mWindowShorts = null;
+    mWindowShortBuffer = null;
+    mWindowFloats = null;
+    mWindowFloatBuffer = null;
+    mWindowFill = 0;
+  }
+
+  /**
+   * 分析窗口的样本数，0 表示不累积
+   */
+  public int getWindowSize() {
+    return mWindowSize;
+  }
+
+  /**
+   * 清空窗口中累积的样本，开始新的录音 或 回看时跳转位置时调用
+   */
+  void clearWindow() {
+    mWindowFill = 0;
+  }
+
+  /**
+   * 设置下一次分析的数据的读取时刻，只对下一次分析有效
+   *
+   * @param captureTimeNanos {@link System#nanoTime()} 时基
+   */
+  void setCaptureTimeNanos(long captureTimeNanos) {
+    mCaptureTimeNanos = captureTimeNanos;
+  }
+
+  /**
+   * 柱子个数
+   */
+  public int getBandCount() {
+    return mBandCount;
+  }
+
+  /**
+   * 分析 16 位小端单声道 pcm 并发布结果，设置了 {@link #setWindowSize(int) 窗口}时同样累积后分析
+   *
+   * @param data pcm 数据
+   * @param length 有效字节数
+   */
+  public void analyze(@NonNull byte[] data, int length) {
+    if (mWindowSize > 0) {
+      analyzeWindow(data, length);
+      return;
+    }
+    final AudioFeatures frame = mFrames[mBack];
+    final float[] bands = frame.mBandLevels;
+    final SpectrumAnalyzer spectrumAnalyzer = mSpectrumAnalyzer;
+    if (spectrumAnalyzer != null) {
+      spectrumAnalyzer.analyze(data, length, bands);
+      frame.mSpectrum = true;
+    } else {
+      final int interval = (length / mBandCount) / 2 * 2;
+      for (int i = 0; i < mBandCount; i++) {
+        bands[i] = LevelMeter.sliceLevel(data, i * interval, interval);
+      }
+      frame.mSpectrum = false;
+    }
+    if (mLevelMeter == mOwnLevelMeter) {
+      mOwnLevelMeter.process(data, length);
+    }
+    publish(frame);
+  }
+
+  /**
+   * 小端 pcm 拼装成样本放入窗口，与 {@link #analyze(ShortBuffer, int)} 共用同一个窗口
+   */
+  private void analyzeWindow(@NonNull byte[] data, int length) {
+    final int sampleCount = length / 2;
+    if (mLevelMeter == mOwnLevelMeter) {
+      mOwnLevelMeter.process(data, length);
+    }
+    if (mWindowShorts == null) {
+      mWindowShorts = new short[mWindowSize];
+      mWindowShortBuffer = ShortBuffer.wrap(mWindowShorts);
+    }
+    prepareWindow(false, sampleCount);
+    final short[] window = mWindowShorts;
+    final int count = Math.min(sampleCount, mWindowSize);
+    final int from = (sampleCount - count) * 2;
+    final int to = mWindowSize - count;
+    for (int i = 0; i < count; i++) {
+      final int index = from + i * 2;
+      window[to + i] = (short) ((data[index] & 0xFF) | (data[index + 1] << 8));
+    }
+    mWindowShortBuffer.position(mWindowSize - mWindowFill);
+    analyzeSamples(mWindowShortBuffer, mWindowFill);
+  }
+
+  /**
+   * 分析单声道 16 位样本并发布结果，样本已是本机字节序，不需要逐字节拼装
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   */
+  public void analyze(@NonNull ShortBuffer samples, int sampleCount) {
+    // 电平表只测量新样本，表头按实际时长计时
+    if (mLevelMeter == mOwnLevelMeter) {
+      mOwnLevelMeter.process(samples, sampleCount);
+    }
+    if (mWindowSize == 0) {
+      analyzeSamples(samples, sampleCount);
+      return;
+    }
+    if (mWindowShorts == null) {
+      mWindowShorts = new short[mWindowSize];
+      mWindowShortBuffer = ShortBuffer.wrap(mWindowShorts);
+    }
+    prepareWindow(false, sampleCount);
+    final short[] window = mWindowShorts;
+    final int count = Math.min(sampleCount, mWindowSize);
+    // 只取最新的样本，放到窗口末尾
+    final int from = samples.position() + sampleCount - count;
+    final int to = mWindowSize - count;
+    for (int i = 0; i < count; i++) {
+      window[to + i] = samples.get(from + i);
+    }
+    mWindowShortBuffer.position(mWindowSize - mWindowFill);
+    analyzeSamples(mWindowShortBuffer, mWindowFill);
+  }
+
+  /**
+   * 分析单声道浮点样本并发布结果，-1~1 为满幅，不经过整型转换
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   */
+  public void analyze(@NonNull FloatBuffer samples, int sampleCount) {
+    if (mLevelMeter == mOwnLevelMeter) {
+      mOwnLevelMeter.process(samples, sampleCount);
+    }
+    if (mWindowSize == 0) {
+      analyzeSamples(samples, sampleCount);
+      return;
+    }
+    if (mWindowFloats == null) {
+      mWindowFloats = new float[mWindowSize];
+      mWindowFloatBuffer = FloatBuffer.wrap(mWindowFloats);
+    }
+    prepareWindow(true, sampleCount);
+    final float[] window = mWindowFloats;
+    final int count = Math.min(sampleCount, mWindowSize);
+    final int from = samples.position() + sampleCount - count;
+    final int to = mWindowSize - count;
+    for (int i = 0; i < count; i++) {
+      window[to + i] = samples.get(from + i);
+    }
+    mWindowFloatBuffer.position(mWindowSize - mWindowFill);
+    analyzeSamples(mWindowFloatBuffer, mWindowFill);
+  }
+
+  /**
+   * 窗口内已有样本前移，给新样本腾出末尾的位置
+   *
+   * @param isFloat 新样本是否为浮点，与之前不同时丢弃已有样本
+   * @param sampleCount 新样本数
+   */
+  private void prepareWindow(boolean isFloat, int sampleCount) {
+    if (isFloat != mWindowFloat) {
+      mWindowFloat = isFloat;
+      mWindowFill = 0;
+    }
+    final int count = Math.min(sampleCount, mWindowSize);
+    final int keep = Math.min(mWindowFill, mWindowSize - count);
+    if (keep > 0) {
+      final Object window = isFloat ? mWindowFloats : mWindowShorts;
+      System.arraycopy(window, mWindowSize - keep, window, mWindowSize - count - keep, keep);
+    }
+    mWindowFill = keep + count;
+  }
+
+  private void analyzeSamples(@NonNull ShortBuffer samples, int sampleCount) {
+    final AudioFeatures frame = mFrames[mBack];
+    final float[] bands = frame.mBandLevels;
+    final SpectrumAnalyzer spectrumAnalyzer = mSpectrumAnalyzer;
+    if (spectrumAnalyzer != null) {
+      spectrumAnalyzer.analyze(samples, sampleCount, bands);
+      frame.mSpectrum = true;
+    } else {
+      final int start = samples.position();
+      final int interval = sampleCount / mBandCount;
+      for (int i = 0; i < mBandCount; i++) {
+        bands[i] = LevelMeter.sliceLevel(samples, start + i * interval, interval);
+      }
+      frame.mSpectrum = false;
+    }
+    publish(frame);
+  }
+
+  private void analyzeSamples(@NonNull FloatBuffer samples, int sampleCount) {
+    final AudioFeatures frame = mFrames[mBack];
+    final float[] bands = frame.mBandLevels;
+    final SpectrumAnalyzer spectrumAnalyzer = mSpectrumAnalyzer;
+    if (spectrumAnalyzer != null) {
+      spectrumAnalyzer.analyze(samples, sampleCount, bands);
+      frame.mSpectrum = true;
+    } else {
+      final int start = samples.position();
+      final int interval = sampleCount / mBandCount;
+      for (int i = 0; i < mBandCount; i++) {
+        bands[i] = LevelMeter.sliceLevel(samples, start + i * interval, interval);
+      }
+      frame.mSpectrum = false;
+    }
+    publish(frame);
+  }
+
+  /**
+   * 填充电平表读数，与中间缓冲交换 并 通知监听
+   */
+  private void publish(@NonNull AudioFeatures frame) {
+    final LevelMeter meter = mLevelMeter;
+    frame.mRms = meter.getRms();
+    frame.mPeak = Math.min(meter.getPeak(), 1f);
+    frame.mRmsDb = meter.getRmsDb();
+    frame.mPeakDb = meter.getPeakDb();
+    frame.mVuDb = meter.getVuDb();
+    frame.mPpmDb = meter.getPpmDb();
+    frame.mClipping = meter.getClippedSamples() > 0;
+    final VoiceActivityDetector detector = mVoiceActivityDetector;
+    frame.mVoice = detector == null || detector.isVoice();
+    frame.mSequence = mSequence++;
+    frame.mCaptureTimeNanos = mCaptureTimeNanos != 0 ? mCaptureTimeNanos : System.nanoTime();
+    mCaptureTimeNanos = 0;
+    // 与中间缓冲交换 并 标记有新数据
+    final int previous = mMiddle.getAndSet(mBack | FRESH);
+    if ((previous & FRESH) != 0) {
+      // 上一个结果还没被绘制线程取走
+      PipelineMetrics.getInstance().mOverwritten.incrementAndGet();
+    }
+    mBack = previous & INDEX_MASK;
+    final OnFeaturesListener listener = mOnFeaturesListener;
+    if (listener != null) {
+      listener.onFeatures(this);
+    }
+  }
+
+  /**
+   * 取最新的分析结果，没有新结果时返回上一次的结果，在绘制线程调用
+   *
+   * @return 分析结果，在下次调用前有效
+   */
+  @NonNull
+  public AudioFeatures acquireLatest() {
+    if ((mMiddle.get() & FRESH) != 0) {
+      mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+    }
+    return mFrames[mFront];
+  }
+}
@@ -0,0 +1,395 @@
+package com.lvt.audioanimationview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在独立渲染线程绘制的 {@link AudioAnimationView}，主线程繁忙时动画不受影响
+ * <p>
+ * 渲染线程随 Surface 创建而启动、销毁而停止，只在有新数据时按 vsync 绘制一帧，并统计每帧耗时。
+ */
+public class AudioAnimationSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+    private static final String TAG = "AudioAnimationSurfaceView";
+
+    // 渲染器数组写时复制，渲染线程遍历时不需要加锁也不分配迭代器
+    private final RendererList mRenderers = new RendererList();
+    private volatile AudioAnalyzer mAudioAnalyzer;
+    private final AudioAnalyzer.OnFeaturesListener mOnFeaturesListener = new AudioAnalyzer.OnFeaturesListener() {
+        @Override
+        public void onFeatures(AudioAnalyzer analyzer) {
+            requestRender();
+        }
+    };
+    // 任意线程写入的最新数据的副本，渲染线程取走
+    private final PendingBytes mPendingBytes = new PendingBytes();
+    private byte[] mFFTBytes;
+    private HandlerThread mRenderThread;
+    private volatile Handler mRenderHandler;
+    // 以下只在渲染线程访问
+    private Choreographer mChoreographer;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private final StaticBackgroundCache mBackgroundCache = new StaticBackgroundCache();
+    // 已画出的分析结果序号 与 它的采集时刻，每个结果只记录一次延迟
+    private long mDrawnSequence = -1;
+    private long mPendingCaptureNanos;
+
+    // 是否已预约下一个 vsync 的绘制
+    private final AtomicBoolean mRenderScheduled = new AtomicBoolean();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mFrameCount = new AtomicLong();
+    private final AtomicLong mTotalFrameNanos = new AtomicLong();
+    private volatile long mLastFrameNanos;
+    private volatile long mMaxFrameNanos;
+
+    private final Runnable mScheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            if (mChoreographer == null) {
+                mChoreographer = Choreographer.getInstance();
+            }
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+    };
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mRenderScheduled.set(false);
+            drawFrame(frameTimeNanos);
+        }
+    };
+
+    public AudioAnimationSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    public AudioAnimationSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public AudioAnimationSurfaceView(Context context) {
+        super(context);
+        init();
+    }
+
+    private void init() {
+        setZOrderOnTop(true);
+        getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        getHolder().addCallback(this);
+    }
+
+    //<editor-fold desc="渲染器">
+
+    /**
+     * 加到最后，画在已有渲染器上面，已添加的忽略，可在任意线程调用
+     */
+    public void addRenderer(Renderer renderer) {
+        if (renderer == null) {
+            return;
+        }
+        synchronized (mRenderers) {
+            addRenderer(mRenderers.size(), renderer);
+        }
+    }
+
+    /**
+     * 插入到指定位置，下标小的先画，已添加的忽略
+     */
+    public void addRenderer(int index, Renderer renderer) {
+        if (renderer != null && mRenderers.add(index, renderer)) {
+            requestRender();
+        }
+    }
+
+    public void removeRenderer(Renderer renderer) {
+        if (mRenderers.remove(renderer)) {
+            requestRender();
+        }
+    }
+
+    public void clearRenderers() {
+        mRenderers.clear();
+        requestRender();
+    }
+
+    public Renderer getRenderer(int index) {
+        return mRenderers.get(index);
+    }
+
+    public int getRendererCount() {
+        return mRenderers.size();
+    }
+
+    public int indexOfRenderer(Renderer renderer) {
+        return mRenderers.indexOf(renderer);
+    }
+
+    /**
+     * 开启或关闭某个渲染器并重绘，关闭的渲染器不绘制也不推进动画
+     */
+    public void setRendererEnabled(int index, boolean enabled) {
+        mRenderers.get(index).setEnabled(enabled);
+        requestRender();
+    }
+    //</editor-fold>
+
+    /**
+     * 使用录音线程的分析结果绘制，优先于原始 pcm 数据。
+     * 一个分析器只能绑定一个 View，绑定到另一个 View 前先在原来的 View 上设为 null
+     *
+     * @throws IllegalStateException 分析器已绑定到另一个 View，此时本 View 不变
+     */
+    public void setAudioAnalyzer(AudioAnalyzer analyzer) {
+        if (analyzer == mAudioAnalyzer) {
+            return;
+        }
+        if (analyzer != null) {
+            analyzer.setOnFeaturesListener(mOnFeaturesListener);
+        }
+        if (mAudioAnalyzer != null) {
+            mAudioAnalyzer.setOnFeaturesListener(null);
+        }
+        mAudioAnalyzer = analyzer;
+        requestRender();
+    }
+
+    /**
+     * 设置要绘制的数据，可在任意线程调用，只保留最新的一份，null 时清空回到空闲背景
+     * <p>
+     * 数据在调用时复制，返回后调用方可以继续复用 bytes
+     */
+    public void setmFFTBytes(byte[] bytes) {
+        if (mPendingBytes.offer(bytes)) {
+            mDroppedFrames.incrementAndGet();
+        }
+        requestRender();
+    }
+
+    /**
+     * 预约在渲染线程的下一个 vsync 绘制一帧，可在任意线程调用
+     */
+    public void requestRender() {
+        Handler handler = mRenderHandler;
+        if (handler != null && mRenderScheduled.compareAndSet(false, true)) {
+            handler.post(mScheduleFrame);
+        }
+    }
+
+    //<editor-fold desc="帧耗时统计">
+
+    /**
+     * 已绘制的帧数
+     */
+    public long getFrameCount() {
+        return mFrameCount.get();
+    }
+
+    /**
+     * 平均每帧绘制耗时，纳秒
+     */
+    public long getAverageFrameTimeNanos() {
+        long count = mFrameCount.get();
+        return count == 0 ? 0 : mTotalFrameNanos.get() / count;
+    }
+
+    /**
+     * 最近一帧绘制耗时，纳秒
+     */
+    public long getLastFrameTimeNanos() {
+        return mLastFrameNanos;
+    }
+
+    /**
+     * 最大单帧绘制耗时，纳秒
+     */
+    public long getMaxFrameTimeNanos() {
+        return mMaxFrameNanos;
+    }
+
+    /**
+     * 数据到达后还没绘制就被更新的数据覆盖的次数
+     */
+    public long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetFrameStats() {
+        mFrameCount.set(0);
+        mTotalFrameNanos.set(0);
+        mLastFrameNanos = 0;
+        mMaxFrameNanos = 0;
+        mDroppedFrames.set(0);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Surface 生命周期">
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        BitmapPool.attach(getContext());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // Surface 在这里销毁，背景缓存先归还，池再延迟清空
+        super.onDetachedFromWindow();
+        BitmapPool.detach();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        HandlerThread thread = new HandlerThread(TAG) {
+            @Override
+            protected void onLooperPrepared() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+            }
+        };
+        thread.start();
+        mRenderThread = thread;
+        mRenderHandler = new Handler(thread.getLooper());
+        mRenderScheduled.set(false);
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, final int width, final int height) {
+        Handler handler = mRenderHandler;
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurfaceWidth = width;
+                mSurfaceHeight = height;
+                mBackgroundCache.release();
+            }
+        });
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        final HandlerThread thread = mRenderThread;
+        if (thread == null) {
+            return;
+        }
+        final Handler handler = mRenderHandler;
+        mRenderHandler = null;
+        mRenderThread = null;
+        // 在渲染线程处理完已有消息、移除 vsync 回调后退出，等待结束，保证返回后不再访问 Surface
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mChoreographer != null) {
+                    mChoreographer.removeFrameCallback(mFrameCallback);
+                    mChoreographer = null;
+                }
+                mBackgroundCache.release();
+                thread.quit();
+            }
+        });
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mRenderScheduled.set(false);
+    }
+    //</editor-fold>
+
+    /**
+     * 在渲染线程绘制一帧，渲染器的动画还没结束时预约下一帧
+     *
+     * @param frameTimeNanos vsync 时间
+     */
+    private void drawFrame(long frameTimeNanos) {
+        final int width = mSurfaceWidth;
+        final int height = mSurfaceHeight;
+        if (width == 0 || height == 0) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final SurfaceHolder holder = getHolder();
+        final Canvas canvas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? holder.lockHardwareCanvas() : holder.lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        try {
+            canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+            final Renderer[] renderers = mRenderers.toArray();
+            for (Renderer r : renderers) {
+                if (r.isEnabled()) {
+                    r.onFrame(frameTimeNanos);
+                }
+            }
+            final AudioAnalyzer analyzer = mAudioAnalyzer;
+            if (analyzer != null) {
+                AudioFeatures features = analyzer.acquireLatest();
+                if (!features.hasData()) {
+                    mBackgroundCache.drawIdle(canvas, mRenderers, width, height);
+                } else {
+                    if (features.getSequence() != mDrawnSequence) {
+                        mDrawnSequence = features.getSequence();
+                        mPendingCaptureNanos = features.getCaptureTimeNanos();
+                    }
+                    for (Renderer r : renderers) {
+                        if (r.isEnabled()) {
+                            r.render(canvas, features, width, height);
+                        }
+                    }
+                }
+            } else {
+                mFFTBytes = mPendingBytes.take(mFFTBytes);
+                if (mFFTBytes == null) {
+                    mBackgroundCache.drawIdle(canvas, mRenderers, width, height);
+                } else {
+                    for (Renderer r : renderers) {
+                        if (r.isEnabled()) {
+                            r.render(canvas, mFFTBytes, width, height);
+                        }
+                    }
+                }
+            }
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        final long end = System.nanoTime();
+        final long frameNanos = end - start;
+        final PipelineMetrics metrics = PipelineMetrics.getInstance();
+        metrics.mFrames.incrementAndGet();
+        metrics.mDrawNanos.record(frameNanos);
+        if (mPendingCaptureNanos != 0) {
+            metrics.mLatencyNanos.record(end - mPendingCaptureNanos);
+            mPendingCaptureNanos = 0;
+        }
+        mLastFrameNanos = frameNanos;
+        if (frameNanos > mMaxFrameNanos) {
+            mMaxFrameNanos = frameNanos;
+        }
+        mTotalFrameNanos.addAndGet(frameNanos);
+        mFrameCount.incrementAndGet();
+        if (mRenderers.isAnimating()) {
+            requestRender();
+        }
+    }
+}
@@ -1,26 +1,95 @@
 package com.lvt.audioanimationview;
 
-import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff.Mode;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AudioAnimationView extends View {
     private static final String TAG = "AudioAnimationView";
+    // 正在画的数据，数组来自 mPendingBytes，不持有调用方或环形缓冲区的数组
     private byte[] mFFTBytes;
+    private PcmRingBuffer mRingBuffer;
+    private final PcmRingBuffer.OnPublishListener mOnPublishListener = new PcmRingBuffer.OnPublishListener() {
+        @Override
+        public void onPublish(PcmRingBuffer ringBuffer) {
+            scheduleRedraw();
+        }
+    };
+    private AudioAnalyzer mAudioAnalyzer;
+    private final AudioAnalyzer.OnFeaturesListener mOnFeaturesListener = new AudioAnalyzer.OnFeaturesListener() {
+        @Override
+        public void onFeatures(AudioAnalyzer analyzer) {
+            scheduleRedraw();
+        }
+    };
+    // 任意线程写入的最新数据的副本，绘制时取走，未绘制就被覆盖的计为丢帧
+    private final PendingBytes mPendingBytes = new PendingBytes();
+    // 是否已预约下一个 vsync 的重绘，保证每帧最多一次
+    private final AtomicBoolean mRedrawScheduled = new AtomicBoolean();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
     private Rect mRect = new Rect();
-    private Set<Renderer> mRenderers;
+    // 增量绘制时本帧的重绘区域
+    private final Rect mDirty = new Rect();
+    // 离屏层是否已有完整的上一帧内容
+    private boolean mLayerValid;
+    // 是否使用离屏层，关闭后没有渲染器依赖上一帧时直接画到 onDraw 的画布上
+    private boolean mOffscreenLayerEnabled = true;
+    // 本帧在动画回调里更新离屏层的耗时，在 onDraw 里与贴图耗时合并记录
+    private long mLayerNanos;
+    // 已画出的数据序号 与 它的采集时刻，每份数据只记录一次延迟
+    private long mDrawnSequence = -1;
+    private long mPendingCaptureNanos;
+    // 主线程的 Choreographer，可在任意线程预约回调
+    private Choreographer mChoreographer;
+    private boolean mAttached;
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mRedrawScheduled.set(false);
+            if (!mAttached || getWidth() == 0 || getHeight() == 0) {
+                return;
+            }
+            // 动画按 vsync 时间推进，不受回调执行早晚的影响
+            for (Renderer r : mRenderers.toArray()) {
+                if (r.isEnabled()) {
+                    r.onFrame(frameTimeNanos);
+                }
+            }
+            if (!useOffscreenLayer()) {
+                invalidate();
+                return;
+            }
+            final long start = System.nanoTime();
+            Rect dirty = updateLayer();
+            mLayerNanos += System.nanoTime() - start;
+            if (dirty == null) {
+                invalidate();
+            } else if (!dirty.isEmpty()) {
+                invalidate(dirty);
+            } else {
+                // 画面没有变化，不会调用 onDraw，新数据在这里就算画出
+                mLayerNanos = 0;
+                recordLatency(System.nanoTime());
+            }
+            scheduleIfAnimating();
+        }
+    };
+    private final RendererList mRenderers = new RendererList();
+    // 没有数据时贴的静态背景
+    private final StaticBackgroundCache mBackgroundCache = new StaticBackgroundCache();
+    // 本帧没有数据，onDraw 直接贴静态背景，不经过离屏层
+    private boolean mIdle;
     private Paint mFadePaint = new Paint();
     Bitmap mCanvasBitmap;
     Canvas mCanvas;
@@ -42,18 +111,148 @@ public class AudioAnimationView extends View {
 
     private void init() {
         mFFTBytes = null;
+        mChoreographer = Choreographer.getInstance();
         mFadePaint.setXfermode(new PorterDuffXfermode(Mode.CLEAR));
-        mRenderers = new HashSet<Renderer>();
     }
 
+    //<editor-fold desc="渲染器">
+
+    /**
+     * 加到最后，画在已有渲染器上面，已添加的忽略
+     */
     public void addRenderer(Renderer renderer) {
-        if (renderer != null) {
-            mRenderers.add(renderer);
+        addRenderer(mRenderers.size(), renderer);
+    }
+
+    /**
+     * 插入到指定位置，下标小的先画，已添加的忽略
+     */
+    public void addRenderer(int index, Renderer renderer) {
+        if (renderer != null && mRenderers.add(index, renderer)) {
+            onRenderersChanged();
+        }
+    }
+
+    public void removeRenderer(Renderer renderer) {
+        if (mRenderers.remove(renderer)) {
+            onRenderersChanged();
         }
     }
 
     public void clearRenderers() {
         mRenderers.clear();
+        onRenderersChanged();
+    }
+
+    public Renderer getRenderer(int index) {
+        return mRenderers.get(index);
+    }
+
+    public int getRendererCount() {
+        return mRenderers.size();
+    }
+
+    public int indexOfRenderer(Renderer renderer) {
+        return mRenderers.indexOf(renderer);
+    }
+
+    /**
+     * 开启或关闭某个渲染器并重绘，关闭的渲染器不绘制也不推进动画
+     */
+    public void setRendererEnabled(int index, boolean enabled) {
+        mRenderers.get(index).setEnabled(enabled);
+        onRenderersChanged();
+    }
+
+    private void onRenderersChanged() {
+        mLayerValid = false;
+        if (!useOffscreenLayer()) {
+            releaseLayer();
+        }
+        invalidate();
+    }
+    //</editor-fold>
+
+    /**
+     * 从环形缓冲取数据绘制，每帧只取最新的数据块并拷贝到自有数组后立即释放
+     */
+    public void setRingBuffer(PcmRingBuffer ringBuffer) {
+        if (mRingBuffer != null) {
+            mRingBuffer.setOnPublishListener(null);
+        }
+        mRingBuffer = ringBuffer;
+        if (ringBuffer != null) {
+            ringBuffer.setOnPublishListener(mOnPublishListener);
+        }
+    }
+
+    /**
+     * 使用录音线程的分析结果绘制，每个缓冲只分析一次，所有渲染器共用，优先于原始 pcm 数据。
+     * 一个分析器只能绑定一个 View，绑定到另一个 View 前先在原来的 View 上设为 null
+     *
+     * @throws IllegalStateException 分析器已绑定到另一个 View，此时本 View 不变
+     */
+    public void setAudioAnalyzer(AudioAnalyzer analyzer) {
+        if (analyzer == mAudioAnalyzer) {
+            return;
+        }
+        if (analyzer != null) {
+            analyzer.setOnFeaturesListener(mOnFeaturesListener);
+        }
+        if (mAudioAnalyzer != null) {
+            mAudioAnalyzer.setOnFeaturesListener(null);
+        }
+        mAudioAnalyzer = analyzer;
+    }
+
+    /**
+     * 是否使用离屏层，默认开启以支持增量绘制。
+     * 关闭后若没有渲染器 {@link Renderer#needsPersistentLayer() 依赖上一帧}，每帧直接画到硬件加速画布上，省去整屏位图的内存与拷贝
+     */
+    public void setOffscreenLayerEnabled(boolean enabled) {
+        if (mOffscreenLayerEnabled == enabled) {
+            return;
+        }
+        mOffscreenLayerEnabled = enabled;
+        mLayerValid = false;
+        if (!useOffscreenLayer()) {
+            releaseLayer();
+        }
+        invalidate();
+    }
+
+    private boolean useOffscreenLayer() {
+        return mOffscreenLayerEnabled || mRenderers.needsPersistentLayer();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 脱离窗口期间预约的重绘不会执行，重新挂载后允许再次预约
+        mRedrawScheduled.set(false);
+        mLayerValid = false;
+        mAttached = true;
+        BitmapPool.attach(getContext());
+        scheduleRedraw();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttached = false;
+        mChoreographer.removeFrameCallback(mFrameCallback);
+        mRedrawScheduled.set(false);
+        releaseLayer();
+        mBackgroundCache.release();
+        BitmapPool.detach();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 旧尺寸的离屏层、背景缓存归还到池中，下次绘制时按新尺寸获取
+        releaseLayer();
+        mBackgroundCache.release();
     }
 
     @Override
@@ -62,34 +261,205 @@ public class AudioAnimationView extends View {
         if (getWidth() == 0 && getHeight() == 0) {
             return;
         }
+        final long start = System.nanoTime();
+        if (!useOffscreenLayer()) {
+            drawFrame(canvas, getWidth(), getHeight());
+            scheduleIfAnimating();
+        } else {
+            // 离屏层还没有内容时（首次绘制、尺寸变化）先画一帧
+            if (!mLayerValid) {
+                updateLayer();
+            }
+            if (mIdle) {
+                mBackgroundCache.drawIdle(canvas, mRenderers, getWidth(), getHeight());
+            } else if (mCanvasBitmap != null) {
+                canvas.drawBitmap(mCanvasBitmap, 0, 0, null);
+            }
+        }
+        recordFrame(start);
+    }
+
+    /**
+     * 记录本帧的绘制耗时 与 新数据从采集到画出的延迟
+     */
+    private void recordFrame(long start) {
+        final long end = System.nanoTime();
+        final PipelineMetrics metrics = PipelineMetrics.getInstance();
+        metrics.mFrames.incrementAndGet();
+        metrics.mDrawNanos.record(end - start + mLayerNanos);
+        mLayerNanos = 0;
+        recordLatency(end);
+    }
+
+    /**
+     * 记录还没记录的数据从采集到画出的延迟
+     */
+    private void recordLatency(long drawnNanos) {
+        if (mPendingCaptureNanos != 0) {
+            PipelineMetrics.getInstance().mLatencyNanos.record(drawnNanos - mPendingCaptureNanos);
+            mPendingCaptureNanos = 0;
+        }
+    }
+
+    /**
+     * 记下本帧要画出的数据，同一份数据只记录一次
+     */
+    private void markDrawn(long sequence, long captureTimeNanos) {
+        if (sequence >= 0 && sequence != mDrawnSequence) {
+            mDrawnSequence = sequence;
+            mPendingCaptureNanos = captureTimeNanos;
+        }
+    }
+
+    /**
+     * 把最新数据画到离屏层，只有一个渲染器时尽量增量绘制，并按重绘区域 invalidate。
+     * 还没有数据时不更新离屏层，由 onDraw 直接贴静态背景
+     *
+     * @return 需要重绘的区域，null 表示整个 View
+     */
+    private Rect updateLayer() {
+        final int width = getWidth();
+        final int height = getHeight();
+        mIdle = isIdle();
+        if (mIdle) {
+            mLayerValid = false;
+            return null;
+        }
         // Create canvas once we're ready to draw
-        mRect.set(0, 0, getWidth(), getHeight());
+        mRect.set(0, 0, width, height);
 
         if (mCanvasBitmap == null) {
-            mCanvasBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Config.ARGB_8888);
+            mCanvasBitmap = BitmapPool.obtain(width, height, Config.ARGB_8888);
+            if (mCanvas == null) {
+                mCanvas = new Canvas(mCanvasBitmap);
+            } else {
+                mCanvas.setBitmap(mCanvasBitmap);
+            }
+            mLayerValid = false;
         }
-        if (mCanvas == null) {
-            mCanvas = new Canvas(mCanvasBitmap);
+        final Renderer single = mRenderers.getSingleEnabled();
+        if (mAudioAnalyzer != null && mLayerValid && single != null) {
+            // 多个渲染器叠加时清除一个的区域会擦掉其他渲染器的内容，只在单个渲染器时增量绘制
+            AudioFeatures features = mAudioAnalyzer.acquireLatest();
+            markDrawn(features.getSequence(), features.getCaptureTimeNanos());
+            mDirty.setEmpty();
+            if (single.renderIncremental(mCanvas, features, width, height, mDirty)) {
+                return mDirty;
+            }
         }
         mCanvas.drawPaint(mFadePaint);
-        for (Renderer r : mRenderers) {
-            if (mFFTBytes != null) {
-                r.render(mCanvas, mFFTBytes, getWidth(), getHeight());
-            } else {
-                r.drawBackground(mCanvas, getWidth(), getHeight());
+        drawFrame(mCanvas, width, height);
+        mLayerValid = true;
+        return null;
+    }
+
+    /**
+     * 是否还没有可画的数据，不取走数据
+     */
+    private boolean isIdle() {
+        if (mAudioAnalyzer != null) {
+            return !mAudioAnalyzer.acquireLatest().hasData();
+        }
+        return mFFTBytes == null && !mPendingBytes.hasPending()
+                && (mRingBuffer == null || mRingBuffer.size() == 0);
+    }
+
+    /**
+     * 取最新数据，让开启的渲染器按顺序完整绘制一帧，没有数据时贴静态背景
+     */
+    private void drawFrame(Canvas canvas, int width, int height) {
+        final Renderer[] renderers = mRenderers.toArray();
+        if (mAudioAnalyzer != null) {
+            AudioFeatures features = mAudioAnalyzer.acquireLatest();
+            if (!features.hasData()) {
+                mBackgroundCache.drawIdle(canvas, mRenderers, width, height);
+                return;
+            }
+            markDrawn(features.getSequence(), features.getCaptureTimeNanos());
+            for (Renderer r : renderers) {
+                if (r.isEnabled()) {
+                    r.render(canvas, features, width, height);
+                }
             }
+            return;
         }
-        canvas.drawBitmap(mCanvasBitmap, new Matrix(), null);
+        mFFTBytes = mPendingBytes.take(mFFTBytes);
+        pollRingBuffer();
+        if (mFFTBytes == null) {
+            mBackgroundCache.drawIdle(canvas, mRenderers, width, height);
+            return;
+        }
+        for (Renderer r : renderers) {
+            if (r.isEnabled()) {
+                r.render(canvas, mFFTBytes, width, height);
+            }
+        }
+    }
+
+    /**
+     * 归还离屏层位图，画布保留以便下次复用
+     */
+    private void releaseLayer() {
+        if (mCanvasBitmap != null) {
+            BitmapPool.release(mCanvasBitmap);
+            mCanvasBitmap = null;
+        }
+        mLayerValid = false;
     }
 
+    private void pollRingBuffer() {
+        if (mRingBuffer == null) {
+            return;
+        }
+        int backlog = mRingBuffer.size();
+        PcmRingBuffer.Block block = mRingBuffer.acquireLatest();
+        if (block == null) {
+            return;
+        }
+        if (backlog > 1) {
+            mDroppedFrames.addAndGet(backlog - 1);
+        }
+        int length = block.getLength();
+        byte[] frame = mPendingBytes.obtain(length);
+        System.arraycopy(block.getData(), 0, frame, 0, length);
+        markDrawn(block.getSequence(), block.getCaptureTimeNanos());
+        mRingBuffer.release(block);
+        mPendingBytes.recycle(mFFTBytes);
+        mFFTBytes = frame;
+    }
+
+    /**
+     * 设置要绘制的数据，可在任意线程调用，只保留最新的一份，null 时清空回到空闲背景，下一个 vsync 时绘制
+     * <p>
+     * 数据在调用时复制，返回后调用方可以继续复用 bytes
+     */
     public void setmFFTBytes(byte[] bytes) {
-        mFFTBytes = bytes;
-        ((Activity) getContext()).runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                invalidate();
-            }
-        });
+        if (mPendingBytes.offer(bytes)) {
+            mDroppedFrames.incrementAndGet();
+        }
+        scheduleRedraw();
+    }
+
+    /**
+     * 数据到达后还没绘制就被更新的数据覆盖的次数
+     */
+    public long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * 渲染器的动画还没结束时，没有新数据也在下一个 vsync 继续绘制
+     */
+    private void scheduleIfAnimating() {
+        if (mRenderers.isAnimating()) {
+            scheduleRedraw();
+        }
+    }
+
+    private void scheduleRedraw() {
+        if (mRedrawScheduled.compareAndSet(false, true)) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
     }
 
 }
\ No newline at end of file
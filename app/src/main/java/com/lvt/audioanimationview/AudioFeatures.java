@@ -0,0 +1,121 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 一个录音缓冲的分析结果，由 {@link AudioAnalyzer} 在录音线程计算，所有渲染器共用
+ * <p>
+ * 对象会被复用，只在取得它的那一帧内有效。
+ */
+public final class AudioFeatures {
+  @NonNull
+  final float[] mBandLevels;
+  boolean mSpectrum;
+  float mRms;
+  float mPeak;
+  float mRmsDb = LevelMeter.MIN_DB;
+  float mPeakDb = LevelMeter.MIN_DB;
+  float mVuDb = LevelMeter.MIN_DB;
+  float mPpmDb = LevelMeter.MIN_DB;
+  boolean mClipping;
+  boolean mVoice;
+  long mSequence = -1;
+  long mCaptureTimeNanos;
+
+  AudioFeatures(int bandCount) {
+    mBandLevels = new float[bandCount];
+  }
+
+  /**
+   * 每个柱子 0~1 的电平，{@link #isSpectrum()} 为 true 时是频带电平，
+   * 否则是时域分段的均方根 dBFS 按 {@link LevelMeter#DEFAULT_RANGE_DB} 换算的值
+   */
+  @NonNull
+  public float[] getBandLevels() {
+    return mBandLevels;
+  }
+
+  /**
+   * 柱子电平是否来自频谱分析
+   */
+  public boolean isSpectrum() {
+    return mSpectrum;
+  }
+
+  /**
+   * 均方根，相对满幅 0~1
+   */
+  public float getRms() {
+    return mRms;
+  }
+
+  /**
+   * 峰值，相对满幅 0~1
+   */
+  public float getPeak() {
+    return mPeak;
+  }
+
+  /**
+   * 均方根，dBFS
+   */
+  public float getRmsDb() {
+    return mRmsDb;
+  }
+
+  /**
+   * 峰值，dBFS
+   */
+  public float getPeakDb() {
+    return mPeakDb;
+  }
+
+  /**
+   * VU 表读数，dBFS，见 {@link LevelMeter#getVuDb()}
+   */
+  public float getVuDb() {
+    return mVuDb;
+  }
+
+  /**
+   * PPM 表读数，dBFS，见 {@link LevelMeter#getPpmDb()}
+   */
+  public float getPpmDb() {
+    return mPpmDb;
+  }
+
+  /**
+   * 该缓冲是否有样本达到满幅
+   */
+  public boolean isClipping() {
+    return mClipping;
+  }
+
+  /**
+   * 是否有人声，取自录音工具的 {@link VoiceActivityDetector}，单独使用分析器时不检测，为 true
+   */
+  public boolean isVoice() {
+    return mVoice;
+  }
+
+  /**
+   * 序号，每个分析过的缓冲递增，-1 表示还没有数据
+   */
+  public long getSequence() {
+    return mSequence;
+  }
+
+  /**
+   * 数据读取返回的时刻，{@link System#nanoTime()} 时基，用于计算采集到绘制的延迟
+   */
+  public long getCaptureTimeNanos() {
+    return mCaptureTimeNanos;
+  }
+
+  /**
+   * 是否已有数据
+   */
+  public boolean hasData() {
+    return mSequence >= 0;
+  }
+}
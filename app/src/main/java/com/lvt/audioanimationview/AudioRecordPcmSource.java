@@ -0,0 +1,161 @@
+package com.lvt.audioanimationview;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 基于 {@link AudioRecord} 的麦克风数据源
+ */
+public final class AudioRecordPcmSource implements PcmSource {
+  @NonNull
+  private final AudioRecord mAudioRecord;
+  private final int mSampleRateInHz;
+  private final int mChannelCount;
+  private final int mBitsPerSample;
+  private final int mEncoding;
+  /**
+   * 浮点编码不能读入字节数组，先读入该缓冲再拷贝
+   */
+  @Nullable
+  private ByteBuffer mFloatBuffer;
+  private final int mReadSize;
+
+  /**
+   * @param audioSource 音频源
+   * @param sampleRateInHz 采样率
+   * @param channelConfig 声道配置
+   * @param audioFormat 编码格式
+   * @param bufferSize AudioRecord 内部缓冲大小，同时作为每次读取的大小
+   */
+  public AudioRecordPcmSource(
+      int audioSource,
+      int sampleRateInHz,
+      int channelConfig,
+      int audioFormat,
+      int bufferSize) {
+    this(audioSource, sampleRateInHz, channelConfig, audioFormat, bufferSize, bufferSize);
+  }
+
+  /**
+   * 内部缓冲 与 每次读取的大小分开设置：内部缓冲大，读取调度不及时也不丢数据；每次读取小，数据到达绘制的延迟低
+   *
+   * @param audioSource 音频源
+   * @param sampleRateInHz 采样率
+   * @param channelConfig 声道配置
+   * @param audioFormat 编码格式
+   * @param bufferSize AudioRecord 内部缓冲大小
+   * @param readSize 建议的每次读取字节数，不超过 bufferSize
+   */
+  public AudioRecordPcmSource(
+      int audioSource,
+      int sampleRateInHz,
+      int channelConfig,
+      int audioFormat,
+      int bufferSize,
+      int readSize) {
+    if (readSize <= 0 || readSize > bufferSize) {
+      throw new IllegalArgumentException("bad read size");
+    }
+    mAudioRecord = new AudioRecord(
+        audioSource,
+        sampleRateInHz,
+        channelConfig,
+        audioFormat,
+        bufferSize
+    );
+    mSampleRateInHz = sampleRateInHz;
+    mChannelCount = mAudioRecord.getChannelCount();
+    switch (audioFormat) {
+      case AudioFormat.ENCODING_PCM_8BIT:
+        mEncoding = ENCODING_PCM_8BIT;
+        mBitsPerSample = 8;
+        break;
+      case AudioFormat.ENCODING_PCM_FLOAT:
+        mEncoding = ENCODING_PCM_FLOAT;
+        mBitsPerSample = 32;
+        break;
+      default:
+        mEncoding = ENCODING_PCM_16BIT;
+        mBitsPerSample = 16;
+        break;
+    }
+    mReadSize = readSize;
+  }
+
+  @Override
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  @Override
+  public int getChannelCount() {
+    return mChannelCount;
+  }
+
+  @Override
+  public int getBitsPerSample() {
+    return mBitsPerSample;
+  }
+
+  @Override
+  public int getEncoding() {
+    return mEncoding;
+  }
+
+  @Override
+  public int getBufferSize() {
+    return mReadSize;
+  }
+
+  @Override
+  public void start() {
+    // 录音
+    mAudioRecord.startRecording();
+    // 检测状态
+    if (mAudioRecord.getState() == AudioRecord.STATE_UNINITIALIZED) {
+      throw new IllegalStateException("audio record is uninitialized");
+    }
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int length) {
+    if (mEncoding == ENCODING_PCM_FLOAT) {
+      if (mFloatBuffer == null || mFloatBuffer.capacity() < length) {
+        mFloatBuffer = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+      }
+      int read = read(mFloatBuffer, length);
+      mFloatBuffer.clear();
+      mFloatBuffer.get(buffer, offset, read);
+      return read;
+    }
+    int read = mAudioRecord.read(buffer, offset, length);
+    // AudioRecord 的错误码按没有数据处理，连续多次由调用方判定为异常
+    return read < 0 ? 0 : read;
+  }
+
+  @Override
+  public int read(@NonNull ByteBuffer buffer, int length) {
+    int read = mAudioRecord.read(buffer, length);
+    return read < 0 ? 0 : read;
+  }
+
+  @Override
+  public void stop() {
+    try {
+      mAudioRecord.stop();
+    } catch (IllegalStateException e) {
+      // do nothing
+    }
+  }
+
+  @Override
+  public void release() {
+    mAudioRecord.release();
+  }
+}
@@ -0,0 +1,133 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 柱子电平的 起音 / 释放 平滑
+ * <p>
+ * 分析结果按录音缓冲的频率到达（每秒 10~20 次），绘制按屏幕刷新率进行。
+ * 每帧按距上一帧的实际时间让当前值向目标值指数逼近：上升用起音时间常数，下降用释放时间常数，
+ * 与帧率无关，60Hz 与 120Hz 下的动画轨迹相同。状态都在基本类型数组中，每帧不分配内存。非线程安全。
+ */
+public final class BarSmoother {
+  private static final int DEFAULT_ATTACK_MS = 40;
+  private static final int DEFAULT_RELEASE_MS = 250;
+  /**
+   * 与目标值的差小于电平量程的该比例时直接到达目标，避免无限逼近导致一直重绘
+   */
+  private static final float SETTLE_RATIO = 0.005f;
+
+  @NonNull
+  private final float[] mLevels;
+  @NonNull
+  private final float[] mTargets;
+  private float mAttackNanos;
+  private float mReleaseNanos;
+  private long mLastFrameNanos;
+  /**
+   * 到达目标的误差，按当前电平与目标电平的最大值计算，电平可能是 0~1 也可能是分段平均音量
+   */
+  private float mSettleThreshold;
+  private boolean mSettled = true;
+
+  /**
+   * @param barCount 柱子个数
+   */
+  public BarSmoother(int barCount) {
+    if (barCount <= 0) {
+      throw new IllegalArgumentException("bad bar count");
+    }
+    mLevels = new float[barCount];
+    mTargets = new float[barCount];
+    setBallistics(DEFAULT_ATTACK_MS, DEFAULT_RELEASE_MS);
+  }
+
+  /**
+   * 设置时间常数，为 0 时立即到达，默认起音 40ms、释放 250ms
+   *
+   * @param attackMs 上升的时间常数，毫秒
+   * @param releaseMs 下降的时间常数，毫秒
+   */
+  public void setBallistics(int attackMs, int releaseMs) {
+    if (attackMs < 0 || releaseMs < 0) {
+      throw new IllegalArgumentException("bad ballistics");
+    }
+    mAttackNanos = attackMs * 1000000f;
+    mReleaseNanos = releaseMs * 1000000f;
+  }
+
+  /**
+   * 设置新的目标电平，多出的柱子忽略，不足的柱子目标为 0
+   *
+   * @param levels 电平
+   */
+  public void setTarget(@NonNull float[] levels) {
+    final int count = Math.min(levels.length, mTargets.length);
+    System.arraycopy(levels, 0, mTargets, 0, count);
+    for (int i = count; i < mTargets.length; i++) {
+      mTargets[i] = 0;
+    }
+    float scale = 0;
+    for (int i = 0; i < mTargets.length; i++) {
+      scale = Math.max(scale, Math.max(Math.abs(mTargets[i]), Math.abs(mLevels[i])));
+    }
+    mSettleThreshold = Math.max(scale, Float.MIN_NORMAL) * SETTLE_RATIO;
+    mSettled = false;
+  }
+
+  /**
+   * 前进到某一帧，第一次调用只记录时间
+   *
+   * @param frameTimeNanos 帧时间，{@link System#nanoTime()} 时基
+   */
+  public void advance(long frameTimeNanos) {
+    final long last = mLastFrameNanos;
+    mLastFrameNanos = frameTimeNanos;
+    if (mSettled || last == 0 || frameTimeNanos <= last) {
+      return;
+    }
+    final float elapsed = frameTimeNanos - last;
+    final float attack = mAttackNanos == 0 ? 1 : 1 - (float) Math.exp(-elapsed / mAttackNanos);
+    final float release = mReleaseNanos == 0 ? 1 : 1 - (float) Math.exp(-elapsed / mReleaseNanos);
+    boolean settled = true;
+    for (int i = 0; i < mLevels.length; i++) {
+      final float target = mTargets[i];
+      final float diff = target - mLevels[i];
+      float level = mLevels[i] + diff * (diff > 0 ? attack : release);
+      if (Math.abs(target - level) <= mSettleThreshold) {
+        level = target;
+      } else {
+        settled = false;
+      }
+      mLevels[i] = level;
+    }
+    mSettled = settled;
+  }
+
+  /**
+   * 当前的平滑电平，数组会被复用
+   */
+  @NonNull
+  public float[] getLevels() {
+    return mLevels;
+  }
+
+  /**
+   * 是否都已到达目标，为 false 时需要继续绘制下一帧
+   */
+  public boolean isSettled() {
+    return mSettled;
+  }
+
+  /**
+   * 电平归零，下次 {@link #advance(long)} 重新计时
+   */
+  public void reset() {
+    for (int i = 0; i < mLevels.length; i++) {
+      mLevels[i] = 0;
+      mTargets[i] = 0;
+    }
+    mLastFrameNanos = 0;
+    mSettled = true;
+  }
+}
@@ -0,0 +1,156 @@
+package com.lvt.audioanimationview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 离屏层用的小型位图池，进程内共享
+ * <p>
+ * 旋转屏幕、重新挂载时复用上一个 View 释放的位图，避免反复分配几 MB 的 ARGB_8888 内存。
+ * 使用池的 View 全部脱离窗口一段时间后，或者系统要求释放内存时，回收池中的位图。
+ */
+final class BitmapPool {
+    private static final int MAX_COUNT = 2;
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+    // 最后一个 View 脱离窗口后等待重新挂载的时间，旋转屏幕时新 View 仍可复用
+    private static final long CLEAR_DELAY_MS = 1000;
+    private static final List<Bitmap> sBitmaps = new ArrayList<>(MAX_COUNT);
+    private static int sUserCount;
+    private static Handler sHandler;
+    private static boolean sCallbacksRegistered;
+    private static final Runnable sClearRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (BitmapPool.class) {
+                if (sUserCount == 0) {
+                    clear();
+                }
+            }
+        }
+    };
+    private static final ComponentCallbacks2 sTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            clear();
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    private BitmapPool() {
+    }
+
+    /**
+     * View 挂载到窗口时调用，与 {@link #detach()} 成对
+     */
+    static synchronized void attach(Context context) {
+        sUserCount++;
+        if (sHandler != null) {
+            sHandler.removeCallbacks(sClearRunnable);
+        }
+        if (!sCallbacksRegistered) {
+            Context app = context.getApplicationContext();
+            (app != null ? app : context).registerComponentCallbacks(sTrimCallbacks);
+            sCallbacksRegistered = true;
+        }
+    }
+
+    /**
+     * View 脱离窗口、归还位图后调用，最后一个 View 脱离后延迟清空
+     */
+    static synchronized void detach() {
+        if (sUserCount == 0 || --sUserCount > 0) {
+            return;
+        }
+        if (sHandler == null) {
+            sHandler = new Handler(Looper.getMainLooper());
+        }
+        sHandler.postDelayed(sClearRunnable, CLEAR_DELAY_MS);
+    }
+
+    /**
+     * 回收池中的位图，已取出的不受影响
+     */
+    static synchronized void clear() {
+        for (Bitmap bitmap : sBitmaps) {
+            bitmap.recycle();
+        }
+        sBitmaps.clear();
+    }
+
+    /**
+     * 取一个指定尺寸的可变位图，内容未定义
+     */
+    static synchronized Bitmap obtain(int width, int height, Bitmap.Config config) {
+        for (int i = 0; i < sBitmaps.size(); i++) {
+            Bitmap bitmap = sBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                sBitmaps.remove(i);
+                return bitmap;
+            }
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            long required = (long) width * height * bytesPerPixel(config);
+            for (int i = 0; i < sBitmaps.size(); i++) {
+                Bitmap bitmap = sBitmaps.get(i);
+                if (bitmap.getAllocationByteCount() >= required) {
+                    sBitmaps.remove(i);
+                    bitmap.reconfigure(width, height, config);
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * 归还位图，池满时直接回收
+     */
+    static synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        long total = byteCount(bitmap);
+        for (Bitmap b : sBitmaps) {
+            total += byteCount(b);
+        }
+        if (sBitmaps.size() >= MAX_COUNT || total > MAX_BYTES || !bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        sBitmaps.add(bitmap);
+    }
+
+    private static long byteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
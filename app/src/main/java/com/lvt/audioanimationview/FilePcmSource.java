@@ -0,0 +1,255 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 文件数据源，回放 WAV 文件或无头部的裸 pcm 文件
+ * <p>
+ * 实时模式按采样率限速，模拟麦克风；非实时模式尽可能快地读取，用于测量管线吞吐。
+ */
+public final class FilePcmSource implements PcmSource {
+  private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+  @NonNull
+  private final File mFile;
+  private final int mSampleRateInHz;
+  private final int mChannelCount;
+  private final int mBitsPerSample;
+  private final int mEncoding;
+  private final int mBufferSize;
+  private final long mDataOffset;
+  private final long mDataLength;
+  @Nullable
+  private final RealtimePacer mPacer;
+  @Nullable
+  private RandomAccessFile mRandomAccessFile;
+  private long mRemaining;
+  private volatile boolean mStopped;
+
+  /**
+   * 回放 WAV 文件
+   *
+   * @param wavFile wav 文件
+   * @param realtime 是否按实时速度产出数据
+   */
+  public FilePcmSource(@NonNull File wavFile, boolean realtime) throws IOException {
+    this(wavFile, DEFAULT_BUFFER_SIZE, realtime);
+  }
+
+  /**
+   * 回放 WAV 文件
+   *
+   * @param wavFile wav 文件
+   * @param bufferSize 每次读取的字节数
+   * @param realtime 是否按实时速度产出数据
+   */
+  public FilePcmSource(@NonNull File wavFile, int bufferSize, boolean realtime) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(wavFile, "r");
+    WavHeader header;
+    try {
+      header = WavHeader.read(file.getChannel());
+    } finally {
+      file.close();
+    }
+    final int encoding = getEncoding(header.getFormatTag(), header.getBitsPerSample());
+    if (encoding < 0) {
+      throw new IOException("unsupported wav format " + header.getFormatTag()
+          + " " + header.getBitsPerSample() + " bits");
+    }
+    mFile = wavFile;
+    mSampleRateInHz = header.getSampleRateInHz();
+    mChannelCount = header.getChannelCount();
+    mBitsPerSample = header.getBitsPerSample();
+    mEncoding = encoding;
+    mBufferSize = alignToFrame(bufferSize);
+    mDataOffset = header.getDataOffset();
+    mDataLength = header.getDataLength();
+    mPacer = realtime ? new RealtimePacer(mSampleRateInHz) : null;
+  }
+
+  /**
+   * 回放裸 pcm 文件
+   *
+   * @param pcmFile pcm 文件
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数
+   * @param bitsPerSample 采样位数，8、16 为整型，32 为浮点
+   * @param bufferSize 每次读取的字节数
+   * @param realtime 是否按实时速度产出数据
+   */
+  public FilePcmSource(
+      @NonNull File pcmFile,
+      int sampleRateInHz,
+      int channelCount,
+      int bitsPerSample,
+      int bufferSize,
+      boolean realtime) {
+    final int encoding = getEncoding(
+        bitsPerSample == 32 ? WavHeader.FORMAT_IEEE_FLOAT : WavHeader.FORMAT_PCM, bitsPerSample);
+    if (sampleRateInHz <= 0 || channelCount <= 0 || encoding < 0) {
+      throw new IllegalArgumentException("bad pcm format");
+    }
+    mFile = pcmFile;
+    mSampleRateInHz = sampleRateInHz;
+    mChannelCount = channelCount;
+    mBitsPerSample = bitsPerSample;
+    mEncoding = encoding;
+    mBufferSize = alignToFrame(bufferSize);
+    mDataOffset = 0;
+    mDataLength = pcmFile.length();
+    mPacer = realtime ? new RealtimePacer(mSampleRateInHz) : null;
+  }
+
+  /**
+   * @return 样本编码，不支持时返回 -1
+   */
+  static int getEncoding(int formatTag, int bitsPerSample) {
+    if (formatTag == WavHeader.FORMAT_PCM && bitsPerSample == 8) {
+      return ENCODING_PCM_8BIT;
+    }
+    if (formatTag == WavHeader.FORMAT_PCM && bitsPerSample == 16) {
+      return ENCODING_PCM_16BIT;
+    }
+    if (formatTag == WavHeader.FORMAT_IEEE_FLOAT && bitsPerSample == 32) {
+      return ENCODING_PCM_FLOAT;
+    }
+    return -1;
+  }
+
+  private int alignToFrame(int bufferSize) {
+    final int frameSize = getFrameSize();
+    return Math.max(frameSize, bufferSize / frameSize * frameSize);
+  }
+
+  private int getFrameSize() {
+    return Math.max(1, mChannelCount * mBitsPerSample / 8);
+  }
+
+  @Override
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  @Override
+  public int getChannelCount() {
+    return mChannelCount;
+  }
+
+  @Override
+  public int getBitsPerSample() {
+    return mBitsPerSample;
+  }
+
+  @Override
+  public int getEncoding() {
+    return mEncoding;
+  }
+
+  @Override
+  public int getBufferSize() {
+    return mBufferSize;
+  }
+
+  /**
+   * 数据的总帧数
+   */
+  long getFrameCount() {
+    return mDataLength / getFrameSize();
+  }
+
+  @Override
+  public void start() throws IOException {
+    release();
+    RandomAccessFile file = new RandomAccessFile(mFile, "r");
+    file.seek(mDataOffset);
+    mRandomAccessFile = file;
+    mRemaining = mDataLength;
+    mStopped = false;
+    if (mPacer != null) {
+      mPacer.start();
+    }
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+    final RandomAccessFile file = mRandomAccessFile;
+    if (file == null || mStopped || mRemaining <= 0) {
+      return END_OF_STREAM;
+    }
+    final int frameSize = getFrameSize();
+    int count = (int) Math.min(length, mRemaining) / frameSize * frameSize;
+    if (count == 0) {
+      return END_OF_STREAM;
+    }
+    int read = 0;
+    while (read < count) {
+      int n = file.read(buffer, offset + read, count - read);
+      if (n < 0) {
+        break;
+      }
+      read += n;
+    }
+    return onRead(read, frameSize);
+  }
+
+  /**
+   * 文件中的样本为小端序，直接读入缓冲不做转换，本机为大端时调用方不应使用该方法
+   */
+  @Override
+  public int read(@NonNull ByteBuffer buffer, int length) throws IOException {
+    final RandomAccessFile file = mRandomAccessFile;
+    if (file == null || mStopped || mRemaining <= 0) {
+      return END_OF_STREAM;
+    }
+    final int frameSize = getFrameSize();
+    int count = (int) Math.min(Math.min(length, buffer.capacity()), mRemaining) / frameSize * frameSize;
+    if (count == 0) {
+      return END_OF_STREAM;
+    }
+    final FileChannel channel = file.getChannel();
+    buffer.clear();
+    buffer.limit(count);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        break;
+      }
+    }
+    return onRead(buffer.position(), frameSize);
+  }
+
+  private int onRead(int read, int frameSize) {
+    if (read == 0) {
+      mRemaining = 0;
+      return END_OF_STREAM;
+    }
+    mRemaining -= read;
+    if (mPacer != null) {
+      mPacer.advance(read / frameSize);
+    }
+    return read;
+  }
+
+  @Override
+  public void stop() {
+    mStopped = true;
+  }
+
+  @Override
+  public void release() {
+    if (mRandomAccessFile != null) {
+      try {
+        mRandomAccessFile.close();
+      } catch (IOException e) {
+        // do nothing
+      }
+      mRandomAccessFile = null;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * IMA ADPCM（WAV 格式标签 0x11）的块编解码
+ * <p>
+ * 每块以各声道 4 字节的头部开始（首个样本 与 步长下标），之后每个样本 4 位；
+ * 多声道时每个声道每次交错 4 字节（8 个样本）。16 位样本压缩为 4 位，数据量约为 PCM 的 1/4。
+ * 编码器在块之间保留各声道的步长下标，编解码都不分配内存。非线程安全。
+ */
+final class ImaAdpcmCodec {
+  private static final int[] STEP_TABLE = {
+      7, 8, 9, 10, 11, 12, 13, 14, 16, 17,
+      19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+      50, 55, 60, 66, 73, 80, 88, 97, 107, 118,
+      130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+      337, 371, 408, 449, 494, 544, 598, 658, 724, 796,
+      876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+      2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358,
+      5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+      15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+  };
+  private static final int[] INDEX_TABLE = {
+      -1, -1, -1, -1, 2, 4, 6, 8,
+      -1, -1, -1, -1, 2, 4, 6, 8
+  };
+
+  private final int mChannelCount;
+  private final int mBlockAlign;
+  private final int mSamplesPerBlock;
+  /**
+   * 编码器各声道的 预测值 与 步长下标
+   */
+  @NonNull
+  private final int[] mPredictor;
+  @NonNull
+  private final int[] mIndex;
+
+  /**
+   * @param channelCount 声道数
+   * @param blockAlign 每块字节数，{@link #getBlockAlign(int, int)}
+   */
+  ImaAdpcmCodec(int channelCount, int blockAlign) {
+    if (channelCount <= 0 || blockAlign <= 4 * channelCount || blockAlign % (4 * channelCount) != 0) {
+      throw new IllegalArgumentException("bad adpcm block");
+    }
+    mChannelCount = channelCount;
+    mBlockAlign = blockAlign;
+    mSamplesPerBlock = getSamplesPerBlock(blockAlign, channelCount);
+    mPredictor = new int[channelCount];
+    mIndex = new int[channelCount];
+  }
+
+  /**
+   * 常用的块大小：每声道 256 字节，采样率每高 11kHz 翻倍
+   */
+  static int getBlockAlign(int sampleRateInHz, int channelCount) {
+    return 256 * channelCount * Math.max(1, Integer.highestOneBit(sampleRateInHz / 11000));
+  }
+
+  /**
+   * 每块包含的帧数，头部的首个样本 加上 数据区每字节 2 个样本
+   */
+  static int getSamplesPerBlock(int blockAlign, int channelCount) {
+    return (blockAlign - 4 * channelCount) * 2 / channelCount + 1;
+  }
+
+  int getBlockAlign() {
+    return mBlockAlign;
+  }
+
+  int getSamplesPerBlock() {
+    return mSamplesPerBlock;
+  }
+
+  /**
+   * 编码一块
+   *
+   * @param samples 交错排列的 16 位样本
+   * @param frames 有效帧数，不足一块时用各声道最后一个样本补齐
+   * @param out 输出，写入 {@link #getBlockAlign()} 字节
+   * @param offset 输出起始位置
+   */
+  void encodeBlock(@NonNull short[] samples, int frames, @NonNull byte[] out, int offset) {
+    final int channels = mChannelCount;
+    final int lastFrame = Math.max(0, Math.min(frames, mSamplesPerBlock) - 1);
+    int position = offset;
+    for (int c = 0; c < channels; c++) {
+      final int first = frames > 0 ? samples[c] : 0;
+      mPredictor[c] = first;
+      out[position++] = (byte) first;
+      out[position++] = (byte) (first >> 8);
+      out[position++] = (byte) mIndex[c];
+      out[position++] = 0;
+    }
+    // 每组每声道 8 个样本 4 字节，声道交错
+    for (int group = 1; group < mSamplesPerBlock; group += 8) {
+      for (int c = 0; c < channels; c++) {
+        for (int k = 0; k < 8; k += 2) {
+          final int low = encodeSample(c, sampleAt(samples, group + k, c, lastFrame, frames));
+          final int high = encodeSample(c, sampleAt(samples, group + k + 1, c, lastFrame, frames));
+          out[position++] = (byte) (low | (high << 4));
+        }
+      }
+    }
+  }
+
+  private int sampleAt(@NonNull short[] samples, int frame, int channel, int lastFrame, int frames) {
+    if (frames <= 0) {
+      return 0;
+    }
+    return samples[Math.min(frame, lastFrame) * mChannelCount + channel];
+  }
+
+  private int encodeSample(int channel, int sample) {
+    int predictor = mPredictor[channel];
+    int index = mIndex[channel];
+    int step = STEP_TABLE[index];
+    int diff = sample - predictor;
+    int nibble = 0;
+    if (diff < 0) {
+      nibble = 8;
+      diff = -diff;
+    }
+    int delta = step >> 3;
+    if (diff >= step) {
+      nibble |= 4;
+      diff -= step;
+      delta += step;
+    }
+    step >>= 1;
+    if (diff >= step) {
+      nibble |= 2;
+      diff -= step;
+      delta += step;
+    }
+    step >>= 1;
+    if (diff >= step) {
+      nibble |= 1;
+      delta += step;
+    }
+    predictor += (nibble & 8) != 0 ? -delta : delta;
+    mPredictor[channel] = clamp(predictor);
+    mIndex[channel] = clampIndex(index + INDEX_TABLE[nibble]);
+    return nibble;
+  }
+
+  /**
+   * 解码一块，块可以不完整（文件被截断），只解码完整的样本组
+   *
+   * @param block 块数据
+   * @param offset 块起始位置
+   * @param length 块长度，不超过 blockAlign
+   * @param channelCount 声道数
+   * @param out 输出交错排列的 16 位样本，长度不小于 每块帧数 × 声道数
+   * @return 解码的帧数
+   */
+  static int decodeBlock(
+      @NonNull byte[] block,
+      int offset,
+      int length,
+      int channelCount,
+      @NonNull short[] out) {
+    final int headerSize = 4 * channelCount;
+    if (length < headerSize) {
+      return 0;
+    }
+    final int groups = (length - headerSize) / headerSize;
+    final int frames = 1 + groups * 8;
+    // 头部的预测值 与 步长下标 作为局部状态，按声道依次解码
+    for (int c = 0; c < channelCount; c++) {
+      final int header = offset + c * 4;
+      int predictor = (short) ((block[header] & 0xFF) | (block[header + 1] << 8));
+      int index = clampIndex(block[header + 2] & 0xFF);
+      out[c] = (short) predictor;
+      for (int group = 0; group < groups; group++) {
+        final int dataPosition = offset + headerSize + group * headerSize + c * 4;
+        int frame = 1 + group * 8;
+        for (int k = 0; k < 4; k++) {
+          final int value = block[dataPosition + k] & 0xFF;
+          for (int shift = 0; shift <= 4; shift += 4) {
+            final int nibble = (value >> shift) & 0x0F;
+            final int step = STEP_TABLE[index];
+            int delta = step >> 3;
+            if ((nibble & 4) != 0) {
+              delta += step;
+            }
+            if ((nibble & 2) != 0) {
+              delta += step >> 1;
+            }
+            if ((nibble & 1) != 0) {
+              delta += step >> 2;
+            }
+            predictor = clamp(predictor + ((nibble & 8) != 0 ? -delta : delta));
+            index = clampIndex(index + INDEX_TABLE[nibble]);
+            out[frame * channelCount + c] = (short) predictor;
+            frame++;
+          }
+        }
+      }
+    }
+    return frames;
+  }
+
+  private static int clamp(int sample) {
+    return sample > Short.MAX_VALUE ? Short.MAX_VALUE : sample < Short.MIN_VALUE ? Short.MIN_VALUE : sample;
+  }
+
+  private static int clampIndex(int index) {
+    return index < 0 ? 0 : index > 88 ? 88 : index;
+  }
+}
@@ -0,0 +1,244 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * IMA ADPCM WAV 文件数据源，逐块解码为 16 位 pcm，供分析管线回放 {@link ImaAdpcmWavWriter} 录制的文件
+ * <p>
+ * 实时模式按采样率限速，模拟麦克风；非实时模式尽可能快地解码。解码缓冲在构造时分配。
+ */
+public final class ImaAdpcmPcmSource implements PcmSource {
+  private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+  @NonNull
+  private final File mFile;
+  private final int mSampleRateInHz;
+  private final int mChannelCount;
+  private final int mBufferSize;
+  private final long mDataOffset;
+  private final long mDataLength;
+  private final long mFrameCount;
+  @NonNull
+  private final byte[] mBlock;
+  /**
+   * 当前块解码出的交错样本
+   */
+  @NonNull
+  private final short[] mDecoded;
+  @Nullable
+  private final RealtimePacer mPacer;
+  @Nullable
+  private RandomAccessFile mRandomAccessFile;
+  private int mDecodedFrames;
+  private int mDecodedPosition;
+  private long mRemainingBytes;
+  private long mRemainingFrames;
+  private volatile boolean mStopped;
+
+  /**
+   * @param wavFile IMA ADPCM wav 文件
+   * @param realtime 是否按实时速度产出数据
+   */
+  public ImaAdpcmPcmSource(@NonNull File wavFile, boolean realtime) throws IOException {
+    this(wavFile, DEFAULT_BUFFER_SIZE, realtime);
+  }
+
+  /**
+   * @param wavFile IMA ADPCM wav 文件
+   * @param bufferSize 每次读取的解码后字节数
+   * @param realtime 是否按实时速度产出数据
+   */
+  public ImaAdpcmPcmSource(@NonNull File wavFile, int bufferSize, boolean realtime) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(wavFile, "r");
+    WavHeader header;
+    try {
+      header = WavHeader.read(file.getChannel());
+    } finally {
+      file.close();
+    }
+    final int channelCount = header.getChannelCount();
+    final int blockAlign = header.getBlockAlign();
+    if (header.getFormatTag() != WavHeader.FORMAT_IMA_ADPCM || header.getBitsPerSample() != 4
+        || channelCount <= 0 || blockAlign <= 4 * channelCount || blockAlign % (4 * channelCount) != 0) {
+      throw new IOException("unsupported wav format " + header.getFormatTag()
+          + " " + header.getBitsPerSample() + " bits");
+    }
+    final int samplesPerBlock = ImaAdpcmCodec.getSamplesPerBlock(blockAlign, channelCount);
+    if (header.getSamplesPerBlock() != 0 && header.getSamplesPerBlock() != samplesPerBlock) {
+      throw new IOException("bad samples per block " + header.getSamplesPerBlock());
+    }
+    mFile = wavFile;
+    mSampleRateInHz = header.getSampleRateInHz();
+    mChannelCount = channelCount;
+    mBufferSize = Math.max(getFrameSize(), bufferSize / getFrameSize() * getFrameSize());
+    mDataOffset = header.getDataOffset();
+    mDataLength = header.getDataLength();
+    // 没有 fact 块时按块数估算，最后一块的补齐样本也会输出
+    final long blocks = (mDataLength + blockAlign - 1) / blockAlign;
+    mFrameCount = header.getFrameCount() >= 0
+        ? header.getFrameCount() : blocks * samplesPerBlock;
+    mBlock = new byte[blockAlign];
+    mDecoded = new short[samplesPerBlock * channelCount];
+    mPacer = realtime ? new RealtimePacer(mSampleRateInHz) : null;
+  }
+
+  private int getFrameSize() {
+    return mChannelCount * 2;
+  }
+
+  @Override
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  @Override
+  public int getChannelCount() {
+    return mChannelCount;
+  }
+
+  @Override
+  public int getBitsPerSample() {
+    return 16;
+  }
+
+  @Override
+  public int getEncoding() {
+    return ENCODING_PCM_16BIT;
+  }
+
+  @Override
+  public int getBufferSize() {
+    return mBufferSize;
+  }
+
+  /**
+   * 解码后的总帧数
+   */
+  long getFrameCount() {
+    return mFrameCount;
+  }
+
+  @Override
+  public void start() throws IOException {
+    release();
+    RandomAccessFile file = new RandomAccessFile(mFile, "r");
+    file.seek(mDataOffset);
+    mRandomAccessFile = file;
+    mRemainingBytes = mDataLength;
+    mRemainingFrames = mFrameCount;
+    mDecodedFrames = 0;
+    mDecodedPosition = 0;
+    mStopped = false;
+    if (mPacer != null) {
+      mPacer.start();
+    }
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+    final int frames = length / getFrameSize();
+    int done = 0;
+    while (done < frames && nextFrames()) {
+      final int count = Math.min(frames - done, mDecodedFrames - mDecodedPosition);
+      int index = mDecodedPosition * mChannelCount;
+      final int end = index + count * mChannelCount;
+      int position = offset + done * getFrameSize();
+      for (; index < end; index++) {
+        final short sample = mDecoded[index];
+        buffer[position++] = (byte) sample;
+        buffer[position++] = (byte) (sample >> 8);
+      }
+      mDecodedPosition += count;
+      done += count;
+    }
+    return onRead(done);
+  }
+
+  /**
+   * 按缓冲的字节序写入解码后的样本
+   */
+  @Override
+  public int read(@NonNull ByteBuffer buffer, int length) throws IOException {
+    final int frames = Math.min(length, buffer.capacity()) / getFrameSize();
+    int done = 0;
+    while (done < frames && nextFrames()) {
+      final int count = Math.min(frames - done, mDecodedFrames - mDecodedPosition);
+      int index = mDecodedPosition * mChannelCount;
+      final int end = index + count * mChannelCount;
+      int position = done * getFrameSize();
+      for (; index < end; index++) {
+        buffer.putShort(position, mDecoded[index]);
+        position += 2;
+      }
+      mDecodedPosition += count;
+      done += count;
+    }
+    return onRead(done);
+  }
+
+  /**
+   * 当前块已读完时解码下一块
+   *
+   * @return 是否还有可读的帧
+   */
+  private boolean nextFrames() throws IOException {
+    if (mStopped) {
+      return false;
+    }
+    if (mDecodedPosition < mDecodedFrames) {
+      return true;
+    }
+    final RandomAccessFile file = mRandomAccessFile;
+    if (file == null || mRemainingBytes <= 0 || mRemainingFrames <= 0) {
+      return false;
+    }
+    final int count = (int) Math.min(mBlock.length, mRemainingBytes);
+    int read = 0;
+    while (read < count) {
+      int n = file.read(mBlock, read, count - read);
+      if (n < 0) {
+        break;
+      }
+      read += n;
+    }
+    mRemainingBytes = read < count ? 0 : mRemainingBytes - read;
+    final int frames = ImaAdpcmCodec.decodeBlock(mBlock, 0, read, mChannelCount, mDecoded);
+    mDecodedFrames = (int) Math.min(frames, mRemainingFrames);
+    mDecodedPosition = 0;
+    mRemainingFrames -= mDecodedFrames;
+    return mDecodedFrames > 0;
+  }
+
+  private int onRead(int frames) {
+    if (frames == 0) {
+      return END_OF_STREAM;
+    }
+    if (mPacer != null) {
+      mPacer.advance(frames);
+    }
+    return frames * getFrameSize();
+  }
+
+  @Override
+  public void stop() {
+    mStopped = true;
+  }
+
+  @Override
+  public void release() {
+    if (mRandomAccessFile != null) {
+      try {
+        mRandomAccessFile.close();
+      } catch (IOException e) {
+        // do nothing
+      }
+      mRandomAccessFile = null;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 流式 IMA ADPCM WAV 写入器（格式标签 0x11）
+ * <p>
+ * 输入 16 位小端 pcm，凑满一块即编码为固定长度的块追加到文件，文件约为 PCM 的 1/4。
+ * 编码缓冲在构造时分配，写入过程中不再分配内存；关闭时补齐最后一块 并 回填头部。
+ * 只支持单声道与立体声。
+ */
+public final class ImaAdpcmWavWriter implements PcmFileWriter {
+  /**
+   * 头部长度：fmt 块 20 字节（带每块帧数），fact 块 12 字节
+   */
+  public static final int HEADER_SIZE = 60;
+  private static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+  private static final long MAX_CHUNK_SIZE = 0xFFFFFFFFL;
+
+  @NonNull
+  private final RandomAccessFile mFile;
+  @NonNull
+  private final FileChannel mChannel;
+  @NonNull
+  private final ByteBuffer mBuffer;
+  @NonNull
+  private final ByteBuffer mHeader;
+  @NonNull
+  private final ImaAdpcmCodec mCodec;
+  /**
+   * 待编码的交错样本，满一块后编码
+   */
+  @NonNull
+  private final short[] mSamples;
+  @NonNull
+  private final byte[] mBlock;
+  private final int mSampleRateInHz;
+  private final int mChannelCount;
+  private int mSampleCount;
+  /**
+   * 上次写入剩下的奇数字节，即半个样本的低字节
+   */
+  private int mPendingByte = -1;
+  private long mFrames;
+  private long mDataLength;
+  private boolean mClosed;
+
+  /**
+   * @param wavFile wav 文件
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数，1 或 2
+   */
+  public ImaAdpcmWavWriter(@NonNull File wavFile, int sampleRateInHz, int channelCount)
+      throws IOException {
+    this(wavFile, sampleRateInHz, channelCount, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param wavFile wav 文件
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数，1 或 2
+   * @param bufferSize 写入缓冲大小，不足一块时按一块分配
+   */
+  public ImaAdpcmWavWriter(
+      @NonNull File wavFile,
+      int sampleRateInHz,
+      int channelCount,
+      int bufferSize)
+      throws IOException {
+    if (sampleRateInHz <= 0 || channelCount <= 0 || channelCount > 2 || bufferSize <= 0) {
+      throw new IllegalArgumentException("bad adpcm format");
+    }
+    mSampleRateInHz = sampleRateInHz;
+    mChannelCount = channelCount;
+    mCodec = new ImaAdpcmCodec(channelCount, ImaAdpcmCodec.getBlockAlign(sampleRateInHz, channelCount));
+    mSamples = new short[mCodec.getSamplesPerBlock() * channelCount];
+    mBlock = new byte[mCodec.getBlockAlign()];
+    mBuffer = ByteBuffer.allocateDirect(Math.max(bufferSize, mBlock.length));
+    mHeader = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    mFile = new RandomAccessFile(wavFile, "rw");
+    mChannel = mFile.getChannel();
+    try {
+      mChannel.truncate(0);
+      writeHeader();
+      mChannel.position(HEADER_SIZE);
+    } catch (IOException e) {
+      mFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * 追加 16 位小端 pcm
+   *
+   * @param data pcm 数据
+   * @param offset 起始位置
+   * @param length 长度
+   */
+  @Override
+  public void write(@NonNull byte[] data, int offset, int length) throws IOException {
+    if (mClosed) {
+      throw new IOException("writer is closed");
+    }
+    final int end = offset + length;
+    if (mPendingByte >= 0 && offset < end) {
+      addSample(mPendingByte | (data[offset++] << 8));
+      mPendingByte = -1;
+    }
+    for (; offset + 1 < end; offset += 2) {
+      addSample((data[offset] & 0xFF) | (data[offset + 1] << 8));
+    }
+    if (offset < end) {
+      mPendingByte = data[offset] & 0xFF;
+    }
+  }
+
+  /**
+   * 追加 16 位小端 pcm，写入 {@code data} 的 position 到 limit 之间的字节
+   *
+   * @param data pcm 数据，返回后 position 等于 limit
+   */
+  @Override
+  public void write(@NonNull ByteBuffer data) throws IOException {
+    if (mClosed) {
+      throw new IOException("writer is closed");
+    }
+    int position = data.position();
+    final int end = data.limit();
+    if (mPendingByte >= 0 && position < end) {
+      addSample(mPendingByte | (data.get(position++) << 8));
+      mPendingByte = -1;
+    }
+    for (; position + 1 < end; position += 2) {
+      addSample((data.get(position) & 0xFF) | (data.get(position + 1) << 8));
+    }
+    if (position < end) {
+      mPendingByte = data.get(position) & 0xFF;
+    }
+    data.position(end);
+  }
+
+  private void addSample(int sample) throws IOException {
+    mSamples[mSampleCount++] = (short) sample;
+    if (mSampleCount == mSamples.length) {
+      encodeBlock(mCodec.getSamplesPerBlock());
+    }
+  }
+
+  /**
+   * 编码一块写入缓冲
+   *
+   * @param frames 有效帧数
+   */
+  private void encodeBlock(int frames) throws IOException {
+    mCodec.encodeBlock(mSamples, frames, mBlock, 0);
+    if (mBuffer.remaining() < mBlock.length) {
+      flushBuffer();
+    }
+    mBuffer.put(mBlock);
+    mDataLength += mBlock.length;
+    mFrames += frames;
+    mSampleCount = 0;
+  }
+
+  /**
+   * 已写入的编码数据长度，不含未凑满一块的样本
+   */
+  @Override
+  public long getDataLength() {
+    return mDataLength;
+  }
+
+  /**
+   * 写出已编码的块 并 回填头部长度，未凑满一块的样本留到下次写入或关闭时编码
+   */
+  @Override
+  public void flush() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    flushBuffer();
+    long position = mChannel.position();
+    writeHeader();
+    mChannel.position(position);
+  }
+
+  /**
+   * 补齐并编码最后一块、回填头部 并 关闭文件
+   */
+  @Override
+  public void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    mClosed = true;
+    try {
+      final int frames = mSampleCount / mChannelCount;
+      if (frames > 0) {
+        encodeBlock(frames);
+      }
+      flushBuffer();
+      writeHeader();
+    } finally {
+      mFile.close();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    mBuffer.flip();
+    while (mBuffer.hasRemaining()) {
+      mChannel.write(mBuffer);
+    }
+    mBuffer.clear();
+  }
+
+  private void writeHeader() throws IOException {
+    mHeader.clear();
+    fillHeader(mHeader, mDataLength, mFrames, mSampleRateInHz, mChannelCount,
+        mCodec.getBlockAlign(), mCodec.getSamplesPerBlock());
+    mHeader.flip();
+    long position = 0;
+    while (mHeader.hasRemaining()) {
+      position += mChannel.write(mHeader, position);
+    }
+  }
+
+  /**
+   * 填充 IMA ADPCM WAV 头部，长度为 {@link #HEADER_SIZE}
+   *
+   * @param header 小端序缓冲
+   * @param dataLength 编码数据长度
+   * @param frames 每声道的样本数
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数
+   * @param blockAlign 每块字节数
+   * @param samplesPerBlock 每块帧数
+   */
+  static void fillHeader(
+      @NonNull ByteBuffer header,
+      long dataLength,
+      long frames,
+      int sampleRateInHz,
+      int channelCount,
+      int blockAlign,
+      int samplesPerBlock) {
+    final long totalAudioLength = Math.min(dataLength, MAX_CHUNK_SIZE - (HEADER_SIZE - 8));
+    final long byteRate = (long) sampleRateInHz * blockAlign / samplesPerBlock;
+    // RIFF/WAVE header
+    header.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F');
+    header.putInt((int) (totalAudioLength + HEADER_SIZE - 8));
+    header.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E');
+    // 'fmt ' chunk
+    header.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ');
+    header.putInt(20);
+    header.putShort((short) WavHeader.FORMAT_IMA_ADPCM);
+    header.putShort((short) channelCount);
+    header.putInt(sampleRateInHz);
+    header.putInt((int) byteRate);
+    header.putShort((short) blockAlign);
+    header.putShort((short) 4);
+    // 扩展长度 2：每块帧数
+    header.putShort((short) 2);
+    header.putShort((short) samplesPerBlock);
+    // 'fact' chunk
+    header.put((byte) 'f').put((byte) 'a').put((byte) 'c').put((byte) 't');
+    header.putInt(4);
+    header.putInt((int) Math.min(frames, MAX_CHUNK_SIZE));
+    // data
+    header.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a');
+    header.putInt((int) totalAudioLength);
+  }
+}
@@ -0,0 +1,431 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 电平表：每个缓冲的均方根、峰值（dBFS）、VU / PPM 表头读数 与 削波计数
+ * <p>
+ * dBFS 以满幅为 0dB，满幅方波的均方根为 0dB、满幅正弦约 -3dB，最低 {@value #MIN_DB}dB。
+ * 对数用查表：浮点数的指数位直接给出整数部分，尾数高 {@value #TABLE_BITS} 位查表，误差小于 0.01dB，
+ * 每个缓冲只查几次表，不调用 {@link Math#log10(double)}，10ms 一个缓冲也不会成为负担。
+ * <p>
+ * 表头按样本数计时，与缓冲大小、读取周期无关：
+ * VU 对均方功率做一阶积分，默认 300ms 内到达稳态读数的 99%；
+ * PPM 按 IEC 60268-10 II 型，默认 10ms 起音，每秒回落 24/2.8 dB。
+ * <p>
+ * 非线程安全，只在录音线程使用。
+ */
+public final class LevelMeter {
+  /**
+   * 最低读数，约为 16 位量化的动态范围
+   */
+  public static final float MIN_DB = -96;
+  /**
+   * {@link #getLevel()} 等 0~1 读数默认对应的范围，-60dBFS 为 0
+   */
+  public static final float DEFAULT_RANGE_DB = 60;
+  private static final int DEFAULT_VU_MS = 300;
+  private static final int DEFAULT_PPM_ATTACK_MS = 10;
+  private static final float DEFAULT_PPM_RELEASE_DB_PER_SECOND = 24 / 2.8f;
+  private static final int DEFAULT_SAMPLE_RATE = 16000;
+
+  //<editor-fold desc="对数表">
+  private static final int TABLE_BITS = 10;
+  private static final int TABLE_SHIFT = 23 - TABLE_BITS;
+  private static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+  /**
+   * 尾数区间中点的 log2，区间内的最大误差约为 0.0007
+   */
+  private static final float[] LOG2_TABLE = new float[1 << TABLE_BITS];
+  /**
+   * 功率每倍频程的分贝数，10·log10(2)
+   */
+  private static final float DB_PER_OCTAVE = (float) (10 * Math.log10(2));
+  private static final float MIN_POWER = (float) Math.pow(10, MIN_DB / 10);
+
+  static {
+    for (int i = 0; i < LOG2_TABLE.length; i++) {
+      LOG2_TABLE[i] = (float) (Math.log(1 + (i + 0.5) / LOG2_TABLE.length) / Math.log(2));
+    }
+  }
+  //</editor-fold>
+
+  private static final double SHORT_POWER_SCALE = 1.0 / (32768.0 * 32768.0);
+
+  private int mSampleRate = DEFAULT_SAMPLE_RATE;
+  private int mVuMs = DEFAULT_VU_MS;
+  private int mPpmAttackMs = DEFAULT_PPM_ATTACK_MS;
+  private float mPpmReleaseDbPerSecond = DEFAULT_PPM_RELEASE_DB_PER_SECOND;
+  private float mRangeDb = DEFAULT_RANGE_DB;
+  /**
+   * 表头系数对应的样本数，缓冲大小不变时不重新计算 exp
+   */
+  private int mCoefficientCount;
+  private float mVuCoefficient;
+  private float mPpmAttackCoefficient;
+  private float mPpmReleaseDb;
+
+  private float mRms;
+  private float mPeak;
+  private float mRmsDb = MIN_DB;
+  private float mPeakDb = MIN_DB;
+  private float mVuPower;
+  private float mVuDb = MIN_DB;
+  private float mPpmDb = MIN_DB;
+  private int mClippedSamples;
+  private long mClipCount;
+
+  //<editor-fold desc="换算">
+
+  /**
+   * 均方功率（相对满幅的平方）转 dBFS，查表计算
+   *
+   * @return 不低于 {@link #MIN_DB}
+   */
+  public static float powerToDb(float power) {
+    if (!(power > MIN_POWER)) {
+      return MIN_DB;
+    }
+    final int bits = Float.floatToRawIntBits(power);
+    final int exponent = (bits >>> 23) - 127;
+    return (exponent + LOG2_TABLE[(bits >>> TABLE_SHIFT) & TABLE_MASK]) * DB_PER_OCTAVE;
+  }
+
+  /**
+   * 幅度（相对满幅）转 dBFS，查表计算
+   *
+   * @return 不低于 {@link #MIN_DB}
+   */
+  public static float amplitudeToDb(float amplitude) {
+    return powerToDb(amplitude * amplitude);
+  }
+
+  /**
+   * dBFS 转 0~1 的显示读数
+   *
+   * @param db dBFS
+   * @param rangeDb 显示范围，-rangeDb 及以下为 0，0dBFS 及以上为 1
+   */
+  public static float toLevel(float db, float rangeDb) {
+    final float level = (db + rangeDb) / rangeDb;
+    return level < 0 ? 0 : level > 1 ? 1 : level;
+  }
+
+  /**
+   * 一段 16 位样本的均方根电平，按 {@link #DEFAULT_RANGE_DB} 换算为 0~1，用于柱状图
+   *
+   * @param samples 样本
+   * @param start 起始下标（绝对位置）
+   * @param count 样本数
+   */
+  public static float sliceLevel(@NonNull ShortBuffer samples, int start, int count) {
+    if (count <= 0) {
+      return 0;
+    }
+    long sum = 0;
+    for (int i = start; i < start + count; i++) {
+      final int sample = samples.get(i);
+      sum += sample * sample;
+    }
+    return toLevel(powerToDb((float) (sum * SHORT_POWER_SCALE / count)), DEFAULT_RANGE_DB);
+  }
+
+  /**
+   * 一段浮点样本的均方根电平，按 {@link #DEFAULT_RANGE_DB} 换算为 0~1
+   *
+   * @param samples 样本 -1~1
+   * @param start 起始下标（绝对位置）
+   * @param count 样本数
+   */
+  public static float sliceLevel(@NonNull FloatBuffer samples, int start, int count) {
+    if (count <= 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (int i = start; i < start + count; i++) {
+      final float sample = samples.get(i);
+      sum += sample * sample;
+    }
+    return toLevel(powerToDb((float) (sum / count)), DEFAULT_RANGE_DB);
+  }
+
+  /**
+   * 一段 16 位小端 pcm 的均方根电平，按 {@link #DEFAULT_RANGE_DB} 换算为 0~1
+   *
+   * @param data pcm 数据
+   * @param offset 起始字节
+   * @param length 字节数
+   */
+  public static float sliceLevel(@NonNull byte[] data, int offset, int length) {
+    final int count = length / 2;
+    if (count <= 0) {
+      return 0;
+    }
+    long sum = 0;
+    for (int i = offset; i < offset + count * 2; i += 2) {
+      final int sample = (short) ((data[i] & 0xFF) | (data[i + 1] << 8));
+      sum += sample * sample;
+    }
+    return toLevel(powerToDb((float) (sum * SHORT_POWER_SCALE / count)), DEFAULT_RANGE_DB);
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="设置">
+
+  /**
+   * 设置采样率，表头按样本数计时，开始录音前设置，默认 16000
+   */
+  public void setSampleRate(int sampleRateInHz) {
+    if (sampleRateInHz <= 0) {
+      throw new IllegalArgumentException("bad sample rate");
+    }
+    mSampleRate = sampleRateInHz;
+    mCoefficientCount = 0;
+  }
+
+  /**
+   * 设置 VU 表的积分时间，为 0 时读数即每个缓冲的均方根
+   *
+   * @param integrationMs 到达稳态读数 99% 的时间，毫秒，默认 300
+   */
+  public void setVuBallistics(int integrationMs) {
+    if (integrationMs < 0) {
+      throw new IllegalArgumentException("bad vu ballistics");
+    }
+    mVuMs = integrationMs;
+    mCoefficientCount = 0;
+  }
+
+  /**
+   * 设置 PPM 表的起音时间常数与回落速度
+   *
+   * @param attackMs 起音时间常数，毫秒，0 表示立即到达峰值，默认 10
+   * @param releaseDbPerSecond 每秒回落的分贝数，默认约 8.6
+   */
+  public void setPpmBallistics(int attackMs, float releaseDbPerSecond) {
+    if (attackMs < 0 || !(releaseDbPerSecond >= 0)) {
+      throw new IllegalArgumentException("bad ppm ballistics");
+    }
+    mPpmAttackMs = attackMs;
+    mPpmReleaseDbPerSecond = releaseDbPerSecond;
+    mCoefficientCount = 0;
+  }
+
+  /**
+   * 设置 {@link #getLevel()} 的显示范围
+   *
+   * @param rangeDb 分贝数，默认 60，即 -60dBFS 为 0
+   */
+  public void setDisplayRange(float rangeDb) {
+    if (!(rangeDb > 0)) {
+      throw new IllegalArgumentException("bad display range");
+    }
+    mRangeDb = rangeDb;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="测量">
+
+  /**
+   * 测量 16 位样本
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   */
+  public void process(@NonNull ShortBuffer samples, int sampleCount) {
+    final int start = samples.position();
+    long sum = 0;
+    int peak = 0;
+    int clipped = 0;
+    for (int i = start; i < start + sampleCount; i++) {
+      final int sample = samples.get(i);
+      sum += sample * sample;
+      final int magnitude = sample < 0 ? -sample : sample;
+      if (magnitude > peak) {
+        peak = magnitude;
+      }
+      if (magnitude >= Short.MAX_VALUE) {
+        clipped++;
+      }
+    }
+    update(sampleCount == 0 ? 0 : (float) (sum * SHORT_POWER_SCALE / sampleCount), peak / 32768f,
+        clipped, sampleCount);
+  }
+
+  /**
+   * 测量浮点样本，±1 为满幅，超过满幅的读数可大于 0dBFS
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   */
+  public void process(@NonNull FloatBuffer samples, int sampleCount) {
+    final int start = samples.position();
+    double sum = 0;
+    float peak = 0;
+    int clipped = 0;
+    for (int i = start; i < start + sampleCount; i++) {
+      final float sample = samples.get(i);
+      sum += sample * sample;
+      final float magnitude = Math.abs(sample);
+      if (magnitude > peak) {
+        peak = magnitude;
+      }
+      if (magnitude >= 1f) {
+        clipped++;
+      }
+    }
+    update(sampleCount == 0 ? 0 : (float) (sum / sampleCount), peak, clipped, sampleCount);
+  }
+
+  /**
+   * 测量 16 位小端单声道 pcm
+   *
+   * @param data pcm 数据
+   * @param length 有效字节数
+   */
+  public void process(@NonNull byte[] data, int length) {
+    final int sampleCount = length / 2;
+    long sum = 0;
+    int peak = 0;
+    int clipped = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      final int sample = (short) ((data[i * 2] & 0xFF) | (data[i * 2 + 1] << 8));
+      sum += sample * sample;
+      final int magnitude = sample < 0 ? -sample : sample;
+      if (magnitude > peak) {
+        peak = magnitude;
+      }
+      if (magnitude >= Short.MAX_VALUE) {
+        clipped++;
+      }
+    }
+    update(sampleCount == 0 ? 0 : (float) (sum * SHORT_POWER_SCALE / sampleCount), peak / 32768f,
+        clipped, sampleCount);
+  }
+
+  private void update(float meanSquare, float peak, int clipped, int sampleCount) {
+    if (sampleCount <= 0) {
+      return;
+    }
+    mRms = (float) Math.sqrt(meanSquare);
+    mPeak = peak;
+    mRmsDb = powerToDb(meanSquare);
+    mPeakDb = amplitudeToDb(peak);
+    mClippedSamples = clipped;
+    mClipCount += clipped;
+    if (sampleCount != mCoefficientCount) {
+      updateCoefficients(sampleCount);
+    }
+    mVuPower += (meanSquare - mVuPower) * mVuCoefficient;
+    mVuDb = powerToDb(mVuPower);
+    if (mPeakDb > mPpmDb) {
+      mPpmDb += (mPeakDb - mPpmDb) * mPpmAttackCoefficient;
+    } else {
+      mPpmDb = Math.max(mPeakDb, mPpmDb - mPpmReleaseDb);
+    }
+  }
+
+  /**
+   * 按缓冲时长计算一阶积分系数，只在缓冲大小或设置变化时调用
+   */
+  private void updateCoefficients(int sampleCount) {
+    final double seconds = (double) sampleCount / mSampleRate;
+    // 一阶系统到达 99% 需要 ln(100) 个时间常数
+    mVuCoefficient = mVuMs == 0 ? 1 : (float) (1 - Math.exp(-seconds * 1000 * Math.log(100) / mVuMs));
+    mPpmAttackCoefficient = mPpmAttackMs == 0 ? 1 : (float) (1 - Math.exp(-seconds * 1000 / mPpmAttackMs));
+    mPpmReleaseDb = (float) (mPpmReleaseDbPerSecond * seconds);
+    mCoefficientCount = sampleCount;
+  }
+
+  /**
+   * 清空读数与削波计数，开始新的录音时调用
+   */
+  public void reset() {
+    mRms = 0;
+    mPeak = 0;
+    mRmsDb = MIN_DB;
+    mPeakDb = MIN_DB;
+    mVuPower = 0;
+    mVuDb = MIN_DB;
+    mPpmDb = MIN_DB;
+    mClippedSamples = 0;
+    mClipCount = 0;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="读数">
+
+  /**
+   * 最近一个缓冲的均方根，相对满幅
+   */
+  public float getRms() {
+    return mRms;
+  }
+
+  /**
+   * 最近一个缓冲的峰值，相对满幅
+   */
+  public float getPeak() {
+    return mPeak;
+  }
+
+  /**
+   * 最近一个缓冲的均方根，dBFS
+   */
+  public float getRmsDb() {
+    return mRmsDb;
+  }
+
+  /**
+   * 最近一个缓冲的峰值，dBFS
+   */
+  public float getPeakDb() {
+    return mPeakDb;
+  }
+
+  /**
+   * VU 表读数，dBFS
+   */
+  public float getVuDb() {
+    return mVuDb;
+  }
+
+  /**
+   * PPM 表读数，dBFS
+   */
+  public float getPpmDb() {
+    return mPpmDb;
+  }
+
+  /**
+   * VU 表读数按显示范围换算的 0~1
+   */
+  public float getLevel() {
+    return toLevel(mVuDb, mRangeDb);
+  }
+
+  /**
+   * PPM 表读数按显示范围换算的 0~1
+   */
+  public float getPeakLevel() {
+    return toLevel(mPpmDb, mRangeDb);
+  }
+
+  /**
+   * 最近一个缓冲中达到满幅的样本数
+   */
+  public int getClippedSamples() {
+    return mClippedSamples;
+  }
+
+  /**
+   * 自上次 {@link #reset()} 以来达到满幅的样本总数
+   */
+  public long getClipCount() {
+    return mClipCount;
+  }
+  //</editor-fold>
+}
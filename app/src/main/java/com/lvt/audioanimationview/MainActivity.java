@@ -46,42 +46,31 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        WavRecorderUtils.getInstance().setRecordListener(data -> {
-            if (audioView != null) {
-                audioView.setmFFTBytes(data);
-            }
-        });
-
-
         Paint paint = new Paint();
         paint.setStrokeCap(Paint.Cap.ROUND);
         paint.setStrokeWidth(dip2px(8));
         paint.setColor(Color.parseColor("#00A5FF"));
         int maxCount = 20; //最大条数
         int interval = dip2px(6);
-        VoiceGraphRenderer barGraphRenderer = new VoiceGraphRenderer(paint, maxCount, interval, 1,
-                isHaveVoice -> {
-                    if (isHaveVoice) {
-                        //xxx.setText("xxxx");
-                    } else {
-                       // xxx.setText("大声点，听不见哦～");
-                    }
-                });
+        VoiceGraphRenderer barGraphRenderer = new VoiceGraphRenderer(paint, maxCount, interval, 1);
 
-        RandomVoiceGraphRenderer randomRenderer = new RandomVoiceGraphRenderer(paint, maxCount, interval, 1,
-                isHaveVoice -> {
-                    if (isHaveVoice) {
-                        //xxx.setText("xxxx");
-                    } else {
-                        // xxx.setText("大声点，听不见哦～");
-                    }
-                });
+        // 每个录音缓冲检测一次，持续 3 秒没有人声时提示，只在状态切换时回调；检测器按录音采样率计时
+        WavRecorderUtils.getInstance().setVoiceChangeCallBack(isHaveVoice -> {
+            if (isHaveVoice) {
+                //xxx.setText("xxxx");
+            } else {
+                // xxx.setText("大声点，听不见哦～");
+            }
+        });
+        // 在录音线程分析一次，所有渲染器共用；按频带显示，16kHz 下 512 点约 32ms 一帧
+        AudioAnalyzer analyzer = new AudioAnalyzer(maxCount);
+        analyzer.setSpectrumAnalyzer(new SpectrumAnalyzer(512, 16000, maxCount));
+        WavRecorderUtils.getInstance().setAudioAnalyzer(analyzer);
+        WavRecorderUtils.getInstance().setDirectBufferEnabled(true);
         if (audioView != null) {
+            audioView.setAudioAnalyzer(analyzer);
             audioView.addRenderer(barGraphRenderer);
         }
-//        if(randomRenderer != null){  //更好看些的波形
-//            audioView.addRenderer(randomRenderer);
-//        }
     }
     int dip2px(int dps) {
         return Math.round(getResources().getDisplayMetrics().density * dps);
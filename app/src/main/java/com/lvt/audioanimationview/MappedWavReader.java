@@ -0,0 +1,174 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 内存映射的 WAV 读取，用于回看已保存的录音
+ * <p>
+ * 解析 RIFF 头部后用 {@link FileChannel#map} 映射 data 块，按帧取任意位置的样本窗口，
+ * 不调用 read、不拷贝到数组：单声道 16 位 与 浮点 直接返回映射内存上的视图，只移动 position；
+ * 多声道 与 8 位转换到构造时分配的数组。取窗口不分配内存，适合拖动进度条时逐帧调用。
+ * <p>
+ * 支持 8 / 16 位整型 与 32 位浮点 PCM，data 块超过 2GB 时只映射前 2GB。非线程安全。
+ * IMA ADPCM 录音（{@link WavRecorderUtils#OUTPUT_FORMAT_WAV_IMA_ADPCM}）是按块压缩的，不能按帧直接映射，
+ * 构造时抛出异常，回看这类文件需用 {@link ImaAdpcmPcmSource} 顺序解码。
+ */
+public final class MappedWavReader implements Closeable {
+  @NonNull
+  private final ByteBuffer mData;
+  @NonNull
+  private final PcmDownmixer mDownmixer;
+  private final int mSampleRateInHz;
+  private final int mChannelCount;
+  private final int mEncoding;
+  private final int mFrameSize;
+  private final int mMaxWindowFrames;
+  private final long mFrameCount;
+  private boolean mClosed;
+
+  /**
+   * @param wavFile wav 文件
+   * @param maxWindowFrames 每个窗口最多的帧数
+   * @throws IOException 读取失败 或 不支持的格式，包括 IMA ADPCM
+   */
+  public MappedWavReader(@NonNull File wavFile, int maxWindowFrames) throws IOException {
+    if (maxWindowFrames <= 0) {
+      throw new IllegalArgumentException("bad window size");
+    }
+    RandomAccessFile file = new RandomAccessFile(wavFile, "r");
+    try {
+      final FileChannel channel = file.getChannel();
+      final WavHeader header = WavHeader.read(channel);
+      if (header.getFormatTag() == WavHeader.FORMAT_IMA_ADPCM) {
+        throw new IOException("IMA ADPCM wav can not be memory-mapped, decode it with ImaAdpcmPcmSource");
+      }
+      mEncoding = FilePcmSource.getEncoding(header.getFormatTag(), header.getBitsPerSample());
+      if (mEncoding < 0 || header.getChannelCount() <= 0) {
+        throw new IOException("unsupported wav format " + header.getFormatTag()
+            + " " + header.getBitsPerSample() + " bits");
+      }
+      mSampleRateInHz = header.getSampleRateInHz();
+      mChannelCount = header.getChannelCount();
+      mFrameSize = mChannelCount * PcmDownmixer.getBytesPerSample(mEncoding);
+      final long length = Math.min(header.getDataLength(), Integer.MAX_VALUE) / mFrameSize * mFrameSize;
+      // 映射在文件关闭后仍然有效
+      mData = channel.map(FileChannel.MapMode.READ_ONLY, header.getDataOffset(), length)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      mFrameCount = length / mFrameSize;
+    } finally {
+      file.close();
+    }
+    mMaxWindowFrames = maxWindowFrames;
+    mDownmixer = new PcmDownmixer(mEncoding, mChannelCount, maxWindowFrames * mFrameSize);
+  }
+
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  public int getChannelCount() {
+    return mChannelCount;
+  }
+
+  /**
+   * 文件的样本编码，{@link PcmSource#ENCODING_PCM_16BIT} 等
+   */
+  public int getEncoding() {
+    return mEncoding;
+  }
+
+  /**
+   * 总帧数
+   */
+  public long getFrameCount() {
+    return mFrameCount;
+  }
+
+  /**
+   * 每个窗口最多的帧数
+   */
+  public int getMaxWindowFrames() {
+    return mMaxWindowFrames;
+  }
+
+  /**
+   * 总时长，毫秒
+   */
+  public long getDurationMs() {
+    return mFrameCount * 1000 / mSampleRateInHz;
+  }
+
+  /**
+   * 取一个窗口的单声道样本，之后读取 {@link #getShorts()} 或 {@link #getFloats()}
+   *
+   * @param firstFrame 起始帧，超出范围时截取到文件内
+   * @param frames 帧数，不超过构造时的最大窗口
+   * @return 窗口实际的样本数
+   */
+  public int window(long firstFrame, int frames) {
+    if (mClosed) {
+      throw new IllegalStateException("reader is closed");
+    }
+    final long first = Math.max(0, Math.min(firstFrame, mFrameCount));
+    final int count = (int) Math.min(Math.min(frames, mMaxWindowFrames), mFrameCount - first);
+    mDownmixer.mix(mData, (int) (first * mFrameSize), Math.max(0, count) * mFrameSize);
+    return mDownmixer.getSampleCount();
+  }
+
+  /**
+   * 窗口样本是否为浮点，为 true 时读取 {@link #getFloats()}，否则读取 {@link #getShorts()}
+   */
+  public boolean isFloat() {
+    return mDownmixer.isFloat();
+  }
+
+  /**
+   * 最近一个窗口的单声道 16 位样本，只读，从 position 开始，在下次取窗口前有效
+   */
+  @NonNull
+  public ShortBuffer getShorts() {
+    return mDownmixer.getShorts();
+  }
+
+  /**
+   * 最近一个窗口的单声道浮点样本，只读，从 position 开始，在下次取窗口前有效
+   */
+  @NonNull
+  public FloatBuffer getFloats() {
+    return mDownmixer.getFloats();
+  }
+
+  /**
+   * 取窗口 并 交给分析，分析结果经 {@link AudioAnalyzer} 发布给渲染器
+   *
+   * @param analyzer 分析
+   * @param firstFrame 起始帧
+   * @param frames 帧数
+   */
+  public void analyze(@NonNull AudioAnalyzer analyzer, long firstFrame, int frames) {
+    final int sampleCount = window(firstFrame, frames);
+    if (isFloat()) {
+      analyzer.analyze(getFloats(), sampleCount);
+    } else {
+      analyzer.analyze(getShorts(), sampleCount);
+    }
+  }
+
+  /**
+   * 映射的内存在缓冲被回收时释放，关闭后不能再取窗口
+   */
+  @Override
+  public void close() {
+    mClosed = true;
+  }
+}
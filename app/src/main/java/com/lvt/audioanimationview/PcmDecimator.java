@@ -0,0 +1,211 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 流式整数倍降采样，把单声道样本降到分析用的采样率
+ * <p>
+ * 柱子只有几十个，不需要 48kHz 的细节。用 {@value #ORDER} 阶 CIC 滤波器：每个输入样本只做
+ * {@value #ORDER} 次整数加法，每个输出样本再做 {@value #ORDER} 次减法，没有乘法，
+ * 之后的分析按降低后的采样率进行，总开销与输入采样率基本无关。
+ * 积分器用 long 计算，溢出回绕不影响结果；状态跨缓冲保留，缓冲边界没有断点。
+ * 通带高端有衰减（输出奈奎斯特频率的 1/4 处约 -1dB，一半处约 -3.5dB，3/4 处约 -8dB），
+ * 分析采样率应取需要显示的最高频率的 4 倍左右。
+ * <p>
+ * 非线程安全，只在录音线程使用，输出在下次 process 前有效。
+ */
+public final class PcmDecimator {
+  /**
+   * 积分器 与 梳状器的级数
+   */
+  private static final int ORDER = 4;
+  /**
+   * 最大降采样倍数，保证输出在 long 范围内
+   */
+  private static final int MAX_FACTOR = 256;
+  /**
+   * 浮点样本转为定点的比例
+   */
+  private static final float FLOAT_SCALE = 1 << 20;
+
+  private final int mFactor;
+  private final int mOutputSampleRate;
+  /**
+   * 直流增益 factor^ORDER 的倒数
+   */
+  private final double mGain;
+  private final long[] mIntegrators = new long[ORDER];
+  private final long[] mCombs = new long[ORDER];
+  /**
+   * 距离下一个输出还差的输入样本数
+   */
+  private int mPhase;
+  private final int mMaxOutput;
+  private short[] mShortArray;
+  private ShortBuffer mShorts;
+  private float[] mFloatArray;
+  private FloatBuffer mFloats;
+
+  /**
+   * @param inputSampleRate 输入采样率
+   * @param analysisSampleRate 期望的分析采样率，实际为 {@link #getOutputSampleRate(int, int)}
+   * @param maxInputSamples 每次最多输入的样本数
+   */
+  public PcmDecimator(int inputSampleRate, int analysisSampleRate, int maxInputSamples) {
+    if (inputSampleRate <= 0 || analysisSampleRate <= 0 || maxInputSamples <= 0) {
+      throw new IllegalArgumentException("bad decimator parameters");
+    }
+    mFactor = getFactor(inputSampleRate, analysisSampleRate);
+    mOutputSampleRate = inputSampleRate / mFactor;
+    mGain = 1 / Math.pow(mFactor, ORDER);
+    mMaxOutput = maxInputSamples / mFactor + 1;
+    reset();
+  }
+
+  /**
+   * 降采样倍数，取整后实际采样率不低于期望的分析采样率
+   */
+  public static int getFactor(int inputSampleRate, int analysisSampleRate) {
+    return Math.max(1, Math.min(MAX_FACTOR, inputSampleRate / analysisSampleRate));
+  }
+
+  /**
+   * 实际的输出采样率，频谱分析应按该采样率构造
+   */
+  public static int getOutputSampleRate(int inputSampleRate, int analysisSampleRate) {
+    return inputSampleRate / getFactor(inputSampleRate, analysisSampleRate);
+  }
+
+  public int getFactor() {
+    return mFactor;
+  }
+
+  public int getOutputSampleRate() {
+    return mOutputSampleRate;
+  }
+
+  /**
+   * 清空滤波器状态，开始新的录音时调用
+   */
+  public void reset() {
+    for (int i = 0; i < ORDER; i++) {
+      mIntegrators[i] = 0;
+      mCombs[i] = 0;
+    }
+    mPhase = mFactor;
+  }
+
+  /**
+   * 降采样 16 位样本，结果读取 {@link #getShorts()}
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   * @return 输出的样本数
+   */
+  public int process(@NonNull ShortBuffer samples, int sampleCount) {
+    if (mShortArray == null) {
+      mShortArray = new short[mMaxOutput];
+      mShorts = ShortBuffer.wrap(mShortArray);
+    }
+    final short[] out = mShortArray;
+    final int start = samples.position();
+    // 状态放到局部变量，循环内不访问字段
+    long i0 = mIntegrators[0], i1 = mIntegrators[1], i2 = mIntegrators[2], i3 = mIntegrators[3];
+    int phase = mPhase;
+    int count = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      i0 += samples.get(start + i);
+      i1 += i0;
+      i2 += i1;
+      i3 += i2;
+      if (--phase == 0) {
+        phase = mFactor;
+        final long value = Math.round(comb(i3) * mGain);
+        out[count++] = (short) (value > Short.MAX_VALUE ? Short.MAX_VALUE
+            : value < Short.MIN_VALUE ? Short.MIN_VALUE : value);
+      }
+    }
+    mIntegrators[0] = i0;
+    mIntegrators[1] = i1;
+    mIntegrators[2] = i2;
+    mIntegrators[3] = i3;
+    mPhase = phase;
+    return count;
+  }
+
+  /**
+   * 降采样浮点样本，结果读取 {@link #getFloats()}
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   * @return 输出的样本数
+   */
+  public int process(@NonNull FloatBuffer samples, int sampleCount) {
+    if (mFloatArray == null) {
+      mFloatArray = new float[mMaxOutput];
+      mFloats = FloatBuffer.wrap(mFloatArray);
+    }
+    final float[] out = mFloatArray;
+    final int start = samples.position();
+    final double gain = mGain / FLOAT_SCALE;
+    long i0 = mIntegrators[0], i1 = mIntegrators[1], i2 = mIntegrators[2], i3 = mIntegrators[3];
+    int phase = mPhase;
+    int count = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      // 浮点积分会累积误差，转为定点后用整数积分
+      final float sample = samples.get(start + i);
+      i0 += (long) ((sample > 8 ? 8 : sample < -8 ? -8 : sample) * FLOAT_SCALE);
+      i1 += i0;
+      i2 += i1;
+      i3 += i2;
+      if (--phase == 0) {
+        phase = mFactor;
+        out[count++] = (float) (comb(i3) * gain);
+      }
+    }
+    mIntegrators[0] = i0;
+    mIntegrators[1] = i1;
+    mIntegrators[2] = i2;
+    mIntegrators[3] = i3;
+    mPhase = phase;
+    return count;
+  }
+
+  /**
+   * 按输出采样率逐级差分
+   */
+  private long comb(long value) {
+    final long[] combs = mCombs;
+    for (int i = 0; i < ORDER; i++) {
+      final long previous = combs[i];
+      combs[i] = value;
+      value -= previous;
+    }
+    return value;
+  }
+
+  /**
+   * 最近一次 {@link #process(ShortBuffer, int)} 的输出，从 0 开始
+   */
+  @NonNull
+  public ShortBuffer getShorts() {
+    if (mShorts == null) {
+      throw new IllegalStateException("no 16-bit output");
+    }
+    return mShorts;
+  }
+
+  /**
+   * 最近一次 {@link #process(FloatBuffer, int)} 的输出，从 0 开始
+   */
+  @NonNull
+  public FloatBuffer getFloats() {
+    if (mFloats == null) {
+      throw new IllegalStateException("no float output");
+    }
+    return mFloats;
+  }
+}
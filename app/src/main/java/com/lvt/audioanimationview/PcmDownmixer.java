@@ -0,0 +1,287 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 把录音缓冲转为分析用的单声道样本
+ * <p>
+ * 单声道 16 位 与 浮点 直接返回原缓冲的只读视图，不拷贝也不转换，环形缓冲的数据块使用块自带的视图；
+ * 多声道在一次遍历中取各声道平均值；8 位无符号样本转为 16 位。
+ * 整型输出 {@link ShortBuffer}，浮点输出 -1~1 的 {@link FloatBuffer}，浮点样本不经过整型。
+ * <p>
+ * 非线程安全，只在录音线程使用，输出在下次 mix 前有效。
+ */
+final class PcmDownmixer {
+  private final int mEncoding;
+  private final int mChannelCount;
+  private final int mFrameSize;
+  @Nullable
+  private final short[] mShortArray;
+  @Nullable
+  private final float[] mFloatArray;
+  @Nullable
+  private ShortBuffer mShorts;
+  @Nullable
+  private FloatBuffer mFloats;
+  /**
+   * 当前视图包装的输入，输入不变时复用视图
+   */
+  @Nullable
+  private Object mWrapped;
+  private int mSampleCount;
+
+  /**
+   * @param encoding 样本编码，{@link PcmSource#getEncoding()}
+   * @param channelCount 声道数
+   * @param maxLength 每次最多输入的字节数
+   */
+  PcmDownmixer(int encoding, int channelCount, int maxLength) {
+    if (channelCount <= 0) {
+      throw new IllegalArgumentException("bad channel count");
+    }
+    mEncoding = encoding;
+    mChannelCount = channelCount;
+    mFrameSize = channelCount * getBytesPerSample(encoding);
+    final int maxFrames = maxLength / mFrameSize;
+    final boolean passThrough = channelCount == 1 && encoding != PcmSource.ENCODING_PCM_8BIT;
+    if (passThrough) {
+      mShortArray = null;
+      mFloatArray = null;
+    } else if (encoding == PcmSource.ENCODING_PCM_FLOAT) {
+      mShortArray = null;
+      mFloatArray = new float[maxFrames];
+      mFloats = FloatBuffer.wrap(mFloatArray).asReadOnlyBuffer();
+    } else {
+      mShortArray = new short[maxFrames];
+      mFloatArray = null;
+      mShorts = ShortBuffer.wrap(mShortArray).asReadOnlyBuffer();
+    }
+  }
+
+  /**
+   * 每个样本的字节数
+   */
+  static int getBytesPerSample(int encoding) {
+    switch (encoding) {
+      case PcmSource.ENCODING_PCM_8BIT:
+        return 1;
+      case PcmSource.ENCODING_PCM_16BIT:
+        return 2;
+      case PcmSource.ENCODING_PCM_FLOAT:
+        return 4;
+      default:
+        throw new IllegalArgumentException("bad encoding " + encoding);
+    }
+  }
+
+  /**
+   * 输出是否为浮点，为 true 时读取 {@link #getFloats()}，否则读取 {@link #getShorts()}
+   */
+  boolean isFloat() {
+    return mEncoding == PcmSource.ENCODING_PCM_FLOAT;
+  }
+
+  /**
+   * 单声道 16 位样本，从 position 开始
+   */
+  @NonNull
+  ShortBuffer getShorts() {
+    if (mShorts == null) {
+      throw new IllegalStateException("no short samples");
+    }
+    return mShorts;
+  }
+
+  /**
+   * 单声道浮点样本，从 position 开始
+   */
+  @NonNull
+  FloatBuffer getFloats() {
+    if (mFloats == null) {
+      throw new IllegalStateException("no float samples");
+    }
+    return mFloats;
+  }
+
+  /**
+   * 单声道样本数，即帧数
+   */
+  int getSampleCount() {
+    return mSampleCount;
+  }
+
+  /**
+   * 处理小端序的字节数组
+   *
+   * @param data pcm 数据
+   * @param length 有效字节数
+   */
+  void mix(@NonNull byte[] data, int length) {
+    final int frames = Math.min(length / mFrameSize, capacity());
+    mSampleCount = frames;
+    if (mShortArray == null && mFloatArray == null) {
+      if (mWrapped != data) {
+        wrap(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN));
+        mWrapped = data;
+      } else if (isFloat()) {
+        mFloats.position(0);
+      } else {
+        mShorts.position(0);
+      }
+      return;
+    }
+    final int channels = mChannelCount;
+    int index = 0;
+    switch (mEncoding) {
+      case PcmSource.ENCODING_PCM_8BIT:
+        for (int frame = 0; frame < frames; frame++) {
+          int sum = 0;
+          for (int c = 0; c < channels; c++) {
+            sum += (data[index++] & 0xFF) - 128;
+          }
+          mShortArray[frame] = (short) ((sum << 8) / channels);
+        }
+        break;
+      case PcmSource.ENCODING_PCM_16BIT:
+        for (int frame = 0; frame < frames; frame++) {
+          int sum = 0;
+          for (int c = 0; c < channels; c++) {
+            sum += (short) ((data[index] & 0xFF) | (data[index + 1] << 8));
+            index += 2;
+          }
+          mShortArray[frame] = (short) (sum / channels);
+        }
+        break;
+      default:
+        for (int frame = 0; frame < frames; frame++) {
+          float sum = 0;
+          for (int c = 0; c < channels; c++) {
+            sum += Float.intBitsToFloat((data[index] & 0xFF) | ((data[index + 1] & 0xFF) << 8)
+                | ((data[index + 2] & 0xFF) << 16) | (data[index + 3] << 24));
+            index += 4;
+          }
+          mFloatArray[frame] = sum / channels;
+        }
+        break;
+    }
+  }
+
+  /**
+   * 处理环形缓冲的数据块，单声道直接使用数据块自带的视图，数据块轮换也不分配内存
+   *
+   * @param block 数据块
+   * @param length 有效字节数
+   */
+  void mix(@NonNull PcmRingBuffer.Block block, int length) {
+    if (mShortArray != null || mFloatArray != null) {
+      mix(block.getData(), length);
+      return;
+    }
+    mSampleCount = length / mFrameSize;
+    if (isFloat()) {
+      mFloats = block.getFloatView();
+      mFloats.position(0);
+    } else {
+      mShorts = block.getShortView();
+      mShorts.position(0);
+    }
+    mWrapped = block.getData();
+  }
+
+  /**
+   * 处理本机字节序的缓冲，数据位于 [0, length)，不改变 position 与 limit
+   *
+   * @param data pcm 数据
+   * @param length 有效字节数
+   */
+  void mix(@NonNull ByteBuffer data, int length) {
+    mix(data, 0, length);
+  }
+
+  /**
+   * 处理本机字节序的缓冲，数据位于 [offset, offset + length)，不改变 position 与 limit。
+   * 单声道直接包装时输出视图的 position 指向 offset，同一缓冲反复处理不同位置也不分配内存
+   *
+   * @param data pcm 数据
+   * @param offset 起始字节，按帧对齐
+   * @param length 有效字节数
+   */
+  void mix(@NonNull ByteBuffer data, int offset, int length) {
+    final int frames = Math.min(length / mFrameSize, capacity());
+    mSampleCount = frames;
+    if (mShortArray == null && mFloatArray == null) {
+      if (mWrapped != data) {
+        final ByteBuffer view = data.duplicate();
+        view.clear();
+        wrap(view.order(data.order()));
+        mWrapped = data;
+      }
+      if (isFloat()) {
+        mFloats.position(offset / 4);
+      } else {
+        mShorts.position(offset / 2);
+      }
+      return;
+    }
+    final int channels = mChannelCount;
+    int index = offset;
+    switch (mEncoding) {
+      case PcmSource.ENCODING_PCM_8BIT:
+        for (int frame = 0; frame < frames; frame++) {
+          int sum = 0;
+          for (int c = 0; c < channels; c++) {
+            sum += (data.get(index++) & 0xFF) - 128;
+          }
+          mShortArray[frame] = (short) ((sum << 8) / channels);
+        }
+        break;
+      case PcmSource.ENCODING_PCM_16BIT:
+        for (int frame = 0; frame < frames; frame++) {
+          int sum = 0;
+          for (int c = 0; c < channels; c++) {
+            sum += data.getShort(index);
+            index += 2;
+          }
+          mShortArray[frame] = (short) (sum / channels);
+        }
+        break;
+      default:
+        for (int frame = 0; frame < frames; frame++) {
+          float sum = 0;
+          for (int c = 0; c < channels; c++) {
+            sum += data.getFloat(index);
+            index += 4;
+          }
+          mFloatArray[frame] = sum / channels;
+        }
+        break;
+    }
+  }
+
+  private int capacity() {
+    if (mShortArray != null) {
+      return mShortArray.length;
+    }
+    if (mFloatArray != null) {
+      return mFloatArray.length;
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * 单声道时直接包装输入，position 必须为 0
+   */
+  private void wrap(@NonNull ByteBuffer data) {
+    if (isFloat()) {
+      mFloats = data.asFloatBuffer().asReadOnlyBuffer();
+    } else {
+      mShorts = data.asShortBuffer().asReadOnlyBuffer();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 录音文件写入器，输入小端序 pcm，由实现决定文件格式与编码
+ */
+public interface PcmFileWriter extends Closeable {
+  /**
+   * 追加 pcm 数据
+   *
+   * @param data pcm 数据
+   * @param offset 起始位置
+   * @param length 长度
+   */
+  void write(@NonNull byte[] data, int offset, int length) throws IOException;
+
+  /**
+   * 追加 pcm 数据，写入 {@code data} 的 position 到 limit 之间的字节
+   *
+   * @param data pcm 数据，返回后 position 等于 limit
+   */
+  void write(@NonNull ByteBuffer data) throws IOException;
+
+  /**
+   * 已写入文件的音频数据字节数，编码后的长度
+   */
+  long getDataLength();
+
+  /**
+   * 写出缓冲数据 并 回填头部长度，不关闭文件
+   */
+  void flush() throws IOException;
+}
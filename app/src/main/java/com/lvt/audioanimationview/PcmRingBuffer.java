@@ -0,0 +1,287 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单生产者 / 单消费者 的 pcm 环形缓冲
+ * <p>
+ * 所有数据块在构造时预分配，采集线程通过 {@link #claim()} / {@link #publish(Block, int)} 写入，
+ * 消费线程通过 {@link #acquire()} 或 {@link #acquireLatest()} 取出，使用完毕后必须 {@link #release(Block)}。
+ * 消费方持有的数据块不会被覆盖；环满时新数据块不入队并计入溢出次数。
+ */
+public final class PcmRingBuffer {
+  /**
+   * pcm 数据块
+   */
+  public static final class Block {
+    @NonNull
+    private final byte[] mData;
+    private int mLength;
+    private long mSequence;
+    private long mCaptureTimeNanos;
+    /**
+     * 小端序的只读样本视图，第一次使用时创建，之后随数据块复用
+     */
+    @Nullable
+    private ShortBuffer mShorts;
+    @Nullable
+    private FloatBuffer mFloats;
+
+    private Block(int capacity) {
+      mData = new byte[capacity];
+    }
+
+    /**
+     * 数据的 16 位样本视图，只在采集线程使用
+     */
+    @NonNull
+    ShortBuffer getShortView() {
+      if (mShorts == null) {
+        mShorts = ByteBuffer.wrap(mData).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().asReadOnlyBuffer();
+      }
+      return mShorts;
+    }
+
+    /**
+     * 数据的浮点样本视图，只在采集线程使用
+     */
+    @NonNull
+    FloatBuffer getFloatView() {
+      if (mFloats == null) {
+        mFloats = ByteBuffer.wrap(mData).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().asReadOnlyBuffer();
+      }
+      return mFloats;
+    }
+
+    /**
+     * 数据，只有前 {@link #getLength()} 个字节有效
+     */
+    @NonNull
+    public byte[] getData() {
+      return mData;
+    }
+
+    /**
+     * 有效数据长度
+     */
+    public int getLength() {
+      return mLength;
+    }
+
+    /**
+     * 序号，由生产者递增分配，不连续说明中间有数据块溢出
+     */
+    public long getSequence() {
+      return mSequence;
+    }
+
+    /**
+     * 数据读取返回的时刻，{@link System#nanoTime()} 时基
+     */
+    public long getCaptureTimeNanos() {
+      return mCaptureTimeNanos;
+    }
+  }
+
+  /**
+   * 发布监听，在采集线程回调
+   */
+  public interface OnPublishListener {
+    void onPublish(@NonNull PcmRingBuffer ringBuffer);
+  }
+
+  @NonNull
+  private final Block[] mBlocks;
+  /**
+   * 环满时生产者使用的备用块，不会被发布
+   */
+  @NonNull
+  private final Block mSpare;
+  private final int mMask;
+  private final int mBlockSize;
+  /**
+   * 已发布的数据块总数，只由生产者写
+   */
+  private final AtomicLong mHead = new AtomicLong();
+  /**
+   * 已释放的数据块总数，只由消费者写
+   */
+  private final AtomicLong mTail = new AtomicLong();
+  private final AtomicLong mOverrunCount = new AtomicLong();
+  private final AtomicLong mSkippedCount = new AtomicLong();
+  private long mNextSequence;
+  @Nullable
+  private volatile OnPublishListener mOnPublishListener;
+
+  /**
+   * @param capacity 数据块个数，向上取整为 2 的幂
+   * @param blockSize 每个数据块的字节数
+   */
+  public PcmRingBuffer(int capacity, int blockSize) {
+    if (capacity <= 0 || blockSize <= 0) {
+      throw new IllegalArgumentException("bad ring buffer size");
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    mBlocks = new Block[size];
+    for (int i = 0; i < size; i++) {
+      mBlocks[i] = new Block(blockSize);
+    }
+    mSpare = new Block(blockSize);
+    mMask = size - 1;
+    mBlockSize = blockSize;
+  }
+
+  //<editor-fold desc="生产者">
+
+  /**
+   * 获取一个可写入的数据块，环满时返回备用块，发布时计为溢出
+   */
+  @NonNull
+  public Block claim() {
+    final long head = mHead.get();
+    if (head - mTail.get() < mBlocks.length) {
+      return mBlocks[(int) head & mMask];
+    }
+    return mSpare;
+  }
+
+  /**
+   * 发布 {@link #claim()} 得到的数据块
+   *
+   * @param block 数据块
+   * @param length 有效数据长度
+   * @return 是否入队，false 表示环满溢出
+   */
+  public boolean publish(@NonNull Block block, int length) {
+    return publish(block, length, System.nanoTime());
+  }
+
+  /**
+   * 发布 {@link #claim()} 得到的数据块
+   *
+   * @param block 数据块
+   * @param length 有效数据长度
+   * @param captureTimeNanos 数据读取返回的时刻，{@link System#nanoTime()} 时基
+   * @return 是否入队，false 表示环满溢出
+   */
+  public boolean publish(@NonNull Block block, int length, long captureTimeNanos) {
+    block.mLength = length;
+    block.mCaptureTimeNanos = captureTimeNanos;
+    block.mSequence = mNextSequence++;
+    if (block == mSpare) {
+      mOverrunCount.incrementAndGet();
+      return false;
+    }
+    mHead.lazySet(mHead.get() + 1);
+    OnPublishListener listener = mOnPublishListener;
+    if (listener != null) {
+      listener.onPublish(this);
+    }
+    return true;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="消费者">
+
+  /**
+   * 按顺序取出最早的数据块
+   *
+   * @return 数据块，没有数据时返回 null
+   */
+  @Nullable
+  public Block acquire() {
+    final long tail = mTail.get();
+    if (tail >= mHead.get()) {
+      return null;
+    }
+    return mBlocks[(int) tail & mMask];
+  }
+
+  /**
+   * 丢弃积压的旧数据块，只取出最新的一个，丢弃数计入 {@link #getSkippedCount()}
+   *
+   * @return 数据块，没有数据时返回 null
+   */
+  @Nullable
+  public Block acquireLatest() {
+    final long head = mHead.get();
+    long tail = mTail.get();
+    if (tail >= head) {
+      return null;
+    }
+    if (head - tail > 1) {
+      mSkippedCount.addAndGet(head - tail - 1);
+      tail = head - 1;
+      mTail.lazySet(tail);
+    }
+    return mBlocks[(int) tail & mMask];
+  }
+
+  /**
+   * 释放 {@link #acquire()} / {@link #acquireLatest()} 得到的数据块
+   *
+   * @param block 数据块
+   */
+  public void release(@NonNull Block block) {
+    final long tail = mTail.get();
+    if (block != mBlocks[(int) tail & mMask] || tail >= mHead.get()) {
+      throw new IllegalStateException("block is not acquired");
+    }
+    mTail.lazySet(tail + 1);
+  }
+  //</editor-fold>
+
+  /**
+   * 设置发布监听
+   *
+   * @param listener 监听
+   */
+  public void setOnPublishListener(@Nullable OnPublishListener listener) {
+    mOnPublishListener = listener;
+  }
+
+  /**
+   * 每个数据块的字节数
+   */
+  public int getBlockSize() {
+    return mBlockSize;
+  }
+
+  /**
+   * 数据块个数
+   */
+  public int getCapacity() {
+    return mBlocks.length;
+  }
+
+  /**
+   * 当前可读的数据块个数
+   */
+  public int size() {
+    return (int) (mHead.get() - mTail.get());
+  }
+
+  /**
+   * 因环满而未入队的数据块数
+   */
+  public long getOverrunCount() {
+    return mOverrunCount.get();
+  }
+
+  /**
+   * 被 {@link #acquireLatest()} 跳过的数据块数
+   */
+  public long getSkippedCount() {
+    return mSkippedCount.get();
+  }
+}
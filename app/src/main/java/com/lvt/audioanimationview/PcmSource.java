@@ -0,0 +1,90 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * pcm 数据源
+ * <p>
+ * 录音管线只依赖该接口，可以是麦克风，也可以是文件回放或合成信号，便于在没有麦克风的环境下复现和测量。
+ * 除 {@link #stop()} 外，所有方法都只在读取线程调用。
+ */
+public interface PcmSource {
+  /**
+   * {@link #read(byte[], int, int)} 返回该值表示数据已读完
+   */
+  int END_OF_STREAM = -1;
+  /**
+   * 样本编码，取值与 {@code AudioFormat} 相同：16 位有符号整型
+   */
+  int ENCODING_PCM_16BIT = 2;
+  /**
+   * 8 位无符号整型，128 为零点
+   */
+  int ENCODING_PCM_8BIT = 3;
+  /**
+   * 32 位浮点，-1~1
+   */
+  int ENCODING_PCM_FLOAT = 4;
+
+  /**
+   * 采样率
+   */
+  int getSampleRateInHz();
+
+  /**
+   * 声道数
+   */
+  int getChannelCount();
+
+  /**
+   * 采样位数
+   */
+  int getBitsPerSample();
+
+  /**
+   * 样本编码，{@link #ENCODING_PCM_8BIT}、{@link #ENCODING_PCM_16BIT} 或 {@link #ENCODING_PCM_FLOAT}
+   */
+  int getEncoding();
+
+  /**
+   * 建议的每次读取字节数
+   */
+  int getBufferSize();
+
+  /**
+   * 开始产生数据
+   */
+  void start() throws IOException;
+
+  /**
+   * 读取 pcm 数据，可能阻塞
+   *
+   * @param buffer 缓冲
+   * @param offset 起始位置
+   * @param length 最多读取的字节数
+   * @return 实际读取的字节数，暂时没有数据返回 0，读完返回 {@link #END_OF_STREAM}
+   */
+  int read(@NonNull byte[] buffer, int offset, int length) throws IOException;
+
+  /**
+   * 读取 pcm 数据到直接缓冲，多字节样本为本机字节序，与 {@code AudioRecord.read(ByteBuffer, int)} 相同
+   *
+   * @param buffer 直接缓冲，数据写入 [0, 返回值)，不保证 position 与 limit 不变
+   * @param length 最多读取的字节数
+   * @return 实际读取的字节数，暂时没有数据返回 0，读完返回 {@link #END_OF_STREAM}
+   */
+  int read(@NonNull ByteBuffer buffer, int length) throws IOException;
+
+  /**
+   * 停止产生数据，可在任意线程调用，阻塞中的 {@link #read(byte[], int, int)} 应尽快返回
+   */
+  void stop();
+
+  /**
+   * 释放资源
+   */
+  void release();
+}
@@ -0,0 +1,300 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 录音的多级波形索引，与 wav 文件同名加 {@link #FILE_SUFFIX} 后缀
+ * <p>
+ * 每级每条记录若干样本的 最小值、最大值、RMS（16 位量程），默认 256 / 4096 / 65536 样本一条。
+ * 绘制概览时按每列样本数选最粗的可用级别，只读取可见范围内的条目，一小时的录音也只需读几十 KB。
+ * <p>
+ * 文件格式（小端）：魔数 "PEAK"、版本、采样率、级数、样本数(long)，各级 每条样本数 与 条目数，
+ * 之后按级别依次存放条目，每条 3 个 short。
+ * <p>
+ * 读取共用一个缓冲，非线程安全。
+ */
+public final class PeakIndex implements Closeable {
+  /**
+   * 索引文件后缀
+   */
+  public static final String FILE_SUFFIX = ".peaks";
+  /**
+   * 默认各级每条的样本数
+   */
+  static final int[] DEFAULT_SAMPLES_PER_ENTRY = {256, 4096, 65536};
+  static final int MAGIC = 'P' | ('E' << 8) | ('A' << 16) | ('K' << 24);
+  static final int VERSION = 1;
+  /**
+   * 每条的 short 个数：最小值、最大值、RMS
+   */
+  static final int ENTRY_SHORTS = 3;
+  private static final int ENTRY_SIZE = ENTRY_SHORTS * 2;
+  private static final int FIXED_HEADER_SIZE = 24;
+  private static final int READ_ENTRIES = 1024;
+
+  @NonNull
+  private final RandomAccessFile mFile;
+  @NonNull
+  private final FileChannel mChannel;
+  private final int mSampleRateInHz;
+  private final long mSampleCount;
+  @NonNull
+  private final int[] mSamplesPerEntry;
+  @NonNull
+  private final int[] mEntryCount;
+  /**
+   * 各级条目在文件中的偏移
+   */
+  @NonNull
+  private final long[] mOffset;
+  @NonNull
+  private final ByteBuffer mBuffer;
+
+  private PeakIndex(@NonNull RandomAccessFile file) throws IOException {
+    mFile = file;
+    mChannel = file.getChannel();
+    mBuffer = ByteBuffer.allocate(READ_ENTRIES * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(0, FIXED_HEADER_SIZE);
+    if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+      throw new IOException("not a peak index");
+    }
+    mSampleRateInHz = mBuffer.getInt(8);
+    final int levels = mBuffer.getInt(12);
+    mSampleCount = mBuffer.getLong(16);
+    if (levels <= 0 || levels > READ_ENTRIES * ENTRY_SIZE / 8) {
+      throw new IOException("bad peak levels " + levels);
+    }
+    mSamplesPerEntry = new int[levels];
+    mEntryCount = new int[levels];
+    mOffset = new long[levels];
+    readFully(FIXED_HEADER_SIZE, levels * 8);
+    long offset = FIXED_HEADER_SIZE + levels * 8;
+    for (int level = 0; level < levels; level++) {
+      mSamplesPerEntry[level] = mBuffer.getInt(level * 8);
+      mEntryCount[level] = mBuffer.getInt(level * 8 + 4);
+      if (mSamplesPerEntry[level] <= 0 || mEntryCount[level] < 0) {
+        throw new IOException("bad peak level " + level);
+      }
+      mOffset[level] = offset;
+      offset += (long) mEntryCount[level] * ENTRY_SIZE;
+    }
+    if (offset > mChannel.size()) {
+      throw new IOException("truncated peak index");
+    }
+  }
+
+  /**
+   * wav 文件对应的索引文件
+   */
+  @NonNull
+  public static File getIndexFile(@NonNull File wavFile) {
+    return new File(wavFile.getPath() + FILE_SUFFIX);
+  }
+
+  /**
+   * 打开索引文件，只读取头部
+   *
+   * @param indexFile 索引文件
+   * @throws IOException 读取失败 或 格式不对
+   */
+  @NonNull
+  public static PeakIndex open(@NonNull File indexFile) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+    try {
+      return new PeakIndex(file);
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  /**
+   * 录音的单声道样本数
+   */
+  public long getSampleCount() {
+    return mSampleCount;
+  }
+
+  public int getLevelCount() {
+    return mSamplesPerEntry.length;
+  }
+
+  /**
+   * 该级每条的样本数
+   */
+  public int getSamplesPerEntry(int level) {
+    return mSamplesPerEntry[level];
+  }
+
+  /**
+   * 该级的条目数
+   */
+  public int getEntryCount(int level) {
+    return mEntryCount[level];
+  }
+
+  /**
+   * 每条样本数不超过 samplesPerColumn 的最粗级别，都超过时为最细一级
+   */
+  public int selectLevel(long samplesPerColumn) {
+    int selected = 0;
+    for (int level = 1; level < mSamplesPerEntry.length; level++) {
+      if (mSamplesPerEntry[level] <= samplesPerColumn) {
+        selected = level;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * 读取连续的条目
+   *
+   * @param level 级别
+   * @param firstEntry 第一条的下标
+   * @param count 条数
+   * @param out 输出，每条依次为 最小值、最大值、RMS，长度不小于 count × 3
+   * @return 实际读取的条数
+   */
+  public int readEntries(int level, int firstEntry, int count, @NonNull short[] out) throws IOException {
+    count = Math.max(0, Math.min(count, mEntryCount[level] - firstEntry));
+    int done = 0;
+    while (done < count) {
+      final int n = Math.min(count - done, READ_ENTRIES);
+      readFully(mOffset[level] + (long) (firstEntry + done) * ENTRY_SIZE, n * ENTRY_SIZE);
+      mBuffer.asShortBuffer().get(out, done * ENTRY_SHORTS, n * ENTRY_SHORTS);
+      done += n;
+    }
+    return count;
+  }
+
+  /**
+   * 把一段样本范围归并到若干列，用于绘制概览，只读取所选级别在范围内的条目；
+   * 放大到每列不足一条时，每列取覆盖它的条目
+   *
+   * @param firstSample 起始样本
+   * @param sampleCount 样本数
+   * @param columns 列数
+   * @param out 输出，每列依次为 最小值、最大值、RMS，长度不小于 columns × 3；没有数据的列为 0
+   */
+  public void readOverview(long firstSample, long sampleCount, int columns, @NonNull short[] out)
+      throws IOException {
+    if (columns <= 0) {
+      return;
+    }
+    Arrays.fill(out, 0, columns * ENTRY_SHORTS, (short) 0);
+    if (sampleCount <= 0) {
+      return;
+    }
+    final int level = selectLevel(sampleCount / columns);
+    final int samplesPerEntry = mSamplesPerEntry[level];
+    if (samplesPerEntry > sampleCount / columns) {
+      readSpread(level, firstSample, sampleCount, columns, out);
+      return;
+    }
+    final long first = Math.max(0, firstSample / samplesPerEntry);
+    final long end = Math.min(mEntryCount[level], (firstSample + sampleCount + samplesPerEntry - 1) / samplesPerEntry);
+    int lastColumn = -1;
+    double sumSquares = 0;
+    int entries = 0;
+    for (long entry = first; entry < end; ) {
+      final int n = (int) Math.min(end - entry, READ_ENTRIES);
+      readFully(mOffset[level] + entry * ENTRY_SIZE, n * ENTRY_SIZE);
+      for (int i = 0; i < n; i++, entry++) {
+        final long start = Math.max(entry * samplesPerEntry, firstSample);
+        final int column = (int) Math.min(columns - 1, (start - firstSample) * columns / sampleCount);
+        final int min = mBuffer.getShort(i * ENTRY_SIZE);
+        final int max = mBuffer.getShort(i * ENTRY_SIZE + 2);
+        final int rms = mBuffer.getShort(i * ENTRY_SIZE + 4);
+        final int index = column * ENTRY_SHORTS;
+        if (column != lastColumn) {
+          if (lastColumn >= 0) {
+            out[lastColumn * ENTRY_SHORTS + 2] = (short) Math.round(Math.sqrt(sumSquares / entries));
+          }
+          out[index] = (short) min;
+          out[index + 1] = (short) max;
+          sumSquares = 0;
+          entries = 0;
+          lastColumn = column;
+        } else {
+          out[index] = (short) Math.min(out[index], min);
+          out[index + 1] = (short) Math.max(out[index + 1], max);
+        }
+        sumSquares += (double) rms * rms;
+        entries++;
+      }
+    }
+    if (lastColumn >= 0) {
+      out[lastColumn * ENTRY_SHORTS + 2] = (short) Math.round(Math.sqrt(sumSquares / entries));
+    }
+  }
+
+  /**
+   * 每列不足一条时，逐列取覆盖该列的条目，一条会铺到相邻的多列
+   */
+  private void readSpread(int level, long firstSample, long sampleCount, int columns, @NonNull short[] out)
+      throws IOException {
+    final int samplesPerEntry = mSamplesPerEntry[level];
+    final int entryCount = mEntryCount[level];
+    long bufferFirst = 0;
+    int bufferCount = 0;
+    for (int column = 0; column < columns; column++) {
+      final long start = firstSample + column * sampleCount / columns;
+      final long end = Math.max(start + 1, firstSample + (column + 1) * sampleCount / columns);
+      final long first = Math.max(0, start / samplesPerEntry);
+      final long last = Math.min(entryCount, (end + samplesPerEntry - 1) / samplesPerEntry);
+      int min = Short.MAX_VALUE;
+      int max = Short.MIN_VALUE;
+      double sumSquares = 0;
+      int entries = 0;
+      for (long entry = first; entry < last; entry++) {
+        if (entry < bufferFirst || entry >= bufferFirst + bufferCount) {
+          // 列是递增的，缓冲从当前条目开始重新读取
+          bufferFirst = entry;
+          bufferCount = (int) Math.min(entryCount - entry, READ_ENTRIES);
+          readFully(mOffset[level] + entry * ENTRY_SIZE, bufferCount * ENTRY_SIZE);
+        }
+        final int offset = (int) (entry - bufferFirst) * ENTRY_SIZE;
+        min = Math.min(min, mBuffer.getShort(offset));
+        max = Math.max(max, mBuffer.getShort(offset + 2));
+        final int rms = mBuffer.getShort(offset + 4);
+        sumSquares += (double) rms * rms;
+        entries++;
+      }
+      if (entries > 0) {
+        final int index = column * ENTRY_SHORTS;
+        out[index] = (short) min;
+        out[index + 1] = (short) max;
+        out[index + 2] = (short) Math.round(Math.sqrt(sumSquares / entries));
+      }
+    }
+  }
+
+  private void readFully(long position, int length) throws IOException {
+    mBuffer.clear();
+    mBuffer.limit(length);
+    while (mBuffer.hasRemaining()) {
+      if (mChannel.read(mBuffer, position + mBuffer.position()) < 0) {
+        throw new IOException("unexpected end of file");
+      }
+    }
+    mBuffer.flip();
+  }
+
+  @Override
+  public void close() throws IOException {
+    mFile.close();
+  }
+}
@@ -0,0 +1,243 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 录音时逐级累积 最小值 / 最大值 / RMS 金字塔，结束时写成 {@link PeakIndex} 索引文件
+ * <p>
+ * 只有最细一级逐样本计算，每满一条即并入上一级，上一级不再遍历样本。
+ * 条目数组按倍数扩容，一小时 16kHz 的录音最细一级约 1.3MB。非线程安全，只在录音线程使用。
+ */
+final class PeakIndexBuilder {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int mSampleRateInHz;
+  @NonNull
+  private final int[] mSamplesPerEntry;
+  /**
+   * 各级已完成的条目，每条依次为 最小值、最大值、RMS
+   */
+  @NonNull
+  private final short[][] mEntries;
+  @NonNull
+  private final int[] mEntryCount;
+  /**
+   * 各级当前条目的累积值
+   */
+  @NonNull
+  private final int[] mMin;
+  @NonNull
+  private final int[] mMax;
+  @NonNull
+  private final double[] mSumSquares;
+  @NonNull
+  private final int[] mCount;
+  private long mSampleCount;
+
+  /**
+   * @param sampleRateInHz 采样率
+   * @param samplesPerEntry 各级每条的样本数，由细到粗，每级必须是上一级的整数倍
+   */
+  PeakIndexBuilder(int sampleRateInHz, @NonNull int[] samplesPerEntry) {
+    if (samplesPerEntry.length == 0 || samplesPerEntry[0] <= 0) {
+      throw new IllegalArgumentException("bad peak levels");
+    }
+    for (int level = 1; level < samplesPerEntry.length; level++) {
+      if (samplesPerEntry[level] <= samplesPerEntry[level - 1]
+          || samplesPerEntry[level] % samplesPerEntry[level - 1] != 0) {
+        throw new IllegalArgumentException("bad peak levels");
+      }
+    }
+    final int levels = samplesPerEntry.length;
+    mSampleRateInHz = sampleRateInHz;
+    mSamplesPerEntry = samplesPerEntry.clone();
+    mEntries = new short[levels][INITIAL_CAPACITY * PeakIndex.ENTRY_SHORTS];
+    mEntryCount = new int[levels];
+    mMin = new int[levels];
+    mMax = new int[levels];
+    mSumSquares = new double[levels];
+    mCount = new int[levels];
+    for (int level = 0; level < levels; level++) {
+      resetAccumulator(level);
+    }
+  }
+
+  /**
+   * 累积 16 位单声道样本
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   */
+  void add(@NonNull ShortBuffer samples, int sampleCount) {
+    final int entrySize = mSamplesPerEntry[0];
+    final int start = samples.position();
+    int i = 0;
+    while (i < sampleCount) {
+      final int end = Math.min(sampleCount, i + entrySize - mCount[0]);
+      int min = mMin[0];
+      int max = mMax[0];
+      long sumSquares = 0;
+      for (int j = i; j < end; j++) {
+        final int sample = samples.get(start + j);
+        if (sample < min) {
+          min = sample;
+        }
+        if (sample > max) {
+          max = sample;
+        }
+        sumSquares += sample * sample;
+      }
+      accumulate(min, max, sumSquares, end - i);
+      i = end;
+    }
+  }
+
+  /**
+   * 累积浮点单声道样本，-1~1 为满幅，按 16 位量程保存
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   */
+  void add(@NonNull FloatBuffer samples, int sampleCount) {
+    final int entrySize = mSamplesPerEntry[0];
+    final int start = samples.position();
+    int i = 0;
+    while (i < sampleCount) {
+      final int end = Math.min(sampleCount, i + entrySize - mCount[0]);
+      int min = mMin[0];
+      int max = mMax[0];
+      double sumSquares = 0;
+      for (int j = i; j < end; j++) {
+        final float value = samples.get(start + j) * 32768f;
+        final int sample = value >= Short.MAX_VALUE ? Short.MAX_VALUE
+            : value <= Short.MIN_VALUE ? Short.MIN_VALUE : (int) value;
+        if (sample < min) {
+          min = sample;
+        }
+        if (sample > max) {
+          max = sample;
+        }
+        sumSquares += value * value;
+      }
+      accumulate(min, max, sumSquares, end - i);
+      i = end;
+    }
+  }
+
+  /**
+   * 并入最细一级，满一条时逐级向上合并
+   */
+  private void accumulate(int min, int max, double sumSquares, int count) {
+    mMin[0] = min;
+    mMax[0] = max;
+    mSumSquares[0] += sumSquares;
+    mCount[0] += count;
+    mSampleCount += count;
+    for (int level = 0; level < mSamplesPerEntry.length && mCount[level] == mSamplesPerEntry[level]; level++) {
+      completeEntry(level);
+    }
+  }
+
+  /**
+   * 输出当前条目 并 并入上一级
+   */
+  private void completeEntry(int level) {
+    final int count = mCount[level];
+    appendEntry(level, mMin[level], mMax[level], Math.sqrt(mSumSquares[level] / count));
+    final int parent = level + 1;
+    if (parent < mSamplesPerEntry.length) {
+      mMin[parent] = Math.min(mMin[parent], mMin[level]);
+      mMax[parent] = Math.max(mMax[parent], mMax[level]);
+      mSumSquares[parent] += mSumSquares[level];
+      mCount[parent] += count;
+    }
+    resetAccumulator(level);
+  }
+
+  private void appendEntry(int level, int min, int max, double rms) {
+    short[] entries = mEntries[level];
+    final int index = mEntryCount[level] * PeakIndex.ENTRY_SHORTS;
+    if (index + PeakIndex.ENTRY_SHORTS > entries.length) {
+      final short[] grown = new short[entries.length * 2];
+      System.arraycopy(entries, 0, grown, 0, index);
+      mEntries[level] = entries = grown;
+    }
+    entries[index] = (short) min;
+    entries[index + 1] = (short) max;
+    entries[index + 2] = (short) Math.min(Short.MAX_VALUE, Math.round(rms));
+    mEntryCount[level]++;
+  }
+
+  private void resetAccumulator(int level) {
+    mMin[level] = Short.MAX_VALUE;
+    mMax[level] = Short.MIN_VALUE;
+    mSumSquares[level] = 0;
+    mCount[level] = 0;
+  }
+
+  /**
+   * 已累积的样本数
+   */
+  long getSampleCount() {
+    return mSampleCount;
+  }
+
+  /**
+   * 输出各级未满的最后一条 并 写入索引文件，之后不应再累积
+   *
+   * @param indexFile 索引文件，{@link PeakIndex#getIndexFile(File)}
+   */
+  void write(@NonNull File indexFile) throws IOException {
+    final int levels = mSamplesPerEntry.length;
+    for (int level = 0; level < levels; level++) {
+      if (mCount[level] > 0) {
+        completeEntry(level);
+      }
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(8 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    final RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+    try {
+      final FileChannel channel = file.getChannel();
+      channel.truncate(0);
+      buffer.putInt(PeakIndex.MAGIC);
+      buffer.putInt(PeakIndex.VERSION);
+      buffer.putInt(mSampleRateInHz);
+      buffer.putInt(levels);
+      buffer.putLong(mSampleCount);
+      for (int level = 0; level < levels; level++) {
+        buffer.putInt(mSamplesPerEntry[level]);
+        buffer.putInt(mEntryCount[level]);
+      }
+      for (int level = 0; level < levels; level++) {
+        final short[] entries = mEntries[level];
+        final int length = mEntryCount[level] * PeakIndex.ENTRY_SHORTS;
+        for (int i = 0; i < length; i++) {
+          if (buffer.remaining() < 2) {
+            writeBuffer(channel, buffer);
+          }
+          buffer.putShort(entries[i]);
+        }
+      }
+      writeBuffer(channel, buffer);
+    } finally {
+      file.close();
+    }
+  }
+
+  private static void writeBuffer(@NonNull FileChannel channel, @NonNull ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -0,0 +1,79 @@
+package com.lvt.audioanimationview;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 视图从任意线程接收的最新一份数据
+ * <p>
+ * {@link #offer(byte[])} 把调用方的数据复制进视图自己的数组再挂起，调用方随后可以复用自己的缓冲区；
+ * 绘制线程用 {@link #take(byte[])} 换出正在画的数组，换下的数组留给下次复制。
+ * 写入方只复制到自己独占的空闲数组，正在画和待取走的数组不会被改写；长度不变时不再分配。
+ * 每份新数据都换一个数组，渲染器可以按数组是否变化判断数据是否更新。
+ */
+final class PendingBytes {
+    // 待绘制的 null，与没有待绘制的数据区分，取走后清空数据
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final AtomicReference<byte[]> mPending = new AtomicReference<>();
+    // 已不再使用的数组，写入方取走后独占
+    private final AtomicReference<byte[]> mSpare = new AtomicReference<>();
+
+    /**
+     * 复制一份挂起，null 表示清空，可在任意线程调用
+     *
+     * @return true 表示覆盖了还没被取走的数据
+     */
+    boolean offer(byte[] bytes) {
+        byte[] copy = NO_DATA;
+        if (bytes != null) {
+            copy = obtain(bytes.length);
+            System.arraycopy(bytes, 0, copy, 0, bytes.length);
+        }
+        final byte[] previous = mPending.getAndSet(copy);
+        if (previous != null && previous != NO_DATA) {
+            recycle(previous);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取一个独占的数组，优先复用回收的数组
+     */
+    byte[] obtain(int length) {
+        final byte[] spare = mSpare.getAndSet(null);
+        return spare != null && spare.length == length ? spare : new byte[length];
+    }
+
+    /**
+     * 回收不再使用的数组，之后不能再读写它
+     */
+    void recycle(byte[] bytes) {
+        if (bytes != null && bytes != NO_DATA) {
+            mSpare.set(bytes);
+        }
+    }
+
+    /**
+     * 是否有待取走的数据，清空不算
+     */
+    boolean hasPending() {
+        final byte[] pending = mPending.get();
+        return pending != null && pending != NO_DATA;
+    }
+
+    /**
+     * 在绘制线程取走挂起的数据
+     *
+     * @param current 正在画的数组，换出后回收
+     * @return 之后要画的数组，没有新数据时原样返回 current，清空时返回 null
+     */
+    byte[] take(byte[] current) {
+        final byte[] pending = mPending.getAndSet(null);
+        if (pending == null) {
+            return current;
+        }
+        recycle(current);
+        return pending != NO_DATA ? pending : null;
+    }
+}
@@ -0,0 +1,334 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 录音到绘制管线的运行指标：计数器 与 固定分桶的耗时直方图
+ * <p>
+ * 录音线程、绘制线程直接写入原子变量，不加锁、不分配内存；
+ * {@link #snapshot(Snapshot)} 可在任意线程定期调用，复制当前值用于打印或上报。
+ * 各指标分别原子，快照之间不保证严格一致。
+ */
+public final class PipelineMetrics {
+  private static final PipelineMetrics sInstance = new PipelineMetrics();
+
+  //<editor-fold desc="录音线程">
+  /**
+   * 读到数据的录音缓冲数
+   */
+  final AtomicLong mBuffers = new AtomicLong();
+  /**
+   * 读到的 pcm 字节数
+   */
+  final AtomicLong mBytes = new AtomicLong();
+  /**
+   * 读取返回 0 的次数
+   */
+  final AtomicLong mZeroReads = new AtomicLong();
+  /**
+   * 读取或写文件失败的次数
+   */
+  final AtomicLong mCaptureErrors = new AtomicLong();
+  /**
+   * 每个缓冲从读取返回到处理完（写文件、分析、监听）的耗时
+   */
+  final Histogram mProcessNanos = new Histogram();
+  //</editor-fold>
+
+  //<editor-fold desc="绘制线程">
+  /**
+   * 已发布但还没被绘制就被更新的数据覆盖的次数
+   */
+  final AtomicLong mOverwritten = new AtomicLong();
+  /**
+   * 绘制的帧数
+   */
+  final AtomicLong mFrames = new AtomicLong();
+  /**
+   * 每帧绘制耗时，View 为 onDraw，SurfaceView 为锁定到提交画布
+   */
+  final Histogram mDrawNanos = new Histogram();
+  /**
+   * 从读取返回到该缓冲的数据首次画出的延迟
+   */
+  final Histogram mLatencyNanos = new Histogram();
+  //</editor-fold>
+
+  /**
+   * 全局实例，录音与绘制默认写入这里
+   */
+  @NonNull
+  public static PipelineMetrics getInstance() {
+    return sInstance;
+  }
+
+  /**
+   * 复制当前值
+   *
+   * @param out 复用的快照
+   * @return out
+   */
+  @NonNull
+  public Snapshot snapshot(@NonNull Snapshot out) {
+    out.mBuffers = mBuffers.get();
+    out.mBytes = mBytes.get();
+    out.mZeroReads = mZeroReads.get();
+    out.mCaptureErrors = mCaptureErrors.get();
+    out.mOverwritten = mOverwritten.get();
+    out.mFrames = mFrames.get();
+    mProcessNanos.snapshot(out.mProcessNanos);
+    mDrawNanos.snapshot(out.mDrawNanos);
+    mLatencyNanos.snapshot(out.mLatencyNanos);
+    return out;
+  }
+
+  @NonNull
+  public Snapshot snapshot() {
+    return snapshot(new Snapshot());
+  }
+
+  /**
+   * 清零所有指标
+   */
+  public void reset() {
+    mBuffers.set(0);
+    mBytes.set(0);
+    mZeroReads.set(0);
+    mCaptureErrors.set(0);
+    mOverwritten.set(0);
+    mFrames.set(0);
+    mProcessNanos.reset();
+    mDrawNanos.reset();
+    mLatencyNanos.reset();
+  }
+
+  /**
+   * 固定分桶的耗时直方图，第 i 个桶的上限约为 65.5 微秒 × 2^i，最后一个桶不设上限
+   */
+  static final class Histogram {
+    static final int BUCKET_COUNT = 16;
+    private static final int BASE_SHIFT = 16;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 第 i 个桶的上限，纳秒（约 65.5 微秒 × 2^i）
+     */
+    static long getUpperBoundNanos(int bucket) {
+      return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (BASE_SHIFT + bucket);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 纳秒，负数按 0 记录
+     */
+    void record(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      // 按 2 的幂分桶，不需要查找
+      final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos >> BASE_SHIFT));
+      mBuckets.incrementAndGet(bucket);
+      mCount.incrementAndGet();
+      mSum.addAndGet(nanos);
+      long max;
+      while (nanos > (max = mMax.get())) {
+        if (mMax.compareAndSet(max, nanos)) {
+          break;
+        }
+      }
+    }
+
+    void snapshot(@NonNull HistogramSnapshot out) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        out.mBuckets[i] = mBuckets.get(i);
+      }
+      out.mCount = mCount.get();
+      out.mSum = mSum.get();
+      out.mMax = mMax.get();
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        mBuckets.set(i, 0);
+      }
+      mCount.set(0);
+      mSum.set(0);
+      mMax.set(0);
+    }
+  }
+
+  /**
+   * 直方图快照
+   */
+  public static final class HistogramSnapshot {
+    @NonNull
+    private final long[] mBuckets = new long[Histogram.BUCKET_COUNT];
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    public long getCount() {
+      return mCount;
+    }
+
+    /**
+     * 平均值，纳秒
+     */
+    public long getMeanNanos() {
+      return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * 最大值，纳秒
+     */
+    public long getMaxNanos() {
+      return mMax;
+    }
+
+    /**
+     * 分位数的估计值，取所在桶的上限（不超过最大值），纳秒
+     *
+     * @param quantile 0~1，如 0.99
+     */
+    public long getQuantileNanos(double quantile) {
+      if (mCount == 0) {
+        return 0;
+      }
+      final long rank = (long) Math.ceil(quantile * mCount);
+      long seen = 0;
+      for (int i = 0; i < mBuckets.length; i++) {
+        seen += mBuckets[i];
+        if (seen >= rank) {
+          return Math.min(Histogram.getUpperBoundNanos(i), mMax);
+        }
+      }
+      return mMax;
+    }
+
+    /**
+     * 各桶的计数，第 i 个桶的上限约为 65.5 微秒 × 2^i，最后一个桶不设上限
+     */
+    @NonNull
+    public long[] getBuckets() {
+      return mBuckets;
+    }
+
+    @Override
+    public String toString() {
+      return "n=" + mCount
+          + " mean=" + millis(getMeanNanos())
+          + " p50=" + millis(getQuantileNanos(0.5))
+          + " p99=" + millis(getQuantileNanos(0.99))
+          + " max=" + millis(mMax);
+    }
+
+    private static String millis(long nanos) {
+      return (nanos / 10000) / 100f + "ms";
+    }
+  }
+
+  /**
+   * 指标快照，可复用
+   */
+  public static final class Snapshot {
+    private long mBuffers;
+    private long mBytes;
+    private long mZeroReads;
+    private long mCaptureErrors;
+    private long mOverwritten;
+    private long mFrames;
+    @NonNull
+    private final HistogramSnapshot mProcessNanos = new HistogramSnapshot();
+    @NonNull
+    private final HistogramSnapshot mDrawNanos = new HistogramSnapshot();
+    @NonNull
+    private final HistogramSnapshot mLatencyNanos = new HistogramSnapshot();
+
+    /**
+     * 读到数据的录音缓冲数
+     */
+    public long getBuffers() {
+      return mBuffers;
+    }
+
+    /**
+     * 读到的 pcm 字节数
+     */
+    public long getBytes() {
+      return mBytes;
+    }
+
+    /**
+     * 读取返回 0 的次数
+     */
+    public long getZeroReads() {
+      return mZeroReads;
+    }
+
+    /**
+     * 读取或写文件失败的次数
+     */
+    public long getCaptureErrors() {
+      return mCaptureErrors;
+    }
+
+    /**
+     * 数据还没被绘制就被更新的数据覆盖的次数
+     */
+    public long getOverwritten() {
+      return mOverwritten;
+    }
+
+    /**
+     * 绘制的帧数
+     */
+    public long getFrames() {
+      return mFrames;
+    }
+
+    /**
+     * 每个录音缓冲的处理耗时
+     */
+    @NonNull
+    public HistogramSnapshot getProcessTime() {
+      return mProcessNanos;
+    }
+
+    /**
+     * 每帧绘制耗时
+     */
+    @NonNull
+    public HistogramSnapshot getDrawTime() {
+      return mDrawNanos;
+    }
+
+    /**
+     * 从读取返回到画出的延迟，即屏幕上音频的“年龄”，不含缓冲本身的时长
+     */
+    @NonNull
+    public HistogramSnapshot getLatency() {
+      return mLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "buffers=" + mBuffers
+          + " bytes=" + mBytes
+          + " zeroReads=" + mZeroReads
+          + " errors=" + mCaptureErrors
+          + " overwritten=" + mOverwritten
+          + " frames=" + mFrames
+          + " process[" + mProcessNanos + "]"
+          + " draw[" + mDrawNanos + "]"
+          + " latency[" + mLatencyNanos + "]";
+    }
+  }
+}
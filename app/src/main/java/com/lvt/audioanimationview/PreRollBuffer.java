@@ -0,0 +1,109 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 布防期间的预录缓冲，只保留最近一段 pcm 数据
+ * <p>
+ * 容量在构造时固定为帧大小的整数倍，写满后覆盖最旧的数据，布防多久内存都不变，也不读写磁盘。
+ * 每次写入都是整帧时，保留的数据始终从帧边界开始。非线程安全，只在录音线程使用。
+ */
+final class PreRollBuffer {
+  @NonNull
+  private final byte[] mData;
+  private final int mFrameSize;
+  private final int mBytesPerSecond;
+  /**
+   * 最旧数据的位置
+   */
+  private int mHead;
+  private int mSize;
+
+  /**
+   * @param durationMs 保留的时长，毫秒
+   * @param sampleRateInHz 采样率
+   * @param frameSize 每帧字节数
+   */
+  PreRollBuffer(int durationMs, int sampleRateInHz, int frameSize) {
+    if (durationMs <= 0 || sampleRateInHz <= 0 || frameSize <= 0) {
+      throw new IllegalArgumentException("bad pre-roll parameters");
+    }
+    final long frames = Math.max(1, (long) sampleRateInHz * durationMs / 1000);
+    final long capacity = frames * frameSize;
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("pre-roll too long");
+    }
+    mData = new byte[(int) capacity];
+    mFrameSize = frameSize;
+    mBytesPerSecond = sampleRateInHz * frameSize;
+  }
+
+  /**
+   * 追加数据，超出容量时丢弃最旧的数据
+   */
+  void write(@NonNull byte[] buffer, int offset, int length) {
+    final int capacity = mData.length;
+    if (length >= capacity) {
+      // 只有最新的一段有用
+      System.arraycopy(buffer, offset + length - capacity, mData, 0, capacity);
+      mHead = 0;
+      mSize = capacity;
+      return;
+    }
+    int tail = mHead + mSize;
+    if (tail >= capacity) {
+      tail -= capacity;
+    }
+    final int first = Math.min(length, capacity - tail);
+    System.arraycopy(buffer, offset, mData, tail, first);
+    System.arraycopy(buffer, offset + first, mData, 0, length - first);
+    final int overflow = mSize + length - capacity;
+    if (overflow > 0) {
+      mHead += overflow;
+      if (mHead >= capacity) {
+        mHead -= capacity;
+      }
+      mSize = capacity;
+    } else {
+      mSize += length;
+    }
+  }
+
+  /**
+   * 从最旧的数据开始取出
+   *
+   * @return 取出的字节数，0 表示已取完
+   */
+  int read(@NonNull byte[] buffer, int offset, int length) {
+    // 按整帧取出，调用方每次拿到的都是完整样本
+    final int count = Math.min(mSize, length / mFrameSize * mFrameSize);
+    final int first = Math.min(count, mData.length - mHead);
+    System.arraycopy(mData, mHead, buffer, offset, first);
+    System.arraycopy(mData, 0, buffer, offset + first, count - first);
+    mHead += count;
+    if (mHead >= mData.length) {
+      mHead -= mData.length;
+    }
+    mSize -= count;
+    return count;
+  }
+
+  /**
+   * 已保留的字节数
+   */
+  int size() {
+    return mSize;
+  }
+
+  /**
+   * 已保留的时长，毫秒
+   */
+  long getDurationMs() {
+    return mSize * 1000L / mBytesPerSecond;
+  }
+
+  void clear() {
+    mHead = 0;
+    mSize = 0;
+  }
+}
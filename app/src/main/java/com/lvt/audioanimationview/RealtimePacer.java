@@ -0,0 +1,41 @@
+package com.lvt.audioanimationview;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按采样率限速，让文件或合成数据源以录音的实时速度产出数据
+ */
+final class RealtimePacer {
+  private final int mSampleRateInHz;
+  private long mStartNanos;
+  private long mFrames;
+
+  RealtimePacer(int sampleRateInHz) {
+    mSampleRateInHz = sampleRateInHz;
+  }
+
+  /**
+   * 重新开始计时
+   */
+  void start() {
+    mStartNanos = System.nanoTime();
+    mFrames = 0;
+  }
+
+  /**
+   * 记录已产出的帧数，必要时等待到这些帧对应的时间点
+   *
+   * @param frames 本次产出的帧数
+   */
+  void advance(int frames) {
+    mFrames += frames;
+    final long deadline = mStartNanos + mFrames * 1000000000L / mSampleRateInHz;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 录音进度快照
+ * <p>
+ * 录音线程每个缓冲只写入基本类型字段，按最大频率合并通知；主线程收到通知后读取最新快照到复用的结果对象。
+ * 快照用版本号保证一次读到的是同一缓冲的数据，整个过程不分配对象。
+ */
+final class RecordingProgress {
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  /**
+   * 默认最多每秒通知 60 次
+   */
+  private static final float DEFAULT_MAX_RATE = 60f;
+
+  private final AtomicBoolean mPending = new AtomicBoolean();
+  /**
+   * 版本号，奇数表示正在写入
+   */
+  private volatile int mVersion;
+  private volatile float mVolumeProcess;
+  private volatile float mRmsDb;
+  private volatile float mPeakDb;
+  private volatile float mVuDb;
+  private volatile float mPpmDb;
+  private volatile long mClipCount;
+  private volatile long mDuration;
+  private volatile long mIntervalNanos;
+  /**
+   * 上次通知的时间，只在录音线程访问
+   */
+  private long mLastNotifyNanos;
+
+  RecordingProgress() {
+    setMaxRate(DEFAULT_MAX_RATE);
+  }
+
+  /**
+   * 设置最大通知频率
+   *
+   * @param ratePerSecond 每秒最多通知次数，小于等于 0 表示不限
+   */
+  void setMaxRate(float ratePerSecond) {
+    mIntervalNanos = ratePerSecond > 0 ? (long) (NANOS_PER_SECOND / ratePerSecond) : 0;
+  }
+
+  /**
+   * 开始新的录音，在录音线程调用
+   */
+  void reset() {
+    mLastNotifyNanos = System.nanoTime() - mIntervalNanos;
+    mPending.set(false);
+  }
+
+  /**
+   * 写入最新进度，在录音线程调用
+   *
+   * @param meter 电平表
+   * @param duration 时长
+   * @return 是否需要通知主线程，距上次通知不足间隔 或 上次通知尚未处理时返回 false
+   */
+  boolean update(@NonNull LevelMeter meter, long duration) {
+    final int version = mVersion;
+    mVersion = version + 1;
+    mVolumeProcess = meter.getLevel();
+    mRmsDb = meter.getRmsDb();
+    mPeakDb = meter.getPeakDb();
+    mVuDb = meter.getVuDb();
+    mPpmDb = meter.getPpmDb();
+    mClipCount = meter.getClipCount();
+    mDuration = duration;
+    mVersion = version + 2;
+    final long now = System.nanoTime();
+    if (now - mLastNotifyNanos < mIntervalNanos || !mPending.compareAndSet(false, true)) {
+      return false;
+    }
+    mLastNotifyNanos = now;
+    return true;
+  }
+
+  /**
+   * 读取最新进度，在主线程调用
+   *
+   * @param result 复用的结果对象
+   */
+  void consume(@NonNull WavRecorderUtils.RecordingResult result) {
+    // 先清除标记，读取期间的新进度会再次触发通知
+    mPending.set(false);
+    int version;
+    do {
+      version = mVersion;
+      result.mVolumeProcess = mVolumeProcess;
+      result.mRmsDb = mRmsDb;
+      result.mPeakDb = mPeakDb;
+      result.mVuDb = mVuDb;
+      result.mPpmDb = mPpmDb;
+      result.mClipCount = mClipCount;
+      result.mDuration = mDuration;
+    } while ((version & 1) != 0 || version != mVersion);
+  }
+}
@@ -1,13 +1,98 @@
 package com.lvt.audioanimationview;
 
 import android.graphics.Canvas;
+import android.graphics.Rect;
 
 abstract public class Renderer {
+    private long mFrameTimeNanos;
+    private volatile boolean mEnabled = true;
+    // 静态背景的版本，内容变化时递增，View 据此判断缓存是否失效
+    private volatile int mBackgroundVersion;
 
     public Renderer() {
 
     }
 
+    /**
+     * 每帧绘制前由 View 调用，传入 vsync 时间，渲染器据此推进动画
+     *
+     * @param frameTimeNanos 帧时间，{@link System#nanoTime()} 时基
+     */
+    public void onFrame(long frameTimeNanos) {
+        mFrameTimeNanos = frameTimeNanos;
+    }
+
+    /**
+     * 当前帧时间，View 没有调用 {@link #onFrame(long)} 时取当前时间
+     */
+    protected long getFrameTimeNanos() {
+        return mFrameTimeNanos != 0 ? mFrameTimeNanos : System.nanoTime();
+    }
+
+    /**
+     * 是否参与绘制，关闭后 View 跳过该渲染器但保留它在列表中的位置
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * 开启或关闭绘制，之后需让 View 重绘，或使用 View 的 setRendererEnabled
+     */
+    public void setEnabled(boolean enabled) {
+        if (mEnabled != enabled) {
+            mEnabled = enabled;
+            invalidateBackground();
+        }
+    }
+
+    /**
+     * 是否有不随数据变化的静态背景，为 true 时 View 把 {@link #drawStaticBackground(Canvas, int, int)}
+     * 的结果缓存为位图，没有数据的空闲帧只贴一次缓存，不再调用 {@link #drawBackground(Canvas, int, int)}
+     */
+    public boolean hasStaticBackground() {
+        return false;
+    }
+
+    /**
+     * 绘制静态背景，只在缓存失效（尺寸变化、{@link #invalidateBackground()}）时调用，不能依赖动画状态
+     */
+    public void drawStaticBackground(Canvas canvas, int width, int height) {
+
+    }
+
+    /**
+     * 静态背景会画到的区域，View 只按这个区域缓存位图，默认整个 View
+     */
+    public void getStaticBackgroundBounds(int width, int height, Rect outBounds) {
+        outBounds.set(0, 0, width, height);
+    }
+
+    /**
+     * 空闲帧（还没有数据）时代替 {@link #drawBackground(Canvas, int, int)} 调用，用于重置动画状态
+     */
+    public void onIdle() {
+
+    }
+
+    /**
+     * 静态背景的画笔、布局等变化后调用，让 View 下次空闲帧重画缓存
+     */
+    public void invalidateBackground() {
+        mBackgroundVersion++;
+    }
+
+    int getBackgroundVersion() {
+        return mBackgroundVersion;
+    }
+
+    /**
+     * 是否还有未完成的动画，为 true 时 View 在下一个 vsync 继续绘制，即使没有新数据
+     */
+    public boolean isAnimating() {
+        return false;
+    }
+
     abstract public void onRender(Canvas canvas, byte[] data, int width, int height);
 
     public void render(Canvas canvas, byte[] data, int width, int height) {
@@ -15,5 +100,33 @@ abstract public class Renderer {
         onRender(canvas, data, width, height);
     }
 
+    /**
+     * 使用 {@link AudioAnalyzer} 预先算好的分析结果绘制，默认只绘制背景，子类按需重写
+     */
+    public void onRender(Canvas canvas, AudioFeatures features, int width, int height) {
+        drawBackground(canvas, width, height);
+    }
+
+    public void render(Canvas canvas, AudioFeatures features, int width, int height) {
+
+        onRender(canvas, features, width, height);
+    }
+
+    /**
+     * 增量绘制：画布上保留着本渲染器上一帧的内容，只清除并重绘有变化的区域，并把这些区域并入 dirty
+     *
+     * @return false 表示不支持或无法增量绘制，调用方需清空画布后调用 {@link #render(Canvas, AudioFeatures, int, int)}
+     */
+    public boolean renderIncremental(Canvas canvas, AudioFeatures features, int width, int height, Rect dirty) {
+        return false;
+    }
+
+    /**
+     * 是否依赖离屏层保留上一帧的内容（如拖尾、累积效果），默认每帧完整重绘、不依赖
+     */
+    public boolean needsPersistentLayer() {
+        return false;
+    }
+
     public abstract void drawBackground(Canvas mCanvas, int width, int height);
 }
@@ -0,0 +1,141 @@
+package com.lvt.audioanimationview;
+
+/**
+ * 有序的渲染器列表，按下标顺序绘制，后加入的画在上面
+ * <p>
+ * 数组写时复制：修改加锁，绘制线程通过 {@link #toArray()} 取当前数组遍历，不加锁也不分配迭代器。
+ * 同一个渲染器只保留一份。
+ */
+final class RendererList {
+    private static final Renderer[] EMPTY = new Renderer[0];
+
+    private volatile Renderer[] mRenderers = EMPTY;
+    // 结构变化（增删）的版本，与各渲染器的背景版本相加作为静态背景的戳
+    private volatile long mVersion;
+
+    /**
+     * 插入到指定位置
+     *
+     * @return false 表示已在列表中
+     */
+    synchronized boolean add(int index, Renderer renderer) {
+        final Renderer[] renderers = mRenderers;
+        if (index < 0 || index > renderers.length) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + renderers.length);
+        }
+        if (indexOf(renderer) >= 0) {
+            return false;
+        }
+        Renderer[] newRenderers = new Renderer[renderers.length + 1];
+        System.arraycopy(renderers, 0, newRenderers, 0, index);
+        newRenderers[index] = renderer;
+        System.arraycopy(renderers, index, newRenderers, index + 1, renderers.length - index);
+        mRenderers = newRenderers;
+        mVersion++;
+        return true;
+    }
+
+    /**
+     * @return false 表示不在列表中
+     */
+    synchronized boolean remove(Renderer renderer) {
+        final Renderer[] renderers = mRenderers;
+        final int index = indexOf(renderer);
+        if (index < 0) {
+            return false;
+        }
+        Renderer[] newRenderers = new Renderer[renderers.length - 1];
+        System.arraycopy(renderers, 0, newRenderers, 0, index);
+        System.arraycopy(renderers, index + 1, newRenderers, index, renderers.length - index - 1);
+        mRenderers = newRenderers;
+        // 移除后戳中少了它的背景版本，一并计入，保证戳只增不减
+        mVersion += renderer.getBackgroundVersion() + 1L;
+        return true;
+    }
+
+    synchronized void clear() {
+        long version = mVersion + 1;
+        for (Renderer r : mRenderers) {
+            version += r.getBackgroundVersion();
+        }
+        mRenderers = EMPTY;
+        mVersion = version;
+    }
+
+    Renderer get(int index) {
+        return mRenderers[index];
+    }
+
+    int size() {
+        return mRenderers.length;
+    }
+
+    int indexOf(Renderer renderer) {
+        final Renderer[] renderers = mRenderers;
+        for (int i = 0; i < renderers.length; i++) {
+            if (renderers[i] == renderer) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 当前的渲染器数组，只读
+     */
+    Renderer[] toArray() {
+        return mRenderers;
+    }
+
+    /**
+     * 静态背景的戳，列表增删、渲染器开关或背景失效后变大
+     */
+    long getBackgroundStamp() {
+        final Renderer[] renderers = mRenderers;
+        long stamp = mVersion;
+        for (Renderer r : renderers) {
+            stamp += r.getBackgroundVersion();
+        }
+        return stamp;
+    }
+
+    /**
+     * 开启的渲染器中是否有需要上一帧内容的
+     */
+    boolean needsPersistentLayer() {
+        for (Renderer r : mRenderers) {
+            if (r.isEnabled() && r.needsPersistentLayer()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 开启的渲染器中是否有动画还没结束的
+     */
+    boolean isAnimating() {
+        for (Renderer r : mRenderers) {
+            if (r.isEnabled() && r.isAnimating()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 唯一开启的渲染器，没有或多于一个时为 null
+     */
+    Renderer getSingleEnabled() {
+        Renderer single = null;
+        for (Renderer r : mRenderers) {
+            if (r.isEnabled()) {
+                if (single != null) {
+                    return null;
+                }
+                single = r;
+            }
+        }
+        return single;
+    }
+}
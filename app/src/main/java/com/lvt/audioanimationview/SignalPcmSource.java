@@ -0,0 +1,187 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 合成信号数据源，产生 16 位单声道的正弦波或白噪声
+ * <p>
+ * 实时模式按采样率限速，非实时模式尽可能快地产出，用于测量管线吞吐。
+ */
+public final class SignalPcmSource implements PcmSource {
+  private static final int TYPE_TONE = 0;
+  private static final int TYPE_NOISE = 1;
+
+  private final int mType;
+  private final int mSampleRateInHz;
+  private final int mBufferSize;
+  private final float mAmplitude;
+  private final double mPhaseStep;
+  private final long mTotalFrames;
+  @Nullable
+  private final RealtimePacer mPacer;
+  private double mPhase;
+  private long mFrames;
+  private long mSeed;
+  private volatile boolean mStopped;
+
+  private SignalPcmSource(
+      int type,
+      int sampleRateInHz,
+      float frequency,
+      float amplitude,
+      long durationMs,
+      int bufferSize,
+      boolean realtime) {
+    if (sampleRateInHz <= 0 || bufferSize < 2 || amplitude < 0 || amplitude > 1) {
+      throw new IllegalArgumentException("bad signal parameters");
+    }
+    mType = type;
+    mSampleRateInHz = sampleRateInHz;
+    mBufferSize = bufferSize / 2 * 2;
+    mAmplitude = amplitude * Short.MAX_VALUE;
+    mPhaseStep = 2 * Math.PI * frequency / sampleRateInHz;
+    mTotalFrames = durationMs < 0 ? Long.MAX_VALUE : durationMs * sampleRateInHz / 1000;
+    mPacer = realtime ? new RealtimePacer(sampleRateInHz) : null;
+  }
+
+  /**
+   * 正弦波
+   *
+   * @param sampleRateInHz 采样率
+   * @param frequency 频率
+   * @param amplitude 幅度 0~1
+   * @param durationMs 时长，小于 0 表示不限
+   * @param bufferSize 每次读取的字节数
+   * @param realtime 是否按实时速度产出数据
+   */
+  @NonNull
+  public static SignalPcmSource tone(
+      int sampleRateInHz,
+      float frequency,
+      float amplitude,
+      long durationMs,
+      int bufferSize,
+      boolean realtime) {
+    return new SignalPcmSource(
+        TYPE_TONE, sampleRateInHz, frequency, amplitude, durationMs, bufferSize, realtime);
+  }
+
+  /**
+   * 白噪声
+   *
+   * @param sampleRateInHz 采样率
+   * @param amplitude 幅度 0~1
+   * @param durationMs 时长，小于 0 表示不限
+   * @param bufferSize 每次读取的字节数
+   * @param realtime 是否按实时速度产出数据
+   */
+  @NonNull
+  public static SignalPcmSource noise(
+      int sampleRateInHz,
+      float amplitude,
+      long durationMs,
+      int bufferSize,
+      boolean realtime) {
+    return new SignalPcmSource(
+        TYPE_NOISE, sampleRateInHz, 0, amplitude, durationMs, bufferSize, realtime);
+  }
+
+  @Override
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  @Override
+  public int getChannelCount() {
+    return 1;
+  }
+
+  @Override
+  public int getBitsPerSample() {
+    return 16;
+  }
+
+  @Override
+  public int getEncoding() {
+    return ENCODING_PCM_16BIT;
+  }
+
+  @Override
+  public int getBufferSize() {
+    return mBufferSize;
+  }
+
+  @Override
+  public void start() {
+    mPhase = 0;
+    mFrames = 0;
+    mSeed = 0x2545F4914F6CDD1DL;
+    mStopped = false;
+    if (mPacer != null) {
+      mPacer.start();
+    }
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int length) {
+    if (mStopped || mFrames >= mTotalFrames) {
+      return END_OF_STREAM;
+    }
+    final int frames = (int) Math.min(length / 2, mTotalFrames - mFrames);
+    for (int i = 0; i < frames; i++) {
+      final short sample = nextSample();
+      buffer[offset + i * 2] = (byte) sample;
+      buffer[offset + i * 2 + 1] = (byte) (sample >> 8);
+    }
+    return onRead(frames);
+  }
+
+  @Override
+  public int read(@NonNull ByteBuffer buffer, int length) {
+    if (mStopped || mFrames >= mTotalFrames) {
+      return END_OF_STREAM;
+    }
+    final int frames = (int) Math.min(Math.min(length, buffer.capacity()) / 2, mTotalFrames - mFrames);
+    for (int i = 0; i < frames; i++) {
+      buffer.putShort(i * 2, nextSample());
+    }
+    return onRead(frames);
+  }
+
+  private short nextSample() {
+    if (mType == TYPE_TONE) {
+      final short sample = (short) (Math.sin(mPhase) * mAmplitude);
+      mPhase += mPhaseStep;
+      if (mPhase > 2 * Math.PI) {
+        mPhase -= 2 * Math.PI;
+      }
+      return sample;
+    }
+    // xorshift 伪随机数，取高 16 位
+    mSeed ^= mSeed << 13;
+    mSeed ^= mSeed >>> 7;
+    mSeed ^= mSeed << 17;
+    return (short) (((short) (mSeed >>> 48)) * mAmplitude / 32768f);
+  }
+
+  private int onRead(int frames) {
+    mFrames += frames;
+    if (mPacer != null) {
+      mPacer.advance(frames);
+    }
+    return frames * 2;
+  }
+
+  @Override
+  public void stop() {
+    mStopped = true;
+  }
+
+  @Override
+  public void release() {
+    // do nothing
+  }
+}
@@ -0,0 +1,335 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 频谱分析
+ * <p>
+ * 对 16 位小端 pcm 做加汉宁窗的原地实数 FFT（N/2 点复数 FFT + 拆分），
+ * 再按对数频率刻度把频点合并为 {@code barCount} 个柱子，输出 0~1 的电平。
+ * 窗函数、旋转因子、位反转表、频带边界均在构造时预计算，分析过程不分配内存。
+ * <p>
+ * 非线程安全，同一实例只能在一个线程中使用。
+ */
+public final class SpectrumAnalyzer {
+  private static final float DEFAULT_MIN_FREQUENCY = 60f;
+  private static final float DEFAULT_MIN_DB = -80f;
+
+  private final int mFftSize;
+  private final int mHalfSize;
+  private final int mBarCount;
+  private final float mMinDb;
+  /**
+   * 汉宁窗，已乘以 1 / 32768 把 16 位样本归一化
+   */
+  @NonNull
+  private final float[] mWindow;
+  /**
+   * N/2 点复数 FFT 的旋转因子
+   */
+  @NonNull
+  private final float[] mCos;
+  @NonNull
+  private final float[] mSin;
+  /**
+   * 实数拆分用的旋转因子 e^(-2πik/N)
+   */
+  @NonNull
+  private final float[] mSplitCos;
+  @NonNull
+  private final float[] mSplitSin;
+  @NonNull
+  private final int[] mBitReverse;
+  @NonNull
+  private final float[] mRe;
+  @NonNull
+  private final float[] mIm;
+  /**
+   * 各频点的功率，长度 N/2 + 1
+   */
+  @NonNull
+  private final float[] mPower;
+  @NonNull
+  private final int[] mBandStart;
+  @NonNull
+  private final int[] mBandEnd;
+  /**
+   * 满幅正弦波峰值频点功率的倒数，用于换算 dBFS
+   */
+  private final float mPowerScale;
+
+  /**
+   * @param fftSize FFT 点数，必须是 2 的幂
+   * @param sampleRateInHz 采样率
+   * @param barCount 柱子个数
+   */
+  public SpectrumAnalyzer(int fftSize, int sampleRateInHz, int barCount) {
+    this(fftSize, sampleRateInHz, barCount, DEFAULT_MIN_FREQUENCY, sampleRateInHz / 2f, DEFAULT_MIN_DB);
+  }
+
+  /**
+   * @param fftSize FFT 点数，必须是 2 的幂
+   * @param sampleRateInHz 采样率
+   * @param barCount 柱子个数
+   * @param minFrequency 最低频率
+   * @param maxFrequency 最高频率
+   * @param minDb 电平为 0 时对应的 dBFS，不低于 {@link LevelMeter#MIN_DB}
+   */
+  public SpectrumAnalyzer(
+      int fftSize,
+      int sampleRateInHz,
+      int barCount,
+      float minFrequency,
+      float maxFrequency,
+      float minDb) {
+    if (fftSize < 4 || Integer.bitCount(fftSize) != 1) {
+      throw new IllegalArgumentException("fft size must be a power of two");
+    }
+    if (barCount <= 0 || sampleRateInHz <= 0) {
+      throw new IllegalArgumentException("bad spectrum parameters");
+    }
+    if (minFrequency <= 0 || maxFrequency <= minFrequency
+        || minDb >= 0 || minDb < LevelMeter.MIN_DB) {
+      throw new IllegalArgumentException("bad spectrum range");
+    }
+    mFftSize = fftSize;
+    mHalfSize = fftSize / 2;
+    mBarCount = barCount;
+    mMinDb = minDb;
+    mWindow = new float[fftSize];
+    double windowSum = 0;
+    for (int i = 0; i < fftSize; i++) {
+      double w = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / fftSize);
+      windowSum += w;
+      mWindow[i] = (float) (w / 32768.0);
+    }
+    mCos = new float[mHalfSize / 2];
+    mSin = new float[mHalfSize / 2];
+    for (int i = 0; i < mCos.length; i++) {
+      double angle = -2 * Math.PI * i / mHalfSize;
+      mCos[i] = (float) Math.cos(angle);
+      mSin[i] = (float) Math.sin(angle);
+    }
+    mSplitCos = new float[mHalfSize];
+    mSplitSin = new float[mHalfSize];
+    for (int i = 0; i < mHalfSize; i++) {
+      double angle = -2 * Math.PI * i / fftSize;
+      mSplitCos[i] = (float) Math.cos(angle);
+      mSplitSin[i] = (float) Math.sin(angle);
+    }
+    mBitReverse = new int[mHalfSize];
+    final int bits = Integer.numberOfTrailingZeros(mHalfSize);
+    for (int i = 0; i < mHalfSize; i++) {
+      mBitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+    mRe = new float[mHalfSize];
+    mIm = new float[mHalfSize];
+    mPower = new float[mHalfSize + 1];
+    final double peak = windowSum / 2;
+    mPowerScale = (float) (1 / (peak * peak));
+    // 对数刻度的频带边界，每个频带至少包含一个频点
+    mBandStart = new int[barCount];
+    mBandEnd = new int[barCount];
+    final float maxFreq = Math.min(maxFrequency, sampleRateInHz / 2f);
+    final double binWidth = (double) sampleRateInHz / fftSize;
+    final double ratio = maxFreq / minFrequency;
+    int previousEnd = 1;
+    for (int i = 0; i < barCount; i++) {
+      double low = minFrequency * Math.pow(ratio, (double) i / barCount) / binWidth;
+      double high = minFrequency * Math.pow(ratio, (double) (i + 1) / barCount) / binWidth;
+      int start = Math.max((int) Math.floor(low), Math.min(previousEnd, mHalfSize));
+      int end = Math.min(Math.max((int) Math.ceil(high), start + 1), mHalfSize + 1);
+      if (start >= end) {
+        start = end - 1;
+      }
+      mBandStart[i] = start;
+      mBandEnd[i] = end;
+      previousEnd = end;
+    }
+  }
+
+  /**
+   * FFT 点数
+   */
+  public int getFftSize() {
+    return mFftSize;
+  }
+
+  /**
+   * 柱子个数
+   */
+  public int getBarCount() {
+    return mBarCount;
+  }
+
+  /**
+   * 分析 16 位小端单声道 pcm，取末尾 {@link #getFftSize()} 个样本，不足时补零
+   *
+   * @param data pcm 数据
+   * @param length 有效字节数
+   * @param bars 输出的柱子电平 0~1，长度不小于 {@link #getBarCount()}
+   */
+  public void analyze(@NonNull byte[] data, int length, @NonNull float[] bars) {
+    final int sampleCount = Math.min(length / 2, mFftSize);
+    final int firstByte = (length / 2 - sampleCount) * 2;
+    final int padding = mFftSize - sampleCount;
+    final float[] re = mRe;
+    final float[] im = mIm;
+    final float[] window = mWindow;
+    final int[] reverse = mBitReverse;
+    // 偶数样本放实部、奇数样本放虚部，同时做位反转重排
+    for (int n = 0; n < mHalfSize; n++) {
+      final int even = 2 * n - padding;
+      final int odd = even + 1;
+      float x0 = 0;
+      float x1 = 0;
+      if (even >= 0) {
+        int index = firstByte + even * 2;
+        x0 = (short) ((data[index] & 0xFF) | (data[index + 1] << 8)) * window[2 * n];
+      }
+      if (odd >= 0) {
+        int index = firstByte + odd * 2;
+        x1 = (short) ((data[index] & 0xFF) | (data[index + 1] << 8)) * window[2 * n + 1];
+      }
+      final int r = reverse[n];
+      re[r] = x0;
+      im[r] = x1;
+    }
+    computeBars(bars);
+  }
+
+  /**
+   * 分析单声道 16 位样本，取前 {@code sampleCount} 个中末尾 {@link #getFftSize()} 个，不足时补零
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   * @param bars 输出的柱子电平 0~1，长度不小于 {@link #getBarCount()}
+   */
+  public void analyze(@NonNull ShortBuffer samples, int sampleCount, @NonNull float[] bars) {
+    final int count = Math.min(sampleCount, mFftSize);
+    final int first = samples.position() + sampleCount - count;
+    final int padding = mFftSize - count;
+    final float[] re = mRe;
+    final float[] im = mIm;
+    final float[] window = mWindow;
+    final int[] reverse = mBitReverse;
+    for (int n = 0; n < mHalfSize; n++) {
+      final int even = 2 * n - padding;
+      final int odd = even + 1;
+      final int r = reverse[n];
+      re[r] = even >= 0 ? samples.get(first + even) * window[2 * n] : 0;
+      im[r] = odd >= 0 ? samples.get(first + odd) * window[2 * n + 1] : 0;
+    }
+    computeBars(bars);
+  }
+
+  /**
+   * 分析单声道浮点样本，-1~1 为满幅，取前 {@code sampleCount} 个中末尾 {@link #getFftSize()} 个，不足时补零
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   * @param bars 输出的柱子电平 0~1，长度不小于 {@link #getBarCount()}
+   */
+  public void analyze(@NonNull FloatBuffer samples, int sampleCount, @NonNull float[] bars) {
+    final int count = Math.min(sampleCount, mFftSize);
+    final int first = samples.position() + sampleCount - count;
+    final int padding = mFftSize - count;
+    final float[] re = mRe;
+    final float[] im = mIm;
+    final float[] window = mWindow;
+    final int[] reverse = mBitReverse;
+    // 窗函数已按 16 位满幅归一化，浮点样本先放大到同一刻度
+    for (int n = 0; n < mHalfSize; n++) {
+      final int even = 2 * n - padding;
+      final int odd = even + 1;
+      final int r = reverse[n];
+      re[r] = even >= 0 ? samples.get(first + even) * 32768f * window[2 * n] : 0;
+      im[r] = odd >= 0 ? samples.get(first + odd) * 32768f * window[2 * n + 1] : 0;
+    }
+    computeBars(bars);
+  }
+
+  /**
+   * 对已加窗、位反转排列的数据做 FFT，合并为柱子电平
+   */
+  private void computeBars(@NonNull float[] bars) {
+    transform();
+    computePower();
+    for (int i = 0; i < mBarCount; i++) {
+      float max = 0;
+      for (int k = mBandStart[i]; k < mBandEnd[i]; k++) {
+        if (mPower[k] > max) {
+          max = mPower[k];
+        }
+      }
+      bars[i] = toLevel(max);
+    }
+  }
+
+  /**
+   * 原地基 2 复数 FFT，输入已按位反转排列
+   */
+  private void transform() {
+    final float[] re = mRe;
+    final float[] im = mIm;
+    final int n = mHalfSize;
+    for (int size = 2; size <= n; size <<= 1) {
+      final int half = size >> 1;
+      final int step = n / size;
+      for (int start = 0; start < n; start += size) {
+        for (int j = 0; j < half; j++) {
+          final float wr = mCos[j * step];
+          final float wi = mSin[j * step];
+          final int a = start + j;
+          final int b = a + half;
+          final float tr = re[b] * wr - im[b] * wi;
+          final float ti = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - tr;
+          im[b] = im[a] - ti;
+          re[a] += tr;
+          im[a] += ti;
+        }
+      }
+    }
+  }
+
+  /**
+   * 由 N/2 点复数结果拆分出实数序列的频谱，计算 0~N/2 各频点功率
+   */
+  private void computePower() {
+    final float[] re = mRe;
+    final float[] im = mIm;
+    final int n = mHalfSize;
+    // 直流 与 奈奎斯特频点
+    final float dc = re[0] + im[0];
+    final float nyquist = re[0] - im[0];
+    mPower[0] = dc * dc;
+    mPower[n] = nyquist * nyquist;
+    for (int k = 1; k < n; k++) {
+      final float ar = re[k];
+      final float ai = im[k];
+      final float br = re[n - k];
+      final float bi = -im[n - k];
+      // 偶数部分 E = (Z[k] + conj(Z[N/2-k])) / 2, 奇数部分 O = (Z[k] - conj(Z[N/2-k])) / 2i
+      final float er = (ar + br) * 0.5f;
+      final float ei = (ai + bi) * 0.5f;
+      final float or = (ai - bi) * 0.5f;
+      final float oi = -(ar - br) * 0.5f;
+      final float wr = mSplitCos[k];
+      final float wi = mSplitSin[k];
+      final float xr = er + or * wr - oi * wi;
+      final float xi = ei + or * wi + oi * wr;
+      mPower[k] = xr * xr + xi * xi;
+    }
+  }
+
+  /**
+   * 功率换算为 0~1 电平，与电平表共用查表的 dBFS 换算
+   */
+  private float toLevel(float power) {
+    return LevelMeter.toLevel(LevelMeter.powerToDb(power * mPowerScale), -mMinDb);
+  }
+}
@@ -0,0 +1,100 @@
+package com.lvt.audioanimationview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+/**
+ * 空闲帧的静态背景缓存
+ * <p>
+ * 把开启的渲染器的 {@link Renderer#drawStaticBackground(Canvas, int, int) 静态背景} 按顺序画到一张位图上，
+ * 只在尺寸或 {@link RendererList#getBackgroundStamp() 戳} 变化时重画，其余空闲帧只贴一次图。
+ * 位图只覆盖 {@link Renderer#getStaticBackgroundBounds(int, int, Rect) 静态背景的区域}，
+ * 没有渲染器提供静态背景时不分配位图。非线程安全，只在绘制线程使用。
+ */
+final class StaticBackgroundCache {
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private long mStamp;
+    private boolean mValid;
+    // 缓存位图在 View 中的位置
+    private final Rect mBounds = new Rect();
+    private final Rect mRendererBounds = new Rect();
+    private int mLeft;
+    private int mTop;
+
+    /**
+     * 绘制空闲帧：贴静态背景缓存，其他渲染器照常 {@link Renderer#drawBackground(Canvas, int, int)}
+     */
+    void drawIdle(Canvas canvas, RendererList list, int width, int height) {
+        final Renderer[] renderers = list.toArray();
+        boolean hasStatic = false;
+        for (Renderer r : renderers) {
+            if (r.isEnabled() && r.hasStaticBackground()) {
+                r.onIdle();
+                r.getStaticBackgroundBounds(width, height, mRendererBounds);
+                if (hasStatic) {
+                    mBounds.union(mRendererBounds);
+                } else {
+                    mBounds.set(mRendererBounds);
+                }
+                hasStatic = true;
+            }
+        }
+        if (hasStatic && mBounds.intersect(0, 0, width, height)) {
+            canvas.drawBitmap(obtain(renderers, list.getBackgroundStamp(), width, height), mLeft, mTop, null);
+        } else {
+            release();
+        }
+        for (Renderer r : renderers) {
+            if (r.isEnabled() && !r.hasStaticBackground()) {
+                r.drawBackground(canvas, width, height);
+            }
+        }
+    }
+
+    private Bitmap obtain(Renderer[] renderers, long stamp, int width, int height) {
+        final int bitmapWidth = mBounds.width();
+        final int bitmapHeight = mBounds.height();
+        if (mBitmap != null && (mBitmap.getWidth() != bitmapWidth || mBitmap.getHeight() != bitmapHeight)) {
+            release();
+        }
+        if (mBitmap == null) {
+            mBitmap = BitmapPool.obtain(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+            if (mCanvas == null) {
+                mCanvas = new Canvas(mBitmap);
+            } else {
+                mCanvas.setBitmap(mBitmap);
+            }
+        }
+        if (!mValid || mStamp != stamp || mLeft != mBounds.left || mTop != mBounds.top) {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+            mCanvas.save();
+            // 渲染器按整个 View 的坐标绘制
+            mCanvas.translate(-mBounds.left, -mBounds.top);
+            for (Renderer r : renderers) {
+                if (r.isEnabled() && r.hasStaticBackground()) {
+                    r.drawStaticBackground(mCanvas, width, height);
+                }
+            }
+            mCanvas.restore();
+            mLeft = mBounds.left;
+            mTop = mBounds.top;
+            mStamp = stamp;
+            mValid = true;
+        }
+        return mBitmap;
+    }
+
+    /**
+     * 归还位图，下次空闲帧重画
+     */
+    void release() {
+        if (mBitmap != null) {
+            BitmapPool.release(mBitmap);
+            mBitmap = null;
+        }
+        mValid = false;
+    }
+}
@@ -0,0 +1,263 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 缓冲级的人声检测
+ * <p>
+ * 每个录音缓冲只计算一次能量（dBFS）与过零率，与自适应的噪声基底比较：
+ * 能量高于基底 10dB 且过零率不像白噪声的状态持续 {@link #setOnsetMs(int) 起始时长} 判为有人声，
+ * 能量高出基底不足 5dB 的状态持续 {@link #setHangoverMs(int) 保持时长} 判为无人声，两个门限之间保持原状态。
+ * 所有时长按已处理的样本数计算，与系统时钟、绘制帧率无关；通过 {@link WavRecorderUtils} 录音时采样率按数据源设置。
+ * <p>
+ * 非线程安全，{@link #process(ShortBuffer, int)} 只能在录音线程调用，{@link #isVoice()} 可在任意线程读取。
+ */
+public final class VoiceActivityDetector {
+  /**
+   * 进入人声需高出噪声基底的分贝数
+   */
+  private static final float ONSET_MARGIN_DB = 10f;
+  /**
+   * 高出噪声基底不足该分贝数视为静音
+   */
+  private static final float RELEASE_MARGIN_DB = 5f;
+  /**
+   * 能量高出基底超过该分贝数时不再看过零率，避免漏掉清辅音
+   */
+  private static final float STRONG_MARGIN_DB = 20f;
+  /**
+   * 绝对静音门限，低于该值一定不是人声
+   */
+  private static final float MIN_VOICE_DB = -60f;
+  /**
+   * 过零率高于该值且能量不够高时视为噪声，白噪声约为 0.5
+   */
+  private static final float MAX_VOICE_ZCR = 0.4f;
+  private static final float SILENCE_DB = LevelMeter.MIN_DB;
+  /**
+   * 噪声基底 下降 / 上升 的时间常数，秒
+   */
+  private static final float FLOOR_FALL_SECONDS = 0.05f;
+  private static final float FLOOR_RISE_SECONDS = 5f;
+  private static final int DEFAULT_ONSET_MS = 60;
+  private static final int DEFAULT_HANGOVER_MS = 3000;
+  private static final int DEFAULT_SAMPLE_RATE = 16000;
+
+  private int mSampleRateInHz;
+  private int mOnsetMs = DEFAULT_ONSET_MS;
+  private int mHangoverMs = DEFAULT_HANGOVER_MS;
+  private long mOnsetSamples;
+  private long mHangoverSamples;
+  private volatile boolean mVoice = true;
+  private boolean mHasFloor;
+  private float mNoiseFloorDb;
+  private float mEnergyDb = SILENCE_DB;
+  private float mZeroCrossingRate;
+  private long mCandidateSamples;
+  private long mQuietSamples;
+
+  public VoiceActivityDetector() {
+    this(DEFAULT_SAMPLE_RATE);
+  }
+
+  /**
+   * @param sampleRateInHz 每声道的采样率，检测器只处理混成单声道的样本，与声道数无关
+   */
+  public VoiceActivityDetector(int sampleRateInHz) {
+    setSampleRate(sampleRateInHz);
+  }
+
+  /**
+   * 设置采样率，起始 与 保持时长按样本数计时，录音工具在开始录音时按数据源设置，默认 16000
+   */
+  public void setSampleRate(int sampleRateInHz) {
+    if (sampleRateInHz <= 0) {
+      throw new IllegalArgumentException("bad sample rate");
+    }
+    mSampleRateInHz = sampleRateInHz;
+    mOnsetSamples = (long) mOnsetMs * sampleRateInHz / 1000;
+    mHangoverSamples = (long) mHangoverMs * sampleRateInHz / 1000;
+  }
+
+  /**
+   * 设置判为有人声前需持续的时长，默认 60ms
+   */
+  public void setOnsetMs(int onsetMs) {
+    mOnsetMs = onsetMs;
+    mOnsetSamples = (long) onsetMs * mSampleRateInHz / 1000;
+  }
+
+  /**
+   * 设置判为无人声前需持续静音的时长，默认 3 秒
+   */
+  public void setHangoverMs(int hangoverMs) {
+    mHangoverMs = hangoverMs;
+    mHangoverSamples = (long) hangoverMs * mSampleRateInHz / 1000;
+  }
+
+  /**
+   * 恢复初始状态：有人声、噪声基底未知，每次开始录音时调用
+   */
+  public void reset() {
+    mVoice = true;
+    mHasFloor = false;
+    mEnergyDb = SILENCE_DB;
+    mZeroCrossingRate = 0;
+    mCandidateSamples = 0;
+    mQuietSamples = 0;
+  }
+
+  /**
+   * 处理 16 位小端 pcm
+   *
+   * @param data pcm 数据
+   * @param length 有效字节数
+   * @return 人声状态是否改变
+   */
+  public boolean process(@NonNull byte[] data, int length) {
+    final int sampleCount = length / 2;
+    double sum = 0;
+    int crossings = 0;
+    int previous = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      final int sample = (short) ((data[i * 2] & 0xFF) | (data[i * 2 + 1] << 8));
+      sum += sample * sample;
+      if ((sample ^ previous) < 0) {
+        crossings++;
+      }
+      previous = sample;
+    }
+    return update(sum / (32768.0 * 32768.0), crossings, sampleCount);
+  }
+
+  /**
+   * 处理 16 位样本
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   * @return 人声状态是否改变
+   */
+  public boolean process(@NonNull ShortBuffer samples, int sampleCount) {
+    final int start = samples.position();
+    double sum = 0;
+    int crossings = 0;
+    int previous = 0;
+    for (int i = start; i < start + sampleCount; i++) {
+      final int sample = samples.get(i);
+      sum += sample * sample;
+      if ((sample ^ previous) < 0) {
+        crossings++;
+      }
+      previous = sample;
+    }
+    return update(sum / (32768.0 * 32768.0), crossings, sampleCount);
+  }
+
+  /**
+   * 处理浮点样本，-1~1 为满幅
+   *
+   * @param samples 样本，从 position 开始，不改变 position
+   * @param sampleCount 有效样本数
+   * @return 人声状态是否改变
+   */
+  public boolean process(@NonNull FloatBuffer samples, int sampleCount) {
+    final int start = samples.position();
+    double sum = 0;
+    int crossings = 0;
+    float previous = 0;
+    for (int i = start; i < start + sampleCount; i++) {
+      final float sample = samples.get(i);
+      sum += sample * sample;
+      if ((sample < 0) != (previous < 0)) {
+        crossings++;
+      }
+      previous = sample;
+    }
+    return update(sum, crossings, sampleCount);
+  }
+
+  /**
+   * @param sum 相对满幅的平方和
+   */
+  private boolean update(double sum, int crossings, int sampleCount) {
+    if (sampleCount == 0) {
+      return false;
+    }
+    final double meanSquare = sum / sampleCount;
+    mEnergyDb = LevelMeter.powerToDb((float) meanSquare);
+    mZeroCrossingRate = (float) crossings / sampleCount;
+    if (!mHasFloor) {
+      // 录音刚启动时的全零数据不参与
+      if (mEnergyDb > SILENCE_DB) {
+        mNoiseFloorDb = mEnergyDb;
+        mHasFloor = true;
+      }
+    }
+
+    final float margin = mHasFloor ? mEnergyDb - mNoiseFloorDb : 0;
+    final boolean loud = mEnergyDb > MIN_VOICE_DB;
+    final boolean candidate = loud && margin >= ONSET_MARGIN_DB
+        && (mZeroCrossingRate <= MAX_VOICE_ZCR || margin >= STRONG_MARGIN_DB);
+    final boolean quiet = !loud || margin < RELEASE_MARGIN_DB;
+    updateNoiseFloor(sampleCount, candidate);
+    mCandidateSamples = candidate ? mCandidateSamples + sampleCount : 0;
+    mQuietSamples = quiet ? mQuietSamples + sampleCount : 0;
+
+    if (!mVoice && mCandidateSamples >= mOnsetSamples) {
+      mVoice = true;
+      return true;
+    }
+    if (mVoice && mQuietSamples >= mHangoverSamples) {
+      mVoice = false;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 噪声基底快降慢升，说话间隙会很快把基底拉回噪声水平。
+   * 像人声的缓冲只让基底下降，否则持续的人声会把基底抬上来，几秒后被判为静音
+   *
+   * @param candidate 该缓冲是否像人声
+   */
+  private void updateNoiseFloor(int sampleCount, boolean candidate) {
+    if (!mHasFloor || candidate && mEnergyDb > mNoiseFloorDb) {
+      return;
+    }
+    final float seconds = (float) sampleCount / mSampleRateInHz;
+    final float timeConstant = mEnergyDb < mNoiseFloorDb ? FLOOR_FALL_SECONDS : FLOOR_RISE_SECONDS;
+    final float alpha = 1 - (float) Math.exp(-seconds / timeConstant);
+    mNoiseFloorDb += (mEnergyDb - mNoiseFloorDb) * alpha;
+  }
+
+  /**
+   * 当前是否有人声
+   */
+  public boolean isVoice() {
+    return mVoice;
+  }
+
+  /**
+   * 最近一个缓冲的能量，dBFS
+   */
+  public float getEnergyDb() {
+    return mEnergyDb;
+  }
+
+  /**
+   * 最近一个缓冲的过零率，0~1
+   */
+  public float getZeroCrossingRate() {
+    return mZeroCrossingRate;
+  }
+
+  /**
+   * 当前噪声基底，dBFS
+   */
+  public float getNoiseFloorDb() {
+    return mNoiseFloorDb;
+  }
+}
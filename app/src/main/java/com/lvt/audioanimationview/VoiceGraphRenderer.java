@@ -5,6 +5,7 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 
 public class VoiceGraphRenderer extends Renderer {
     private Paint mPaint;
@@ -12,22 +13,51 @@ public class VoiceGraphRenderer extends Renderer {
     private int lineNumber = 0;
     private int lineInterval = 0;
     private int amplitudePixel = 0;
-    private VoiceChangeCallBack myCallBack;
-    private boolean isHaveVoice = true;
     protected float[] mFFTPoints;
 
     protected Paint mBgPoints;
+    private SpectrumAnalyzer mSpectrumAnalyzer;
+    private float[] mBarLevels;
+    // 上一次画到画布上的柱子坐标，用于增量绘制
+    private float[] mDrawnPoints;
+    private boolean mHasDrawn;
+    private int mDrawnWidth;
+    private int mDrawnHeight;
+    private Paint mClearPaint;
+    // 分析结果按缓冲频率到达，绘制时按帧时间平滑过渡
+    private BarSmoother mSmoother;
+    private long mTargetSequence = -1;
+    // 上一次计算目标电平的 pcm 数组，平滑过渡期间不重复分析同一份数据
+    private byte[] mTargetData;
+    // 旧构造方法传入的回调，与上一次回调的人声状态，录音开始时默认有人声
+    private VoiceChangeCallBack mVoiceChangeCallBack;
+    private boolean mVoice = true;
 
+    /**
+     * @deprecated 渲染器不再判断有无人声，改用 {@link WavRecorderUtils#setVoiceChangeCallBack(VoiceGraphRenderer.VoiceChangeCallBack)}。
+     * callBack 只属于该渲染器，按分析结果的 {@link AudioFeatures#isVoice() 人声标记}在绘制线程回调，
+     * 只在状态切换时回调，需通过 {@link AudioAnimationView#setAudioAnalyzer(AudioAnalyzer)} 使用录音工具的分析结果
+     */
+    @Deprecated
     public VoiceGraphRenderer(Paint paint, int count, int interval, int pixel, VoiceChangeCallBack callBack) {
+        this(paint, count, interval, pixel);
+        mVoiceChangeCallBack = callBack;
+    }
+
+    public VoiceGraphRenderer(Paint paint, int count, int interval, int pixel) {
         super();
         mPaint = paint;
         lineNumber = count;
         lineInterval = interval;
         amplitudePixel = pixel;
-        myCallBack = callBack;
         if (mFFTPoints == null || mFFTPoints.length < lineNumber * 4) {
             mFFTPoints = new float[lineNumber * 4];
         }
+        mBarLevels = new float[lineNumber];
+        mDrawnPoints = new float[lineNumber * 4];
+        mSmoother = new BarSmoother(lineNumber);
+        mClearPaint = new Paint();
+        mClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
         mGrayPaint = new Paint();
         mGrayPaint.setStrokeCap(Paint.Cap.ROUND);
         mGrayPaint.setStrokeWidth(mPaint.getStrokeWidth());
@@ -38,68 +68,170 @@ public class VoiceGraphRenderer extends Renderer {
         mBgPoints.setStrokeCap(Paint.Cap.ROUND);
         mBgPoints.setStrokeWidth(mPaint.getStrokeWidth());
     }
-    //如果录音的编码是16位pcm，而录音数据数据是byte，需要将两个byte转为一个short进行处理，建议用小端的方式。
-    private double doublecalculateVolume(byte[] buffer, int offset, int interval) {
-        double sumVolume = 0.0;
-        double avgVolume = 0.0;
-        for (int i = offset * interval; i < offset * interval + interval; i += 2) {
-            int v1 = buffer[i] & 0xFF;
-            int v2 = buffer[i + 1] & 0xFF;
-            int temp = v1 + (v2 << 8);// 小端 我们采用小端
-            if (temp >= 0x8000) {
-                temp = 0xffff - temp;
-            }
-            sumVolume += Math.abs(temp);
+
+    /**
+     * 设置频谱分析，设置后柱子高度为对应频带的电平，否则为时域分段的 dBFS 电平
+     */
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        if (analyzer != null && analyzer.getBarCount() != lineNumber) {
+            throw new IllegalArgumentException("bar count mismatch");
         }
-        avgVolume = sumVolume / buffer.length / 2;
-        return avgVolume;
+        mSpectrumAnalyzer = analyzer;
     }
 
-    //录音的编码主要有两种：8位pcm和16位pcm。8位pcm用一个字节表示语音的一个点，16位pcm用两个字节，也就是一个short来表示语音的一个点。需要特别注意的是，如果你用的16位pcm编码，而取录音数据用的是byte的话，需要自己将两个bye转换成一个short。将两个byte转换成一个short，有小端和大端两种，一般默认情况都是小端，但是有的开源库，比如lamemp3需要的就是大端，这个要根据不同的情况进行不同的处理。
-    private double calculateVolume(short[] buffer){
-        double sumVolume = 0.0;
-        double avgVolume = 0.0;
-        double volume = 0.0;
-        for(short b : buffer){
-            sumVolume += Math.abs(b)* Math.abs(b);
-        }
-        // 平均音量大小
-        avgVolume = sumVolume / buffer.length;
-        // 音量转分贝的公式
-        volume = Math.log10(1 + avgVolume) * 10;
-        return volume;
+    /**
+     * 设置空闲时圆点的颜色
+     */
+    public void setBackgroundPointColor(int color) {
+        mBgPoints.setColor(color);
+        invalidateBackground();
     }
 
-    long timeInterval = 0L;
+    /**
+     * 设置柱子上升 / 下降的时间常数，为 0 时立即跳到新电平，默认 40ms / 250ms
+     */
+    public void setBallistics(int attackMs, int releaseMs) {
+        mSmoother.setBallistics(attackMs, releaseMs);
+    }
+
+    @Override
+    public boolean isAnimating() {
+        return !mSmoother.isSettled();
+    }
 
     @Override
     public void onRender(Canvas canvas, byte[] data, int width, int height) {
         if (data == null || data.length == 0) {
-            myCallBack.isHaveVoice(false);
             return;
         }
-        int interval = (data.length / lineNumber) / 2 * 2; // 每组绘制直线的间隔
+        if (data != mTargetData) {
+            mTargetData = data;
+            if (mSpectrumAnalyzer != null) {
+                mSpectrumAnalyzer.analyze(data, data.length, mBarLevels);
+            } else {
+                int interval = (data.length / lineNumber) / 2 * 2; // 每组绘制直线的间隔
+                for (int i = 0; i < lineNumber; ++i) {
+                    mBarLevels[i] = LevelMeter.sliceLevel(data, i * interval, interval);
+                }
+            }
+            mSmoother.setTarget(mBarLevels);
+        }
+        mSmoother.advance(getFrameTimeNanos());
+        drawBars(canvas, mSmoother.getLevels(), width, height);
+    }
+
+    @Override
+    public void onRender(Canvas canvas, AudioFeatures features, int width, int height) {
+        if (!features.hasData()) {
+            drawBackground(canvas, width, height);
+            return;
+        }
+        updateLevels(features);
+        drawBars(canvas, mSmoother.getLevels(), width, height);
+    }
+
+    /**
+     * 有新的分析结果时更新目标电平，并推进到当前帧
+     */
+    private void updateLevels(AudioFeatures features) {
+        if (features.getSequence() != mTargetSequence) {
+            mTargetSequence = features.getSequence();
+            mSmoother.setTarget(features.getBandLevels());
+            notifyVoice(features.isVoice());
+        }
+        mSmoother.advance(getFrameTimeNanos());
+    }
+
+    private void notifyVoice(boolean voice) {
+        if (mVoiceChangeCallBack != null && voice != mVoice) {
+            mVoice = voice;
+            mVoiceChangeCallBack.isHaveVoice(voice);
+        }
+    }
+
+    @Override
+    public boolean renderIncremental(Canvas canvas, AudioFeatures features, int width, int height, Rect dirty) {
+        if (!features.hasData() || !mHasDrawn || mDrawnWidth != width || mDrawnHeight != height) {
+            return false;
+        }
+        updateLevels(features);
+        computeBars(mSmoother.getLevels(), width, height);
+        int changed = 0;
+        for (int i = 0; i < lineNumber; ++i) {
+            if (isBarChanged(i * 4)) {
+                changed++;
+            }
+        }
+        if (changed * 2 > lineNumber) {
+            // 大部分柱子都变了，逐个裁剪重画不如整帧重画
+            return false;
+        }
+        // 圆头线帽会超出端点半个线宽，多留 1 像素避免残影
+        float stroke = mPaint.getStrokeWidth();
+        int halfStroke = (int) Math.ceil(stroke / 2) + 1;
+        // 左右最多清除到与相邻柱子的间距中点，间距很小时不会擦掉相邻柱子
+        float halfWidth = Math.min(halfStroke, stroke / 2 + lineInterval / 2f);
+        for (int i = 0; i < lineNumber; ++i) {
+            int index = i * 4;
+            if (!isBarChanged(index)) {
+                continue;
+            }
+            float bottom = mFFTPoints[index + 1];
+            float top = mFFTPoints[index + 3];
+            float drawnBottom = mDrawnPoints[index + 1];
+            float drawnTop = mDrawnPoints[index + 3];
+            float x = mFFTPoints[index];
+            // 相邻柱子的中点取整结果相同，清除区域正好相接
+            int left = Math.round(x - halfWidth);
+            int right = Math.round(x + halfWidth);
+            int rectTop = (int) Math.floor(Math.min(top, drawnTop)) - halfStroke;
+            int rectBottom = (int) Math.ceil(Math.max(bottom, drawnBottom)) + halfStroke;
+            canvas.save();
+            canvas.clipRect(left, rectTop, right, rectBottom);
+            canvas.drawRect(left, rectTop, right, rectBottom, mClearPaint);
+            canvas.drawLine(x, bottom, x, top, mPaint);
+            canvas.restore();
+            dirty.union(left, rectTop, right, rectBottom);
+            mDrawnPoints[index + 1] = bottom;
+            mDrawnPoints[index + 3] = top;
+        }
+        return true;
+    }
+
+    private boolean isBarChanged(int index) {
+        return Math.abs(mFFTPoints[index + 1] - mDrawnPoints[index + 1]) >= 0.5f
+                || Math.abs(mFFTPoints[index + 3] - mDrawnPoints[index + 3]) >= 0.5f;
+    }
+
+    /**
+     * @param levels 每个柱子 0~1 的电平
+     */
+    private void drawBars(Canvas canvas, float[] levels, int width, int height) {
+        computeBars(levels, width, height);
+        canvas.drawLines(mFFTPoints, mPaint);
+        System.arraycopy(mFFTPoints, 0, mDrawnPoints, 0, mFFTPoints.length);
+        mHasDrawn = true;
+        mDrawnWidth = width;
+        mDrawnHeight = height;
+    }
+
+    /**
+     * 计算各柱子端点坐标，写入 mFFTPoints
+     */
+    private void computeBars(float[] levels, int width, int height) {
         float centerDis = (width - (lineNumber * mPaint.getStrokeWidth() + (lineNumber - 1) * lineInterval)) / 2;
+        float maxValue = (height / 2 - mPaint.getStrokeWidth()) / amplitudePixel;
         for (int i = 0; i < lineNumber; ++i) {
-            double dbValue = doublecalculateVolume(data, i, interval);
+            double level = i < levels.length ? levels[i] : 0;
+            double dbValue = level * maxValue;
             float x = i * (lineInterval + mPaint.getStrokeWidth()) + mPaint.getStrokeWidth() / 2 + centerDis;
             mFFTPoints[i * 4] = x;
             mFFTPoints[i * 4 + 2] = x;
 
             if (dbValue < 4) {
-                if (timeInterval == 0) {
-                    timeInterval = System.currentTimeMillis();
-                }
                 mFFTPoints[i * 4 + 1] = height / 2 + 1;
                 mFFTPoints[i * 4 + 3] = height / 2 - 1;
-
-                if (System.currentTimeMillis() - timeInterval >= 3000) {  //持续3秒低于预定值提示用户大声点
-                    timeInterval = System.currentTimeMillis();
-                    isHaveVoice = false;
-                    myCallBack.isHaveVoice(isHaveVoice);
-                }
             } else {
-                timeInterval = System.currentTimeMillis();
                 if (dbValue * amplitudePixel + mPaint.getStrokeWidth() > height / 2) {
                     mFFTPoints[i * 4 + 1] = height - mPaint.getStrokeWidth();
                     mFFTPoints[i * 4 + 3] = 0 + mPaint.getStrokeWidth();
@@ -107,18 +239,44 @@ public class VoiceGraphRenderer extends Renderer {
                     mFFTPoints[i * 4 + 1] = height / 2 + (float) dbValue * amplitudePixel;
                     mFFTPoints[i * 4 + 3] = height / 2 - (float) dbValue * amplitudePixel;
                 }
-                if (!isHaveVoice) {
-                    isHaveVoice = true;
-                    myCallBack.isHaveVoice(isHaveVoice);
-                }
             }
 
         }
-        canvas.drawLines(mFFTPoints, mPaint);
     }
 
     @Override
     public void drawBackground(Canvas mCanvas, int width, int height) {
+        onIdle();
+        drawStaticBackground(mCanvas, width, height);
+    }
+
+    @Override
+    public void onIdle() {
+        mHasDrawn = false;
+        mSmoother.reset();
+        mTargetSequence = -1;
+        mTargetData = null;
+    }
+
+    @Override
+    public boolean hasStaticBackground() {
+        return true;
+    }
+
+    /**
+     * 圆点只占中间一行，圆头多留 1 像素
+     */
+    @Override
+    public void getStaticBackgroundBounds(int width, int height, Rect outBounds) {
+        int half = (int) Math.ceil(mBgPoints.getStrokeWidth() / 2) + 1;
+        outBounds.set(0, height / 2 - half, width, height / 2 + half);
+    }
+
+    /**
+     * 空闲时的灰色圆点
+     */
+    @Override
+    public void drawStaticBackground(Canvas mCanvas, int width, int height) {
         float centerDis = (width - (lineNumber * mPaint.getStrokeWidth() + (lineNumber - 1) * lineInterval)) / 2;
         for (int i = 0; i < lineNumber; ++i) {
             float x = i * (lineInterval + mPaint.getStrokeWidth()) + mPaint.getStrokeWidth() / 2 + centerDis;
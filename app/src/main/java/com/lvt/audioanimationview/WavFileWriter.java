@@ -0,0 +1,291 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 流式 WAV 写入器
+ * <p>
+ * 先写入占位头部，录音过程中将 pcm 数据经缓冲追加到 {@link FileChannel}，
+ * 关闭时回填 RIFF / data 长度。内存占用与录音时长无关。
+ * 支持整型 PCM（格式标签 1，44 字节头部）与 32 位浮点（格式标签 3，带 fact 块的 58 字节头部）。
+ */
+public final class WavFileWriter implements PcmFileWriter {
+  /**
+   * 标准 PCM WAV 头部长度
+   */
+  public static final int HEADER_SIZE = 44;
+  /**
+   * 非 PCM 格式的头部长度：fmt 块带 2 字节的扩展长度，并多一个 12 字节的 fact 块
+   */
+  private static final int EXTENDED_HEADER_SIZE = HEADER_SIZE + 2 + 12;
+  /**
+   * 默认写入缓冲大小
+   */
+  private static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+  /**
+   * RIFF 长度字段能表示的最大值
+   */
+  private static final long MAX_CHUNK_SIZE = 0xFFFFFFFFL;
+
+  @NonNull
+  private final RandomAccessFile mFile;
+  @NonNull
+  private final FileChannel mChannel;
+  @NonNull
+  private final ByteBuffer mBuffer;
+  @NonNull
+  private final ByteBuffer mHeader;
+  private final int mFormatTag;
+  private final int mSampleRateInHz;
+  private final int mChannelCount;
+  private final int mBitsPerSample;
+  private long mDataLength;
+  private boolean mClosed;
+
+  /**
+   * @param wavFile wav 文件
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数
+   * @param bitsPerSample 采样位数
+   */
+  public WavFileWriter(
+      @NonNull File wavFile,
+      int sampleRateInHz,
+      int channelCount,
+      int bitsPerSample)
+      throws IOException {
+    this(wavFile, sampleRateInHz, channelCount, bitsPerSample, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param wavFile wav 文件
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数
+   * @param bitsPerSample 采样位数
+   * @param bufferSize 写入缓冲大小
+   */
+  public WavFileWriter(
+      @NonNull File wavFile,
+      int sampleRateInHz,
+      int channelCount,
+      int bitsPerSample,
+      int bufferSize)
+      throws IOException {
+    this(wavFile, WavHeader.FORMAT_PCM, sampleRateInHz, channelCount, bitsPerSample, bufferSize);
+  }
+
+  /**
+   * @param wavFile wav 文件
+   * @param formatTag 格式标签，{@link WavHeader#FORMAT_PCM} 或 {@link WavHeader#FORMAT_IEEE_FLOAT}
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数
+   * @param bitsPerSample 采样位数，浮点只支持 32
+   * @param bufferSize 写入缓冲大小
+   */
+  public WavFileWriter(
+      @NonNull File wavFile,
+      int formatTag,
+      int sampleRateInHz,
+      int channelCount,
+      int bitsPerSample,
+      int bufferSize)
+      throws IOException {
+    if (channelCount <= 0 || sampleRateInHz <= 0 || bitsPerSample <= 0 || bufferSize <= 0) {
+      throw new IllegalArgumentException("bad wav format");
+    }
+    if (formatTag != WavHeader.FORMAT_PCM
+        && !(formatTag == WavHeader.FORMAT_IEEE_FLOAT && bitsPerSample == 32)) {
+      throw new IllegalArgumentException("unsupported wav format " + formatTag);
+    }
+    mFormatTag = formatTag;
+    mSampleRateInHz = sampleRateInHz;
+    mChannelCount = channelCount;
+    mBitsPerSample = bitsPerSample;
+    mBuffer = ByteBuffer.allocateDirect(bufferSize);
+    mHeader = ByteBuffer.allocate(getHeaderSize(formatTag)).order(ByteOrder.LITTLE_ENDIAN);
+    mFile = new RandomAccessFile(wavFile, "rw");
+    mChannel = mFile.getChannel();
+    try {
+      // 截断旧文件 并 写入占位头部
+      mChannel.truncate(0);
+      writeHeader(0);
+      mChannel.position(mHeader.capacity());
+    } catch (IOException e) {
+      mFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * 追加 pcm 数据
+   *
+   * @param data pcm 数据
+   * @param offset 起始位置
+   * @param length 长度
+   */
+  @Override
+  public void write(@NonNull byte[] data, int offset, int length) throws IOException {
+    if (mClosed) {
+      throw new IOException("writer is closed");
+    }
+    while (length > 0) {
+      if (!mBuffer.hasRemaining()) {
+        flushBuffer();
+      }
+      int count = Math.min(length, mBuffer.remaining());
+      mBuffer.put(data, offset, count);
+      offset += count;
+      length -= count;
+      mDataLength += count;
+    }
+  }
+
+  /**
+   * 追加 pcm 数据，写入 {@code data} 的 position 到 limit 之间的字节，样本应为小端序
+   *
+   * @param data pcm 数据，返回后 position 等于 limit
+   */
+  @Override
+  public void write(@NonNull ByteBuffer data) throws IOException {
+    if (mClosed) {
+      throw new IOException("writer is closed");
+    }
+    final int limit = data.limit();
+    while (data.hasRemaining()) {
+      if (!mBuffer.hasRemaining()) {
+        flushBuffer();
+      }
+      int count = Math.min(data.remaining(), mBuffer.remaining());
+      data.limit(data.position() + count);
+      mBuffer.put(data);
+      data.limit(limit);
+      mDataLength += count;
+    }
+  }
+
+  /**
+   * 已写入的 pcm 数据长度
+   */
+  @Override
+  public long getDataLength() {
+    return mDataLength;
+  }
+
+  /**
+   * 写出缓冲数据 并 回填头部长度，不关闭文件
+   */
+  @Override
+  public void flush() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    flushBuffer();
+    long position = mChannel.position();
+    writeHeader(mDataLength);
+    mChannel.position(position);
+  }
+
+  /**
+   * 写出剩余数据、回填头部长度 并 关闭文件
+   */
+  @Override
+  public void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    mClosed = true;
+    try {
+      flushBuffer();
+      writeHeader(mDataLength);
+    } finally {
+      mFile.close();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    mBuffer.flip();
+    while (mBuffer.hasRemaining()) {
+      mChannel.write(mBuffer);
+    }
+    mBuffer.clear();
+  }
+
+  /**
+   * 在文件起始处写入头部
+   *
+   * @param dataLength pcm 数据长度
+   */
+  private void writeHeader(long dataLength) throws IOException {
+    mHeader.clear();
+    fillHeader(mHeader, mFormatTag, dataLength, mSampleRateInHz, mChannelCount, mBitsPerSample);
+    mHeader.flip();
+    long position = 0;
+    while (mHeader.hasRemaining()) {
+      position += mChannel.write(mHeader, position);
+    }
+  }
+
+  /**
+   * 头部长度
+   *
+   * @param formatTag 格式标签
+   */
+  static int getHeaderSize(int formatTag) {
+    return formatTag == WavHeader.FORMAT_PCM ? HEADER_SIZE : EXTENDED_HEADER_SIZE;
+  }
+
+  /**
+   * 填充 WAV 头部，长度为 {@link #getHeaderSize(int)}
+   *
+   * @param header 小端序缓冲
+   * @param formatTag 格式标签
+   * @param dataLength pcm 数据长度
+   * @param sampleRateInHz 采样率
+   * @param channelCount 声道数
+   * @param bitsPerSample 采样位数
+   */
+  static void fillHeader(
+      @NonNull ByteBuffer header,
+      int formatTag,
+      long dataLength,
+      int sampleRateInHz,
+      int channelCount,
+      int bitsPerSample) {
+    final int blockAlign = channelCount * bitsPerSample / 8;
+    final long byteRate = (long) sampleRateInHz * blockAlign;
+    final int headerSize = getHeaderSize(formatTag);
+    final long totalAudioLength = Math.min(dataLength, MAX_CHUNK_SIZE - (headerSize - 8));
+    final boolean pcm = formatTag == WavHeader.FORMAT_PCM;
+    // RIFF/WAVE header
+    header.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F');
+    header.putInt((int) (totalAudioLength + headerSize - 8));
+    header.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E');
+    // 'fmt ' chunk
+    header.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ');
+    header.putInt(pcm ? 16 : 18);
+    header.putShort((short) formatTag);
+    header.putShort((short) channelCount);
+    header.putInt(sampleRateInHz);
+    header.putInt((int) byteRate);
+    header.putShort((short) blockAlign);
+    header.putShort((short) bitsPerSample);
+    if (!pcm) {
+      // 扩展长度 0
+      header.putShort((short) 0);
+      // 'fact' chunk，非 PCM 格式必须带每声道的样本数
+      header.put((byte) 'f').put((byte) 'a').put((byte) 'c').put((byte) 't');
+      header.putInt(4);
+      header.putInt((int) (totalAudioLength / blockAlign));
+    }
+    // data
+    header.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a');
+    header.putInt((int) totalAudioLength);
+  }
+}
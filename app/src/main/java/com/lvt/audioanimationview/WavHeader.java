@@ -0,0 +1,166 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * WAV 文件头信息，解析 RIFF 中的 fmt、fact 与 data 块
+ */
+public final class WavHeader {
+  public static final int FORMAT_PCM = 1;
+  public static final int FORMAT_IEEE_FLOAT = 3;
+  public static final int FORMAT_IMA_ADPCM = 0x11;
+  private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+  private static final int CHUNK_HEADER_SIZE = 8;
+  private static final int MAX_FMT_SIZE = 64;
+
+  private int mFormatTag;
+  private int mChannelCount;
+  private int mSampleRateInHz;
+  private int mBlockAlign;
+  private int mBitsPerSample;
+  private int mSamplesPerBlock;
+  private long mFrameCount = -1;
+  private long mDataOffset;
+  private long mDataLength;
+
+  private WavHeader() {
+  }
+
+  /**
+   * 从文件起始处解析头部
+   *
+   * @param channel 文件
+   * @return 头部信息
+   * @throws IOException 读取失败 或 不是 WAV 文件
+   */
+  @NonNull
+  public static WavHeader read(@NonNull FileChannel channel) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(MAX_FMT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    final long fileSize = channel.size();
+    readFully(channel, buffer, 0, 12);
+    if (buffer.getInt(0) != fourCc("RIFF") || buffer.getInt(8) != fourCc("WAVE")) {
+      throw new IOException("not a wav file");
+    }
+    WavHeader header = new WavHeader();
+    boolean hasFormat = false;
+    long position = 12;
+    while (position + CHUNK_HEADER_SIZE <= fileSize) {
+      readFully(channel, buffer, position, CHUNK_HEADER_SIZE);
+      final int id = buffer.getInt(0);
+      final long size = buffer.getInt(4) & 0xFFFFFFFFL;
+      final long body = position + CHUNK_HEADER_SIZE;
+      if (id == fourCc("fmt ")) {
+        if (size < 16) {
+          throw new IOException("bad fmt chunk");
+        }
+        readFully(channel, buffer, body, (int) Math.min(size, MAX_FMT_SIZE));
+        header.mFormatTag = buffer.getShort(0) & 0xFFFF;
+        header.mChannelCount = buffer.getShort(2) & 0xFFFF;
+        header.mSampleRateInHz = buffer.getInt(4);
+        header.mBlockAlign = buffer.getShort(12) & 0xFFFF;
+        header.mBitsPerSample = buffer.getShort(14) & 0xFFFF;
+        if (header.mFormatTag == FORMAT_EXTENSIBLE && size >= 26) {
+          // 子格式 GUID 的前两个字节即实际格式
+          header.mFormatTag = buffer.getShort(24) & 0xFFFF;
+        }
+        if (header.mFormatTag == FORMAT_IMA_ADPCM && size >= 20) {
+          header.mSamplesPerBlock = buffer.getShort(18) & 0xFFFF;
+        }
+        hasFormat = true;
+      } else if (id == fourCc("fact") && size >= 4) {
+        readFully(channel, buffer, body, 4);
+        header.mFrameCount = buffer.getInt(0) & 0xFFFFFFFFL;
+      } else if (id == fourCc("data")) {
+        if (!hasFormat) {
+          throw new IOException("missing fmt chunk");
+        }
+        header.mDataOffset = body;
+        // 未正常结束的录音长度可能为 0 或 最大值，以文件实际大小为准
+        final long available = fileSize - body;
+        header.mDataLength = size == 0 || size > available ? available : size;
+        return header;
+      }
+      // 块按偶数字节对齐
+      position = body + size + (size & 1);
+    }
+    throw new IOException("missing data chunk");
+  }
+
+  private static void readFully(
+      @NonNull FileChannel channel,
+      @NonNull ByteBuffer buffer,
+      long position,
+      int length)
+      throws IOException {
+    buffer.clear();
+    buffer.limit(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("unexpected end of file");
+      }
+    }
+  }
+
+  private static int fourCc(@NonNull String id) {
+    return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+  }
+
+  /**
+   * 格式标签，1 为 PCM，3 为 32 位浮点，0x11 为 IMA ADPCM
+   */
+  public int getFormatTag() {
+    return mFormatTag;
+  }
+
+  public int getChannelCount() {
+    return mChannelCount;
+  }
+
+  public int getSampleRateInHz() {
+    return mSampleRateInHz;
+  }
+
+  /**
+   * 每帧字节数，压缩格式为每块字节数
+   */
+  public int getBlockAlign() {
+    return mBlockAlign;
+  }
+
+  public int getBitsPerSample() {
+    return mBitsPerSample;
+  }
+
+  /**
+   * IMA ADPCM 每块帧数，其他格式为 0
+   */
+  public int getSamplesPerBlock() {
+    return mSamplesPerBlock;
+  }
+
+  /**
+   * fact 块记录的每声道样本数，没有 fact 块时为 -1
+   */
+  public long getFrameCount() {
+    return mFrameCount;
+  }
+
+  /**
+   * data 块数据在文件中的偏移
+   */
+  public long getDataOffset() {
+    return mDataOffset;
+  }
+
+  /**
+   * data 块数据长度
+   */
+  public long getDataLength() {
+    return mDataLength;
+  }
+}
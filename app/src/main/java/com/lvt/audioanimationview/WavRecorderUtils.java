@@ -14,11 +14,13 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 import androidx.core.content.PermissionChecker;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.security.Permission;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -28,25 +30,81 @@ import java.util.concurrent.Executors;
  */
 public final class WavRecorderUtils {
   private static final int MAX_ZERO_COUNT = 20;
+  private static final int WAV_BUFFER_SIZE = 32 * 1024;
+  /**
+   * 布防时最多保留的时长
+   */
+  public static final int MAX_PRE_ROLL_MS = 30 * 1000;
+  /**
+   * 录音文件格式：未压缩的 PCM WAV
+   */
+  public static final int OUTPUT_FORMAT_WAV_PCM = 0;
+  /**
+   * 录音文件格式：IMA ADPCM WAV，约为 PCM 的 1/4，只支持 16 位的单声道与立体声
+   */
+  public static final int OUTPUT_FORMAT_WAV_IMA_ADPCM = 1;
 
   private static volatile WavRecorderUtils sInstance;
 
+  /**
+   * 录音线程发出的通知
+   */
   @NonNull
-  private RecordHandler mHandler;
+  private final RecordEvents mEvents;
   @Nullable
-  private AudioRecord mAudioRecord;
+  private PcmSource mSource;
   @Nullable
   private Callback mCallback;
   @Nullable
   private Executor mExecutor;
   private volatile boolean mIsRecording;
-  private int mBufferSize;
+  /**
+   * 是否已布防，数据源持续运行并保留预录数据
+   */
+  private volatile boolean mArmed;
   @Nullable
   private String mWavFilePath;
   @Nullable
-  private Parameters mParameters;
+  private volatile PcmRingBuffer mRingBuffer;
+  @Nullable
+  private volatile AudioAnalyzer mAudioAnalyzer;
+  @Nullable
+  private volatile PcmListener mPcmListener;
+  @Nullable
+  private volatile VoiceActivityDetector mVoiceActivityDetector;
+  /**
+   * 没有设置人声检测时使用的默认检测
+   */
+  @NonNull
+  private final VoiceActivityDetector mDefaultVoiceActivityDetector = new VoiceActivityDetector();
+  @Nullable
+  private VoiceGraphRenderer.VoiceChangeCallBack mVoiceChangeCallBack;
+  private volatile boolean mDirectBufferEnabled;
+  private volatile int mOutputFormat = OUTPUT_FORMAT_WAV_PCM;
+  private volatile boolean mPeakIndexEnabled;
+  private volatile int mAnalysisSampleRate;
+  @NonNull
+  private final RecordingProgress mProgress = new RecordingProgress();
+  /**
+   * 录音线程按原采样率测量，进度 与 分析结果的电平都取自这里
+   */
+  @NonNull
+  private final LevelMeter mLevelMeter = new LevelMeter();
+  /**
+   * 主线程复用的录音结果
+   */
+  @NonNull
+  private final RecordingResult mRecordingResult = new RecordingResult();
   private WavRecorderUtils() {
-    mHandler = new RecordHandler(this);
+    mEvents = new RecordHandler(this);
+  }
+
+  /**
+   * 不使用主线程 Handler，通知 与 录音线程的任务都交给调用方，用于在 JVM 上测试录音流程
+   */
+  WavRecorderUtils(@NonNull RecordEvents events, @NonNull Executor executor) {
+    mEvents = events;
+    mExecutor = executor;
   }
 
   @NonNull
@@ -69,12 +127,14 @@ public final class WavRecorderUtils {
     private int mSampleRateInHz;
     private int mChannelConfig;
     private int mAudioFormat;
+    private int mReadPeriodMs;
 
     private Parameters(@NonNull Builder builder) {
       mAudioSource = builder.mAudioSource;
       mSampleRateInHz = builder.mSampleRateInHz;
       mChannelConfig = builder.mChannelConfig;
       mAudioFormat = builder.mAudioFormat;
+      mReadPeriodMs = builder.mReadPeriodMs;
     }
 
     public static final class Builder {
@@ -82,6 +142,7 @@ public final class WavRecorderUtils {
       private int mSampleRateInHz;
       private int mChannelConfig;
       private int mAudioFormat;
+      private int mReadPeriodMs;
 
       public Builder() {
         mAudioSource = MediaRecorder.AudioSource.MIC;
@@ -114,26 +175,79 @@ public final class WavRecorderUtils {
         return this;
       }
 
+      /**
+       * 每次读取的时长，默认 0 表示每次读满内部缓冲。
+       * 设置后内部缓冲大小不变，每次只读取该时长的数据，降低数据到达绘制的延迟，
+       * 柱子需要的分析长度由 {@link AudioAnalyzer#setWindowSize(int)} 累积
+       *
+       * @param readPeriodMs 毫秒，如 10
+       */
+      @NonNull
+      public Builder setReadPeriodMs(int readPeriodMs) {
+        mReadPeriodMs = readPeriodMs;
+        return this;
+      }
+
       @NonNull
       public Parameters build() {
         // 判断 channel config 参数是否合法
         if (getChannelCount(mChannelConfig) == -1) {
           throw new IllegalArgumentException("bad channel config");
         }
+        if (mAudioFormat != AudioFormat.ENCODING_PCM_8BIT
+            && mAudioFormat != AudioFormat.ENCODING_PCM_16BIT
+            && mAudioFormat != AudioFormat.ENCODING_PCM_FLOAT
+            && mAudioFormat != AudioFormat.ENCODING_DEFAULT) {
+          throw new IllegalArgumentException("bad audio format");
+        }
+        if (mReadPeriodMs < 0) {
+          throw new IllegalArgumentException("bad read period");
+        }
         return new Parameters(this);
       }
     }
   }
 
+  /**
+   * 录音线程发出的通知，由 {@link RecordHandler} 转到主线程回调
+   */
+  interface RecordEvents {
+    /**
+     * 开始写文件
+     */
+    void sendStartMessage();
+
+    /**
+     * 进度已更新，从 {@link RecordingProgress} 读取
+     */
+    void sendRecordingMessage();
+
+    /**
+     * 人声状态变化
+     */
+    void sendVoiceMessage(boolean voice);
+
+    /**
+     * 正常结束
+     */
+    void sendFinishMessage(@NonNull FinishResult result);
+
+    /**
+     * 出错，录音已停止
+     */
+    void sendErrorMessage(@NonNull Throwable e);
+  }
+
   /**
    * 录音 Handler
    */
-  private static final class RecordHandler extends Handler {
+  private static final class RecordHandler extends Handler implements RecordEvents {
     //<editor-fold desc="常量">
     private static final int WHAT_START = 0;
     private static final int WHAT_RECORDING = 1;
     private static final int WHAT_FINISH = 2;
     private static final int WHAT_ERROR = 3;
+    private static final int WHAT_VOICE = 4;
 
     @NonNull
     private WeakReference<WavRecorderUtils> mWeakHelper;
@@ -147,6 +261,16 @@ public final class WavRecorderUtils {
     public void handleMessage(@NonNull Message msg) {
       super.handleMessage(msg);
       WavRecorderUtils helper = mWeakHelper.get();
+      if (helper != null && msg.what == WHAT_RECORDING) {
+        // 无论是否有回调都要读取，以便录音线程继续通知
+        helper.mProgress.consume(helper.mRecordingResult);
+      }
+      if (helper != null && msg.what == WHAT_VOICE) {
+        if (helper.mVoiceChangeCallBack != null) {
+          helper.mVoiceChangeCallBack.isHaveVoice(msg.arg1 != 0);
+        }
+        return;
+      }
       if (helper != null && helper.mCallback != null) {
         final Object object = msg.obj;
         switch (msg.what) {
@@ -154,9 +278,7 @@ public final class WavRecorderUtils {
             helper.mCallback.onRecordStart();
             break;
           case WHAT_RECORDING:
-            if (object instanceof RecordingResult) {
-              helper.mCallback.onRecording((RecordingResult) object);
-            }
+            helper.mCallback.onRecording(helper.mRecordingResult);
             break;
           case WHAT_FINISH:
             if (object instanceof FinishResult) {
@@ -178,52 +300,105 @@ public final class WavRecorderUtils {
     /**
      * 发送开始消息
      */
-    private void sendStartMessage() {
+    @Override
+    public void sendStartMessage() {
       sendMessage(WHAT_START, null);
     }
 
     /**
-     * 发送录音消息
-     *
-     * @param result 录音结果
+     * 发送录音消息，进度从 {@link RecordingProgress} 读取
+     */
+    @Override
+    public void sendRecordingMessage() {
+      sendMessage(WHAT_RECORDING, null);
+    }
+
+    /**
+     * 发送人声状态变化消息
      */
-    private void sendRecordingMessage(@NonNull RecordingResult result) {
-      sendMessage(WHAT_RECORDING, result);
+    @Override
+    public void sendVoiceMessage(boolean voice) {
+      sendMessage(obtainMessage(WHAT_VOICE, voice ? 1 : 0, 0));
     }
 
     /**
      * 发送结束消息
      */
-    private void sendFinishMessage(@NonNull FinishResult result) {
+    @Override
+    public void sendFinishMessage(@NonNull FinishResult result) {
       sendMessage(WHAT_FINISH, result);
     }
 
     /**
      * 发送错误消息
      */
-    private void sendErrorMessage(@NonNull Throwable e) {
+    @Override
+    public void sendErrorMessage(@NonNull Throwable e) {
       sendMessage(WHAT_ERROR, e);
     }
 
     private void sendMessage(int what, @Nullable Object object) {
-      Message message = Message.obtain();
-      message.what = what;
-      message.obj = object;
-      sendMessage(message);
+      sendMessage(obtainMessage(what, object));
     }
   }
 
   /**
-   * 录音结果
+   * 录音结果，对象会被复用，不要在回调之外持有
    */
   public static final class RecordingResult {
-    private float mVolumeProcess;
-    private long mDuration;
+    float mVolumeProcess;
+    float mRmsDb = LevelMeter.MIN_DB;
+    float mPeakDb = LevelMeter.MIN_DB;
+    float mVuDb = LevelMeter.MIN_DB;
+    float mPpmDb = LevelMeter.MIN_DB;
+    long mClipCount;
+    long mDuration;
 
+    /**
+     * 音量 0~1，为 {@link LevelMeter#getLevel() VU 表读数}按显示范围换算的值
+     */
     public float getVolumeProcess() {
       return mVolumeProcess;
     }
 
+    /**
+     * 最近一个缓冲的均方根，dBFS
+     */
+    public float getRmsDb() {
+      return mRmsDb;
+    }
+
+    /**
+     * 最近一个缓冲的峰值，dBFS
+     */
+    public float getPeakDb() {
+      return mPeakDb;
+    }
+
+    /**
+     * VU 表读数，dBFS
+     */
+    public float getVuDb() {
+      return mVuDb;
+    }
+
+    /**
+     * PPM 表读数，dBFS
+     */
+    public float getPpmDb() {
+      return mPpmDb;
+    }
+
+    /**
+     * 本次录音达到满幅的样本总数
+     */
+    public long getClipCount() {
+      return mClipCount;
+    }
+
+    /**
+     * 已录制的时长，毫秒，按写入文件的帧数计算，包括预录数据
+     */
     public long getDuration() {
       return mDuration;
     }
@@ -234,10 +409,34 @@ public final class WavRecorderUtils {
    */
   public static final class FinishResult {
     private long mDuration;
+    @Nullable
+    private File mPeakIndexFile;
 
+    /**
+     * 已录制的时长，毫秒，按写入文件的帧数计算，包括预录数据
+     */
     public long getDuration() {
       return mDuration;
     }
+
+    /**
+     * 波形索引文件，未开启 {@link WavRecorderUtils#setPeakIndexEnabled(boolean)} 或写入失败时为 null
+     */
+    @Nullable
+    public File getPeakIndexFile() {
+      return mPeakIndexFile;
+    }
+  }
+
+  /**
+   * pcm 数据监听，在录音线程回调
+   */
+  public interface PcmListener {
+    /**
+     * @param samples 只读的单声道 16 位样本视图，多声道已取平均，从 position 开始，只在回调期间有效
+     * @param sampleCount 有效样本数
+     */
+    void onPcm(@NonNull ShortBuffer samples, int sampleCount);
   }
 
   /**
@@ -250,7 +449,7 @@ public final class WavRecorderUtils {
     void onRecordStart();
 
     /**
-     * 录音中回调
+     * 录音中回调，频率不超过 {@link WavRecorderUtils#setMaxProgressRate(float)}，只带最新进度
      *
      * @param result 录音结果
      */
@@ -283,6 +482,115 @@ public final class WavRecorderUtils {
     mCallback = callback;
   }
 
+  /**
+   * 设置录音中回调的最大频率，例如屏幕刷新率，期间的进度会合并，只通知最新值
+   *
+   * @param ratePerSecond 每秒最多回调次数，小于等于 0 表示每个缓冲都回调
+   */
+  public void setMaxProgressRate(float ratePerSecond) {
+    mProgress.setMaxRate(ratePerSecond);
+  }
+
+  /**
+   * 设置 pcm 环形缓冲，录音数据会依次发布到其中，供其他线程按块取用
+   *
+   * @param ringBuffer 环形缓冲，数据块大小应为帧大小的整数倍
+   */
+  public void setRingBuffer(@Nullable PcmRingBuffer ringBuffer) {
+    mRingBuffer = ringBuffer;
+  }
+
+  /**
+   * 设置音频分析，在录音线程对每个缓冲分析一次，结果供所有渲染器共用
+   *
+   * @param analyzer 音频分析，多声道取平均后分析
+   */
+  public void setAudioAnalyzer(@Nullable AudioAnalyzer analyzer) {
+    mAudioAnalyzer = analyzer;
+  }
+
+  /**
+   * 设置 pcm 数据监听，只对 8 位、16 位 pcm 生效
+   *
+   * @param listener 监听
+   */
+  public void setPcmListener(@Nullable PcmListener listener) {
+    mPcmListener = listener;
+  }
+
+  /**
+   * 设置人声检测，在录音线程对每个缓冲的单声道混音检测一次
+   *
+   * @param detector 人声检测，每次开始录音时按数据源设置采样率 并 重置；null 时按默认参数检测
+   */
+  public void setVoiceActivityDetector(@Nullable VoiceActivityDetector detector) {
+    mVoiceActivityDetector = detector;
+  }
+
+  /**
+   * 设置人声状态回调，只在有人声 / 持续静音 的状态切换时在主线程回调，
+   * 没有设置 {@link #setVoiceActivityDetector(VoiceActivityDetector)} 时按默认参数检测
+   *
+   * @param callBack 回调
+   */
+  public void setVoiceChangeCallBack(@Nullable VoiceGraphRenderer.VoiceChangeCallBack callBack) {
+    mVoiceChangeCallBack = callBack;
+  }
+
+  /**
+   * 是否读入本机字节序的直接缓冲，音量计算、分析、监听直接使用 short / float 视图，省去逐字节拼装样本与一次数组拷贝，
+   * 需在开始录音前设置
+   *
+   * @param enabled 是否启用
+   */
+  public void setDirectBufferEnabled(boolean enabled) {
+    mDirectBufferEnabled = enabled;
+  }
+
+  /**
+   * 设置录音文件格式，需在开始录音前设置。
+   * {@link #OUTPUT_FORMAT_WAV_IMA_ADPCM} 遇到 8 位、浮点 或 多于两个声道的数据源时仍写 PCM WAV
+   *
+   * @param outputFormat {@link #OUTPUT_FORMAT_WAV_PCM} 或 {@link #OUTPUT_FORMAT_WAV_IMA_ADPCM}
+   */
+  public void setOutputFormat(int outputFormat) {
+    if (outputFormat != OUTPUT_FORMAT_WAV_PCM && outputFormat != OUTPUT_FORMAT_WAV_IMA_ADPCM) {
+      throw new IllegalArgumentException("bad output format " + outputFormat);
+    }
+    mOutputFormat = outputFormat;
+  }
+
+  /**
+   * 是否在录音时生成多级波形索引 {@link PeakIndex}，录音结束后写到 wav 文件旁，绘制概览时不必重读整个 wav，
+   * 需在开始录音前设置
+   *
+   * @param enabled 是否启用
+   */
+  public void setPeakIndexEnabled(boolean enabled) {
+    mPeakIndexEnabled = enabled;
+  }
+
+  /**
+   * 录音用的电平表，可在开始录音前设置表头特性与显示范围，采样率按数据源自动设置，读数只在录音线程访问
+   */
+  @NonNull
+  public LevelMeter getLevelMeter() {
+    return mLevelMeter;
+  }
+
+  /**
+   * 分析前把单声道样本降到该采样率，分析开销不再随录音采样率增长，wav 文件 与 其他回调仍是原采样率。
+   * 频谱分析应按 {@link PcmDecimator#getOutputSampleRate(int, int)} 构造，需在开始录音前设置
+   *
+   * @param sampleRateInHz 分析采样率，0 表示不降采样（默认）
+   */
+  public void setAnalysisSampleRate(int sampleRateInHz) {
+    if (sampleRateInHz < 0) {
+      throw new IllegalArgumentException("bad analysis sample rate");
+    }
+    mAnalysisSampleRate = sampleRateInHz;
+  }
+
   /**
    * 录音
    *
@@ -300,53 +608,184 @@ public final class WavRecorderUtils {
    * @param parameters 参数
    */
   public void record(@NonNull String wavFilePath, @NonNull Parameters parameters) {
-    if (mAudioRecord != null) {
-      mAudioRecord.release();
+    if (mArmed) {
+      // 沿用布防时的麦克风，不重建 AudioRecord
+      recordArmed(wavFilePath);
+      return;
     }
+    final PcmSource source;
+    try {
+      source = createAudioRecordSource(parameters);
+    } catch (IllegalArgumentException e) {
+      mEvents.sendErrorMessage(e);
+      return;
+    }
+    record(wavFilePath, source);
+  }
+
+  /**
+   * 按参数创建麦克风数据源
+   */
+  @NonNull
+  private static PcmSource createAudioRecordSource(@NonNull Parameters parameters) {
+    // 内部缓冲保持较大，读取线程偶尔调度不及时也不丢数据
+    int bufferSize = AudioRecord.getMinBufferSize(
+        parameters.mSampleRateInHz, parameters.mChannelConfig, parameters.mAudioFormat
+    )*2;
+    int readSize = bufferSize;
+    if (parameters.mReadPeriodMs > 0) {
+      // 每次只读一小段，不必等内部缓冲填满
+      final int frameSize = getChannelCount(parameters.mChannelConfig)
+          * (parameters.mAudioFormat == AudioFormat.ENCODING_PCM_8BIT ? 1
+          : parameters.mAudioFormat == AudioFormat.ENCODING_PCM_FLOAT ? 4 : 2);
+      final long periodSize = (long) parameters.mSampleRateInHz * parameters.mReadPeriodMs / 1000 * frameSize;
+      readSize = (int) Math.max(frameSize, Math.min(bufferSize / frameSize * frameSize, periodSize));
+    }
+    return new AudioRecordPcmSource(
+        parameters.mAudioSource,
+        parameters.mSampleRateInHz,
+        parameters.mChannelConfig,
+        parameters.mAudioFormat,
+        bufferSize,
+        readSize
+    );
+  }
+
+  /**
+   * 从指定数据源录音，可用于回放文件或合成信号，走与麦克风相同的写文件、音量计算和回调流程
+   *
+   * @param wavFilePath WAV 文件路径
+   * @param source 数据源，由录音工具负责释放；已布防时不使用，直接释放
+   */
+  public void record(@NonNull String wavFilePath, @NonNull PcmSource source) {
+    if (mArmed) {
+      source.release();
+      recordArmed(wavFilePath);
+      return;
+    }
+    if (mSource != null) {
+      mSource.release();
+    }
+    mSource = source;
     try {
-      mBufferSize = AudioRecord.getMinBufferSize(
-          parameters.mSampleRateInHz, parameters.mChannelConfig, parameters.mAudioFormat
-      )*2;  //数值越大 绘制的图形越明显
-      mAudioRecord = new AudioRecord(
-          parameters.mAudioSource,
-          parameters.mSampleRateInHz,
-          parameters.mChannelConfig,
-          parameters.mAudioFormat,
-          mBufferSize
-      );
       // 录音
-      mAudioRecord.startRecording();
-      // 检测状态
-      if (mAudioRecord.getState() == AudioRecord.STATE_UNINITIALIZED) {
-        mHandler.sendErrorMessage(new Throwable("audio record is uninitialized"));
-        return;
-      }
+      source.start();
       // 设置正在录音
       mIsRecording = true;
       // 设置 wav 文件路径
       mWavFilePath = wavFilePath;
-      // 设置参数
-      mParameters = parameters;
       // 写入录音数据
       writeRecordData();
+    } catch (IOException e) {
+      mEvents.sendErrorMessage(e);
+    } catch (IllegalArgumentException e) {
+      mEvents.sendErrorMessage(e);
+    } catch (IllegalStateException e) {
+      mEvents.sendErrorMessage(e);
+    }
+  }
+
+  /**
+   * 已布防时开始录音，由布防线程切换到写文件
+   */
+  private void recordArmed(@NonNull String wavFilePath) {
+    if (mIsRecording) {
+      return;
+    }
+    mWavFilePath = wavFilePath;
+    mIsRecording = true;
+  }
+
+  /**
+   * 布防：启动麦克风，只在内存中保留最近 preRollMs 的数据，不写文件。
+   * 之后的 record 不再重建 AudioRecord，先写入保留的数据，再紧接着写入新数据，录音从按下前 preRollMs 开始；
+   * 停止录音后回到布防状态，直到 {@link #disarm()}
+   *
+   * @param parameters 参数，布防期间的录音都使用该参数
+   * @param preRollMs 保留的时长，毫秒，不超过 {@link #MAX_PRE_ROLL_MS}
+   */
+  @RequiresPermission(Manifest.permission.RECORD_AUDIO)
+  public void arm(@NonNull Parameters parameters, int preRollMs) {
+    final PcmSource source;
+    try {
+      source = createAudioRecordSource(parameters);
+    } catch (IllegalArgumentException e) {
+      mEvents.sendErrorMessage(e);
+      return;
+    }
+    arm(source, preRollMs);
+  }
+
+  /**
+   * 用指定数据源布防
+   *
+   * @param source 数据源，由录音工具负责释放
+   * @param preRollMs 保留的时长，毫秒，不超过 {@link #MAX_PRE_ROLL_MS}
+   */
+  public void arm(@NonNull PcmSource source, int preRollMs) {
+    if (preRollMs <= 0 || preRollMs > MAX_PRE_ROLL_MS) {
+      throw new IllegalArgumentException("bad pre-roll duration");
+    }
+    if (mArmed || mIsRecording) {
+      throw new IllegalStateException("already armed or recording");
+    }
+    if (mSource != null) {
+      mSource.release();
+    }
+    mSource = source;
+    try {
+      final int frameSize = source.getChannelCount() * PcmDownmixer.getBytesPerSample(source.getEncoding());
+      // 容量在这里一次分配，布防多久内存都不变
+      final PreRollBuffer preRoll = new PreRollBuffer(preRollMs, source.getSampleRateInHz(), frameSize);
+      source.start();
+      mArmed = true;
+      if (mExecutor == null) {
+        mExecutor = Executors.newSingleThreadExecutor();
+      }
+      final byte[] pcmBuffer = new byte[source.getBufferSize()];
+      mExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          keepPreRoll(source, pcmBuffer, preRoll);
+        }
+      });
+    } catch (IOException e) {
+      mEvents.sendErrorMessage(e);
     } catch (IllegalArgumentException e) {
-      mHandler.sendErrorMessage(e);
+      mEvents.sendErrorMessage(e);
     } catch (IllegalStateException e) {
-      mHandler.sendErrorMessage(e);
+      mEvents.sendErrorMessage(e);
+    }
+  }
+
+  /**
+   * 解除布防并停止数据源，正在录音时同时结束录音
+   */
+  public void disarm() {
+    if (!mArmed) {
+      return;
+    }
+    mArmed = false;
+    mIsRecording = false;
+    if (mSource != null) {
+      mSource.stop();
     }
   }
 
   /**
-   * 停止录音
+   * 是否已布防
+   */
+  public boolean isArmed() {
+    return mArmed;
+  }
+
+  /**
+   * 停止录音，已布防时数据源继续运行，回到只保留预录数据的状态
    */
   public void stop() {
     mIsRecording = false;
-    if (mAudioRecord != null) {
-      try {
-        mAudioRecord.stop();
-      } catch (IllegalStateException e) {
-        // do nothing
-      }
+    if (mSource != null && !mArmed) {
+      mSource.stop();
     }
   }
 
@@ -355,10 +794,12 @@ public final class WavRecorderUtils {
    */
   public void release() {
     mCallback = null;
+    mVoiceChangeCallBack = null;
+    mArmed = false;
     stop();
-    if (mAudioRecord != null) {
-      mAudioRecord.release();
-      mAudioRecord = null;
+    if (mSource != null) {
+      mSource.release();
+      mSource = null;
     }
   }
   //</editor-fold>
@@ -373,183 +814,335 @@ public final class WavRecorderUtils {
     if (mExecutor == null) {
       mExecutor = Executors.newSingleThreadExecutor();
     }
-    final byte[] pcmBuffer = new byte[mBufferSize];
+    final PcmSource source = mSource;
+    if (source == null) {
+      return;
+    }
+    final byte[] pcmBuffer = new byte[source.getBufferSize()];
     mExecutor.execute(new Runnable() {
-      @SuppressWarnings("TryFinallyCanBeTryWithResources")
       @Override
       public void run() {
-        if (mWavFilePath != null && mParameters != null) {
-          long currentTime = System.currentTimeMillis();
-          ByteArrayOutputStream bos = null;
-          final boolean is8Bit = mParameters.mAudioFormat == AudioFormat.ENCODING_PCM_8BIT;
-          final float maxAmplitude = is8Bit ? Byte.MAX_VALUE : Short.MAX_VALUE;
-          final int minPeek = (int) (maxAmplitude * 0.1f);
-          boolean hasError = false;
-          mHandler.sendStartMessage();
-          try {
-            bos = new ByteArrayOutputStream();
-            int zeroCount = 0;
-            // 读取 pcm 数据 并 保存进字节流中
-            while (mIsRecording) {
-              if (mAudioRecord == null) {
-                break;
-              }
-              int read = mAudioRecord.read(pcmBuffer, 0, mBufferSize);
-              if(recordListener != null){
-                recordListener.onRecord(pcmBuffer);
-              }
-              // 定义录音结果
-              RecordingResult recordingResult = new RecordingResult();
-              if (read > 0) {
-                zeroCount = 0;
-                // 写入数据
-                bos.write(pcmBuffer, 0, read);
-                // 获取当前音量
-                double sum = 0;
-                int handleCount = 0;
-                if (is8Bit) {
-                  for (int i = 0; i < read; i++) {
-                    if (Math.abs(pcmBuffer[i]) > minPeek) {
-                      sum += pcmBuffer[i] * pcmBuffer[i];
-                      handleCount++;
-                    }
-                  }
-                } else {
-                  for (int i = 0; i < read; i += 2) {
-                    if (i + 1 != read) {
-                      short peek = (short) (((pcmBuffer[i] & 0xFF) << 8) | (pcmBuffer[i] & 0xFF));
-                      if (peek > minPeek) {
-                        sum += peek * peek;
-                        handleCount++;
-                      }
-                    }
-                  }
-                }
-                if (handleCount != 0) {
-                  final double amplitude = Math.sqrt(sum / handleCount);
-                  // 通知正在录音
-                  recordingResult.mVolumeProcess = (float) (amplitude / maxAmplitude);
-                  if (recordingResult.mVolumeProcess < 0) {
-                    recordingResult.mVolumeProcess = 0;
-                  } else if (recordingResult.mVolumeProcess > 1) {
-                    recordingResult.mVolumeProcess = 1;
-                  }
-                }
-              } else if (read == 0) {
-                // 判断异常
-                zeroCount++;
-                if (zeroCount > MAX_ZERO_COUNT) {
-                  hasError = true;
-                  mHandler.sendErrorMessage(new Throwable("can not record audio"));
-                  break;
-                }
+        recordToFile(source, pcmBuffer, null);
+      }
+    });
+  }
+
+  /**
+   * 布防线程：没有录音时把数据读入预录缓冲，开始录音后在同一线程写文件，读取不中断。
+   * 读取 或 写文件出错时解除布防并停止数据源，不再反复重试
+   */
+  private void keepPreRoll(@NonNull PcmSource source, @NonNull byte[] pcmBuffer, @NonNull PreRollBuffer preRoll) {
+    final int frameSize = source.getChannelCount() * PcmDownmixer.getBytesPerSample(source.getEncoding());
+    final int readSize = Math.max(frameSize, pcmBuffer.length / frameSize * frameSize);
+    final PipelineMetrics metrics = PipelineMetrics.getInstance();
+    boolean hasError = false;
+    try {
+      int zeroCount = 0;
+      while (mArmed) {
+        if (mIsRecording) {
+          if (!recordToFile(source, pcmBuffer, preRoll)) {
+            hasError = true;
+            break;
+          }
+          zeroCount = 0;
+          continue;
+        }
+        final int read = source.read(pcmBuffer, 0, readSize);
+        if (read == PcmSource.END_OF_STREAM) {
+          break;
+        }
+        if (read > 0) {
+          zeroCount = 0;
+          preRoll.write(pcmBuffer, 0, read);
+        } else if (read == 0) {
+          // 与录音时相同的判断，布防可能持续很久，这里只看连续读不到数据的次数
+          metrics.mZeroReads.incrementAndGet();
+          zeroCount++;
+          if (zeroCount > MAX_ZERO_COUNT) {
+            hasError = true;
+            metrics.mCaptureErrors.incrementAndGet();
+            mEvents.sendErrorMessage(new Throwable("can not record audio"));
+            break;
+          }
+        }
+      }
+    } catch (IOException e) {
+      hasError = true;
+      metrics.mCaptureErrors.incrementAndGet();
+      mEvents.sendErrorMessage(e);
+    } finally {
+      mArmed = false;
+      if (hasError) {
+        mIsRecording = false;
+        source.stop();
+      }
+    }
+  }
+
+  /**
+   * 在录音线程读取数据源写入文件，直到停止、读完 或 出错
+   *
+   * @param pcmBuffer 读取用的字节数组，大小为数据源的建议读取字节数
+   * @param preRoll 布防期间保留的数据，先写入文件，之后紧接着写入新读到的数据
+   * @return 是否正常结束，出错时已发送错误消息 并 清除录音状态
+   */
+  @SuppressWarnings("TryFinallyCanBeTryWithResources")
+  private boolean recordToFile(@NonNull PcmSource source, @NonNull byte[] pcmBuffer, @Nullable PreRollBuffer preRoll) {
+    if (mWavFilePath == null) {
+      mIsRecording = false;
+      return false;
+    }
+    final int bufferSize = pcmBuffer.length;
+    // 时长按写入的帧数计算，数据源不按实时速度读取时也是音频的长度
+    long frameCount = 0;
+    final int sampleRate = source.getSampleRateInHz();
+    PcmFileWriter wavWriter = null;
+    final int encoding = source.getEncoding();
+    final int frameSize = source.getChannelCount() * PcmDownmixer.getBytesPerSample(encoding);
+    final PcmRingBuffer ringBuffer = mRingBuffer;
+    final AudioAnalyzer analyzer = mAudioAnalyzer;
+    final PcmListener pcmListener = mPcmListener;
+    // 人声回调 与 分析结果的人声标记都需要检测，没有单独设置时用默认参数
+    final VoiceActivityDetector detector = mVoiceActivityDetector != null ? mVoiceActivityDetector
+        : mVoiceChangeCallBack != null || analyzer != null ? mDefaultVoiceActivityDetector : null;
+    final PipelineMetrics metrics = PipelineMetrics.getInstance();
+    final File wavFile = new File(mWavFilePath);
+    final File peakIndexFile = PeakIndex.getIndexFile(wavFile);
+    // 同一路径上次录音的索引已过期
+    peakIndexFile.delete();
+    final PeakIndexBuilder peakIndex = mPeakIndexEnabled
+        ? new PeakIndexBuilder(sampleRate, PeakIndex.DEFAULT_SAMPLES_PER_ENTRY) : null;
+    if (detector != null) {
+      // 起始 与 保持时长按数据源的采样率计时
+      detector.setSampleRate(sampleRate);
+      detector.reset();
+    }
+    final LevelMeter meter = mLevelMeter;
+    meter.setSampleRate(sampleRate);
+    meter.reset();
+    if (analyzer != null) {
+      analyzer.clearWindow();
+      // 分析的可能是降采样后的样本，电平以原采样率的测量为准
+      analyzer.setSharedLevelMeter(meter);
+      analyzer.setVoiceActivityDetector(detector);
+    }
+    final int readSize = Math.max(frameSize, (ringBuffer != null
+        ? Math.min(ringBuffer.getBlockSize(), bufferSize) : bufferSize) / frameSize * frameSize);
+    // 分析只看单声道，多声道、8 位在这里一次遍历转换，单声道 16 位 与 浮点 不拷贝
+    final PcmDownmixer downmixer = new PcmDownmixer(encoding, source.getChannelCount(), bufferSize);
+    // 只有分析用降采样后的样本
+    final int analysisSampleRate = mAnalysisSampleRate;
+    final PcmDecimator decimator = analyzer != null && analysisSampleRate > 0
+        && PcmDecimator.getFactor(sampleRate, analysisSampleRate) > 1
+        ? new PcmDecimator(sampleRate, analysisSampleRate, bufferSize / frameSize) : null;
+    // wav 文件是小端序，大端设备上仍走字节数组
+    final ByteBuffer directBuffer = mDirectBufferEnabled
+        && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+        ? ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder()) : null;
+    boolean hasError = false;
+    mProgress.reset();
+    mEvents.sendStartMessage();
+    try {
+      // 边录边写 wav 文件，内存占用与录音时长无关
+      wavWriter = createWavWriter(wavFile, source);
+      if (preRoll != null && preRoll.size() > 0) {
+        // 先写入布防期间保留的数据，时长从这段数据的开头算起
+        int length;
+        while ((length = preRoll.read(pcmBuffer, 0, bufferSize)) > 0) {
+          wavWriter.write(pcmBuffer, 0, length);
+          frameCount += length / frameSize;
+          if (peakIndex != null) {
+            downmixer.mix(pcmBuffer, length);
+            if (downmixer.isFloat()) {
+              peakIndex.add(downmixer.getFloats(), downmixer.getSampleCount());
+            } else {
+              peakIndex.add(downmixer.getShorts(), downmixer.getSampleCount());
+            }
+          }
+        }
+      }
+      int zeroCount = 0;
+      // 读取 pcm 数据 并 写入文件
+      while (mIsRecording) {
+        final PcmRingBuffer.Block block;
+        final byte[] buffer;
+        final int read;
+        if (directBuffer != null) {
+          read = source.read(directBuffer, readSize);
+          // 只有环形缓冲 和 旧的字节监听需要字节数组，按需拷贝
+          block = ringBuffer != null && read > 0 ? ringBuffer.claim() : null;
+          buffer = block != null ? block.getData() : recordListener != null ? pcmBuffer : null;
+          if (buffer != null && read > 0) {
+            directBuffer.clear();
+            directBuffer.get(buffer, 0, read);
+          }
+        } else {
+          // 有环形缓冲时直接读入预分配的数据块，避免消费方读到正在被覆盖的数据
+          block = ringBuffer != null ? ringBuffer.claim() : null;
+          buffer = block != null ? block.getData() : pcmBuffer;
+          read = source.read(buffer, 0, readSize);
+        }
+        if (read == PcmSource.END_OF_STREAM) {
+          // 数据源已读完，按正常结束处理
+          mIsRecording = false;
+          break;
+        }
+        // 读取返回的时刻，随数据一起传给绘制端计算端到端延迟
+        final long captureTimeNanos = System.nanoTime();
+        if (block != null && read > 0) {
+          ringBuffer.publish(block, read, captureTimeNanos);
+        }
+        if (recordListener != null && buffer != null) {
+          recordListener.onRecord(buffer);
+        }
+        if (read > 0) {
+          zeroCount = 0;
+          frameCount += read / frameSize;
+          if (directBuffer != null) {
+            directBuffer.clear();
+            directBuffer.limit(read);
+            wavWriter.write(directBuffer);
+            downmixer.mix(directBuffer, read);
+          } else {
+            wavWriter.write(buffer, 0, read);
+            if (block != null) {
+              // 数据块轮换时使用块自带的视图，不重新包装
+              downmixer.mix(block, read);
+            } else {
+              downmixer.mix(buffer, read);
+            }
+          }
+          final int sampleCount = downmixer.getSampleCount();
+          boolean voiceChanged = false;
+          if (downmixer.isFloat()) {
+            final FloatBuffer samples = downmixer.getFloats();
+            meter.process(samples, sampleCount);
+            if (peakIndex != null) {
+              peakIndex.add(samples, sampleCount);
+            }
+            // 先检测人声，分析结果带上当前的人声状态
+            voiceChanged = detector != null && detector.process(samples, sampleCount);
+            // 分析一次，供所有渲染器共用
+            if (analyzer != null) {
+              analyzer.setCaptureTimeNanos(captureTimeNanos);
+              if (decimator != null) {
+                final int decimated = decimator.process(samples, sampleCount);
+                analyzer.analyze(decimator.getFloats(), decimated);
+              } else {
+                analyzer.analyze(samples, sampleCount);
               }
-              recordingResult.mDuration = System.currentTimeMillis() - currentTime;
-              mHandler.sendRecordingMessage(recordingResult);
             }
-            if (!hasError) {
-              // 获取时长
-              long totalDuration = System.currentTimeMillis() - currentTime;
-              // 将 pcm 数据转换成 wav 数据
-              writePcmDataToWavFile(bos.toByteArray(), new File(mWavFilePath), mParameters);
-              // 通知结束
-              FinishResult finishResult = new FinishResult();
-              finishResult.mDuration = totalDuration;
-              mHandler.sendFinishMessage(finishResult);
+          } else {
+            final ShortBuffer samples = downmixer.getShorts();
+            meter.process(samples, sampleCount);
+            if (peakIndex != null) {
+              peakIndex.add(samples, sampleCount);
             }
-          } catch (IOException e) {
-            // 通知失败
-            mHandler.sendErrorMessage(e);
-          } finally {
-            if (bos != null) {
-              try {
-                bos.close();
-              } catch (IOException e) {
-                // do nothing
+            voiceChanged = detector != null && detector.process(samples, sampleCount);
+            if (analyzer != null) {
+              analyzer.setCaptureTimeNanos(captureTimeNanos);
+              if (decimator != null) {
+                final int decimated = decimator.process(samples, sampleCount);
+                analyzer.analyze(decimator.getShorts(), decimated);
+              } else {
+                analyzer.analyze(samples, sampleCount);
               }
             }
+            if (pcmListener != null) {
+              pcmListener.onPcm(samples, sampleCount);
+            }
+          }
+          if (voiceChanged) {
+            mEvents.sendVoiceMessage(detector.isVoice());
+          }
+          metrics.mBuffers.incrementAndGet();
+          metrics.mBytes.addAndGet(read);
+          metrics.mProcessNanos.record(System.nanoTime() - captureTimeNanos);
+        } else if (read == 0) {
+          // 判断异常
+          metrics.mZeroReads.incrementAndGet();
+          zeroCount++;
+          if (zeroCount > MAX_ZERO_COUNT) {
+            hasError = true;
+            metrics.mCaptureErrors.incrementAndGet();
+            mEvents.sendErrorMessage(new Throwable("can not record audio"));
+            break;
           }
         }
+        // 只写入快照，按频率合并通知主线程
+        if (mProgress.update(meter, framesToMillis(frameCount, sampleRate))) {
+          mEvents.sendRecordingMessage();
+        }
       }
-    });
+      if (!hasError) {
+        // 获取时长
+        long totalDuration = framesToMillis(frameCount, sampleRate);
+        // 写出剩余数据 并 回填 wav 头部
+        wavWriter.close();
+        // 通知结束
+        FinishResult finishResult = new FinishResult();
+        finishResult.mDuration = totalDuration;
+        if (peakIndex != null) {
+          try {
+            peakIndex.write(peakIndexFile);
+            finishResult.mPeakIndexFile = peakIndexFile;
+          } catch (IOException e) {
+            // 索引写入失败不影响录音文件
+            peakIndexFile.delete();
+          }
+        }
+        mEvents.sendFinishMessage(finishResult);
+      }
+    } catch (IOException e) {
+      // 通知失败
+      hasError = true;
+      metrics.mCaptureErrors.incrementAndGet();
+      mEvents.sendErrorMessage(e);
+    } finally {
+      if (hasError) {
+        // 布防时录音状态决定布防线程是否再次写文件，出错后必须清除
+        mIsRecording = false;
+      }
+      if (analyzer != null) {
+        analyzer.setSharedLevelMeter(null);
+        analyzer.setVoiceActivityDetector(null);
+      }
+      if (wavWriter != null) {
+        try {
+          wavWriter.close();
+        } catch (IOException e) {
+          // do nothing
+        }
+      }
+    }
+    return !hasError;
   }
 
   /**
-   * 将 pcm 数据写入 wav 文件
-   *
-   * @param pcmData pcm 数据
-   * @param wavFile wav 文件
-   */
-  private void writePcmDataToWavFile(
-      @NonNull byte[] pcmData,
-      @NonNull File wavFile,
-      @NonNull Parameters parameters)
-      throws IOException {
-    long totalAudioLength = pcmData.length;
-    long totalDataLength = pcmData.length + 36;
-    long longSampleRate = parameters.mSampleRateInHz;
-    int channelCount = getChannelCount(parameters.mChannelConfig);
-    long byteRate = 16 * parameters.mSampleRateInHz * channelCount / 8;
-    FileOutputStream fos = new FileOutputStream(wavFile);
-    /// 添加 wav 头部
-    byte[] header = new byte[44];
-    // RIFF/WAVE header
-    header[0] = 'R';
-    header[1] = 'I';
-    header[2] = 'F';
-    header[3] = 'F';
-    header[4] = (byte) (totalDataLength & 0xff);
-    header[5] = (byte) ((totalDataLength >> 8) & 0xff);
-    header[6] = (byte) ((totalDataLength >> 16) & 0xff);
-    header[7] = (byte) ((totalDataLength >> 24) & 0xff);
-    //WAVE
-    header[8] = 'W';
-    header[9] = 'A';
-    header[10] = 'V';
-    header[11] = 'E';
-    // 'fmt ' chunk
-    header[12] = 'f';
-    header[13] = 'm';
-    header[14] = 't';
-    header[15] = ' ';
-    // 4 bytes: size of 'fmt ' chunk
-    header[16] = 16;
-    header[17] = 0;
-    header[18] = 0;
-    header[19] = 0;
-    // format = 1 (PCM)
-    header[20] = 1;
-    header[21] = 0;
-    header[22] = (byte) channelCount;
-    header[23] = 0;
-    header[24] = (byte) (longSampleRate & 0xff);
-    header[25] = (byte) ((longSampleRate >> 8) & 0xff);
-    header[26] = (byte) ((longSampleRate >> 16) & 0xff);
-    header[27] = (byte) ((longSampleRate >> 24) & 0xff);
-    header[28] = (byte) (byteRate & 0xff);
-    header[29] = (byte) ((byteRate >> 8) & 0xff);
-    header[30] = (byte) ((byteRate >> 16) & 0xff);
-    header[31] = (byte) ((byteRate >> 24) & 0xff);
-    // block align
-    header[32] = (byte) (channelCount * 16 / 8);
-    header[33] = 0;
-    // bits per sample
-    header[34] = 16;
-    header[35] = 0;
-    // data
-    header[36] = 'd';
-    header[37] = 'a';
-    header[38] = 't';
-    header[39] = 'a';
-    header[40] = (byte) (totalAudioLength & 0xff);
-    header[41] = (byte) ((totalAudioLength >> 8) & 0xff);
-    header[42] = (byte) ((totalAudioLength >> 16) & 0xff);
-    header[43] = (byte) ((totalAudioLength >> 24) & 0xff);
-    // 写入头
-    fos.write(header, 0, header.length);
-    // 写入 pcm 数据
-    fos.write(pcmData, 0, pcmData.length);
-    fos.close();
+   * 帧数换算为毫秒
+   */
+  private static long framesToMillis(long frameCount, int sampleRateInHz) {
+    return sampleRateInHz > 0 ? frameCount * 1000 / sampleRateInHz : 0;
+  }
+
+  /**
+   * 按录音文件格式 与 数据源格式创建写入器
+   */
+  @NonNull
+  private PcmFileWriter createWavWriter(@NonNull File file, @NonNull PcmSource source) throws IOException {
+    final int encoding = source.getEncoding();
+    if (mOutputFormat == OUTPUT_FORMAT_WAV_IMA_ADPCM
+        && encoding == PcmSource.ENCODING_PCM_16BIT && source.getChannelCount() <= 2) {
+      return new ImaAdpcmWavWriter(file, source.getSampleRateInHz(), source.getChannelCount(), WAV_BUFFER_SIZE);
+    }
+    return new WavFileWriter(
+        file,
+        encoding == PcmSource.ENCODING_PCM_FLOAT ? WavHeader.FORMAT_IEEE_FLOAT : WavHeader.FORMAT_PCM,
+        source.getSampleRateInHz(),
+        source.getChannelCount(),
+        source.getBitsPerSample(),
+        WAV_BUFFER_SIZE
+    );
   }
 
   /**
@@ -0,0 +1,66 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 拖动查看已保存的录音：把播放头之前一个窗口的样本交给 {@link AudioAnalyzer}，
+ * 由绑定了该分析器的那一个 View（{@link AudioAnimationView#setAudioAnalyzer(AudioAnalyzer)}）在下一个 vsync 绘制。
+ * <p>
+ * 每次定位只移动映射内存上的视图并分析一次，不读文件、不分配内存，可以在拖动进度条的回调里直接调用。
+ * 与 {@link AudioAnalyzer#analyze} 的其他调用方不能同时使用同一个分析。
+ */
+public final class WavScrubber {
+  @NonNull
+  private final MappedWavReader mReader;
+  @NonNull
+  private final AudioAnalyzer mAnalyzer;
+  private long mPosition;
+
+  /**
+   * @param reader 录音文件，窗口大小为 {@link MappedWavReader#getMaxWindowFrames()}
+   * @param analyzer 分析，柱子个数应与渲染器一致
+   */
+  public WavScrubber(@NonNull MappedWavReader reader, @NonNull AudioAnalyzer analyzer) {
+    mReader = reader;
+    mAnalyzer = analyzer;
+  }
+
+  /**
+   * 定位到某一帧，分析该帧之前的一个窗口
+   *
+   * @param frame 播放头所在帧
+   */
+  public void seekTo(long frame) {
+    mPosition = Math.max(0, Math.min(frame, mReader.getFrameCount()));
+    final int frames = mReader.getMaxWindowFrames();
+    // 开头不足一个窗口时从 0 开始
+    final long first = Math.max(0, mPosition - frames);
+    // 窗口里是跳转前位置的样本，不能与新位置拼在一起
+    mAnalyzer.clearWindow();
+    mReader.analyze(mAnalyzer, first, (int) Math.min(frames, mPosition - first));
+  }
+
+  /**
+   * 定位到某一时刻
+   *
+   * @param positionMs 毫秒
+   */
+  public void seekToMs(long positionMs) {
+    seekTo(positionMs * mReader.getSampleRateInHz() / 1000);
+  }
+
+  /**
+   * 播放头所在帧
+   */
+  public long getPosition() {
+    return mPosition;
+  }
+
+  public long getPositionMs() {
+    return mPosition * 1000 / mReader.getSampleRateInHz();
+  }
+
+  public long getDurationMs() {
+    return mReader.getDurationMs();
+  }
+}
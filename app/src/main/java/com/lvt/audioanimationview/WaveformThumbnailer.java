@@ -0,0 +1,581 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 批量生成录音的波形缩略图，不依赖 Android，可在 JVM 上运行
+ * <p>
+ * 每个文件流式读取一遍（PCM 与 IMA ADPCM），与 {@link VoiceGraphRenderer} 未设置频谱分析时相同，
+ * 把整段录音分成若干柱子，每段的均方根电平按 {@link LevelMeter} 换算为 0~1，写成 {@link #DATA_SUFFIX} 文件，可选同时输出 PNG。
+ * <p>
+ * 批量处理用固定线程数的线程池，任务队列有界，队列满时由提交线程自己处理，内存占用与文件数无关。
+ * 命令行入口在 benchmark 模块：{@code ./gradlew :benchmark:thumbnails -Pthumbnails.args="[-o 输出目录] [-j 线程数] [-bars 柱子数] [-png 宽x高] 目录或文件..."}
+ */
+public final class WaveformThumbnailer {
+  /**
+   * 柱子电平文件后缀
+   */
+  public static final String DATA_SUFFIX = ".bars";
+  /**
+   * PNG 文件后缀
+   */
+  public static final String PNG_SUFFIX = ".png";
+  static final int MAGIC = 'B' | ('A' << 8) | ('R' << 16) | ('S' << 24);
+  /**
+   * 2：电平改为均方根 dBFS 换算的 0~1，旧版本的分段平均音量不再读取
+   */
+  static final int VERSION = 2;
+  private static final int HEADER_SIZE = 24;
+  private static final int READ_SIZE = 64 * 1024;
+
+  /**
+   * 单个文件的缩略图数据
+   */
+  public static final class Thumbnail {
+    private final int mSampleRateInHz;
+    private final long mDurationMs;
+    @NonNull
+    private final float[] mLevels;
+
+    Thumbnail(int sampleRateInHz, long durationMs, @NonNull float[] levels) {
+      mSampleRateInHz = sampleRateInHz;
+      mDurationMs = durationMs;
+      mLevels = levels;
+    }
+
+    public int getSampleRateInHz() {
+      return mSampleRateInHz;
+    }
+
+    /**
+     * 录音时长，毫秒
+     */
+    public long getDurationMs() {
+      return mDurationMs;
+    }
+
+    /**
+     * 每个柱子的电平 0~1，与 {@link VoiceGraphRenderer} 时域模式的电平单位相同
+     */
+    @NonNull
+    public float[] getLevels() {
+      return mLevels;
+    }
+
+    /**
+     * 读取 {@link #DATA_SUFFIX} 文件
+     *
+     * @throws IOException 读取失败 或 格式不对
+     */
+    @NonNull
+    public static Thumbnail read(@NonNull File dataFile) throws IOException {
+      final byte[] bytes = new byte[(int) Math.min(dataFile.length(), Integer.MAX_VALUE)];
+      final RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+      try {
+        file.readFully(bytes);
+      } finally {
+        file.close();
+      }
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      if (bytes.length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        throw new IOException("not a thumbnail file");
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("unsupported thumbnail version " + buffer.getInt(4));
+      }
+      final int sampleRateInHz = buffer.getInt(8);
+      final int barCount = buffer.getInt(12);
+      final long durationMs = buffer.getLong(16);
+      if (barCount < 0 || bytes.length < HEADER_SIZE + barCount * 4L) {
+        throw new IOException("truncated thumbnail file");
+      }
+      final float[] levels = new float[barCount];
+      buffer.position(HEADER_SIZE);
+      buffer.asFloatBuffer().get(levels);
+      return new Thumbnail(sampleRateInHz, durationMs, levels);
+    }
+
+    /**
+     * 写成 {@link #DATA_SUFFIX} 文件：魔数 "BARS"、版本、采样率、柱子数、时长(long)，之后每个柱子一个 float，小端
+     */
+    public void write(@NonNull File dataFile) throws IOException {
+      final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + mLevels.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(mSampleRateInHz);
+      buffer.putInt(mLevels.length);
+      buffer.putLong(mDurationMs);
+      for (float level : mLevels) {
+        buffer.putFloat(level);
+      }
+      final FileOutputStream out = new FileOutputStream(dataFile);
+      try {
+        out.write(buffer.array());
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * 批量处理的结果
+   */
+  public static final class BatchResult {
+    private final int mSucceeded;
+    private final int mFailed;
+    private final long mInputBytes;
+    private final long mElapsedNanos;
+
+    BatchResult(int succeeded, int failed, long inputBytes, long elapsedNanos) {
+      mSucceeded = succeeded;
+      mFailed = failed;
+      mInputBytes = inputBytes;
+      mElapsedNanos = elapsedNanos;
+    }
+
+    public int getSucceeded() {
+      return mSucceeded;
+    }
+
+    public int getFailed() {
+      return mFailed;
+    }
+
+    /**
+     * 成功处理的 wav 文件总字节数
+     */
+    public long getInputBytes() {
+      return mInputBytes;
+    }
+
+    public long getElapsedNanos() {
+      return mElapsedNanos;
+    }
+
+    /**
+     * 吞吐量，每秒处理的文件数，含失败的文件
+     */
+    public double getFilesPerSecond() {
+      return mElapsedNanos == 0 ? 0 : (mSucceeded + mFailed) * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      final double seconds = mElapsedNanos / 1e9;
+      return String.format(Locale.US, "%d files, %d failed, %.2f s, %.1f files/s, %.1f MB/s",
+          mSucceeded + mFailed, mFailed, seconds, getFilesPerSecond(),
+          seconds == 0 ? 0 : mInputBytes / seconds / (1024 * 1024));
+    }
+  }
+
+  /**
+   * 每个文件处理完的回调，在工作线程调用
+   */
+  public interface OnThumbnailListener {
+    void onThumbnail(@NonNull File wavFile, @NonNull Thumbnail thumbnail);
+
+    void onError(@NonNull File wavFile, @NonNull IOException e);
+  }
+
+  /**
+   * 参数
+   */
+  public static final class Options {
+    private final int mBarCount;
+    private final int mImageWidth;
+    private final int mImageHeight;
+    private final int mStrokeWidth;
+    private final int mLineInterval;
+    private final int mAmplitudePixel;
+    private final int mColor;
+
+    private Options(@NonNull Builder builder) {
+      mBarCount = builder.mBarCount;
+      mImageWidth = builder.mImageWidth;
+      mImageHeight = builder.mImageHeight;
+      mStrokeWidth = builder.mStrokeWidth;
+      mLineInterval = builder.mLineInterval;
+      mAmplitudePixel = builder.mAmplitudePixel;
+      mColor = builder.mColor;
+    }
+
+    public static final class Builder {
+      private int mBarCount;
+      private int mImageWidth;
+      private int mImageHeight;
+      private int mStrokeWidth;
+      private int mLineInterval;
+      private int mAmplitudePixel;
+      private int mColor;
+
+      public Builder() {
+        mBarCount = 20;
+        mStrokeWidth = 8;
+        mLineInterval = 6;
+        mAmplitudePixel = 1;
+        mColor = 0xFF00A5FF;
+      }
+
+      /**
+       * 柱子个数，默认 20
+       */
+      @NonNull
+      public Builder setBarCount(int barCount) {
+        mBarCount = barCount;
+        return this;
+      }
+
+      /**
+       * PNG 尺寸，默认 0 表示不输出 PNG
+       */
+      @NonNull
+      public Builder setImageSize(int width, int height) {
+        mImageWidth = width;
+        mImageHeight = height;
+        return this;
+      }
+
+      /**
+       * 柱子样式，含义与 {@link VoiceGraphRenderer} 的构造参数相同，默认 8 / 6 / 1 像素
+       *
+       * @param strokeWidth 柱子宽度
+       * @param lineInterval 柱子间距
+       * @param amplitudePixel 每单位电平的像素
+       */
+      @NonNull
+      public Builder setBarStyle(int strokeWidth, int lineInterval, int amplitudePixel) {
+        mStrokeWidth = strokeWidth;
+        mLineInterval = lineInterval;
+        mAmplitudePixel = amplitudePixel;
+        return this;
+      }
+
+      /**
+       * 柱子颜色 ARGB，默认 #00A5FF
+       */
+      @NonNull
+      public Builder setColor(int color) {
+        mColor = color;
+        return this;
+      }
+
+      @NonNull
+      public Options build() {
+        if (mBarCount <= 0) {
+          throw new IllegalArgumentException("bad bar count");
+        }
+        if (mImageWidth < 0 || mImageHeight < 0 || (mImageWidth == 0) != (mImageHeight == 0)) {
+          throw new IllegalArgumentException("bad image size");
+        }
+        if (mStrokeWidth <= 0 || mLineInterval < 0 || mAmplitudePixel <= 0) {
+          throw new IllegalArgumentException("bad bar style");
+        }
+        return new Options(this);
+      }
+    }
+  }
+
+  @NonNull
+  private final Options mOptions;
+  /**
+   * 每个工作线程复用的读取缓冲
+   */
+  private final ThreadLocal<byte[]> mReadBuffer = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[READ_SIZE];
+    }
+  };
+
+  public WaveformThumbnailer(@NonNull Options options) {
+    mOptions = options;
+  }
+
+  /**
+   * 目录下所有 wav 文件，不递归，按文件名排序
+   */
+  @NonNull
+  public static List<File> listWavFiles(@NonNull File directory) {
+    final File[] files = directory.listFiles();
+    final List<File> result = new ArrayList<File>();
+    if (files == null) {
+      return result;
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      if (file.isFile() && file.getName().toLowerCase(Locale.US).endsWith(".wav")) {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 计算一个文件的缩略图，可在任意线程调用
+   *
+   * @throws IOException 读取失败 或 不支持的格式
+   */
+  @NonNull
+  public Thumbnail compute(@NonNull File wavFile) throws IOException {
+    final int formatTag;
+    final RandomAccessFile file = new RandomAccessFile(wavFile, "r");
+    try {
+      formatTag = WavHeader.read(file.getChannel()).getFormatTag();
+    } finally {
+      file.close();
+    }
+    final PcmSource source;
+    final long frameCount;
+    if (formatTag == WavHeader.FORMAT_IMA_ADPCM) {
+      final ImaAdpcmPcmSource adpcm = new ImaAdpcmPcmSource(wavFile, READ_SIZE, false);
+      frameCount = adpcm.getFrameCount();
+      source = adpcm;
+    } else {
+      final FilePcmSource pcm = new FilePcmSource(wavFile, READ_SIZE, false);
+      frameCount = pcm.getFrameCount();
+      source = pcm;
+    }
+    try {
+      source.start();
+      final float[] levels = computeLevels(source, frameCount);
+      return new Thumbnail(source.getSampleRateInHz(), frameCount * 1000 / source.getSampleRateInHz(), levels);
+    } finally {
+      source.release();
+    }
+  }
+
+  /**
+   * 与 {@link LevelMeter#sliceLevel(ShortBuffer, int, int)} 相同：
+   * 整段录音等分成柱子个数段，多出的尾部不计，每段为样本平方和的均值换算的 dBFS，再按 {@link LevelMeter#DEFAULT_RANGE_DB} 换算为 0~1
+   */
+  @NonNull
+  private float[] computeLevels(@NonNull PcmSource source, long frameCount) throws IOException {
+    final int barCount = mOptions.mBarCount;
+    final double[] powers = new double[barCount];
+    final long interval = frameCount / barCount;
+    final byte[] buffer = mReadBuffer.get();
+    final int frameSize = source.getChannelCount() * PcmDownmixer.getBytesPerSample(source.getEncoding());
+    final int readSize = buffer.length / frameSize * frameSize;
+    final PcmDownmixer downmixer = new PcmDownmixer(source.getEncoding(), source.getChannelCount(), readSize);
+    long frame = 0;
+    int read;
+    while (interval > 0 && frame < interval * barCount
+        && (read = source.read(buffer, 0, readSize)) != PcmSource.END_OF_STREAM) {
+      downmixer.mix(buffer, read);
+      final int count = downmixer.getSampleCount();
+      int i = 0;
+      while (i < count && frame < interval * barCount) {
+        // 本次读取中属于同一个柱子的样本
+        final int bar = (int) (frame / interval);
+        final int end = (int) Math.min(count, i + (bar + 1) * interval - frame);
+        powers[bar] += downmixer.isFloat()
+            ? sumSquares(downmixer.getFloats(), i, end) : sumSquares(downmixer.getShorts(), i, end);
+        frame += end - i;
+        i = end;
+      }
+    }
+    final float[] levels = new float[barCount];
+    for (int i = 0; i < barCount && interval > 0; i++) {
+      levels[i] = LevelMeter.toLevel(LevelMeter.powerToDb((float) (powers[i] / interval)), LevelMeter.DEFAULT_RANGE_DB);
+    }
+    return levels;
+  }
+
+  /**
+   * 按满幅归一化的样本平方和
+   */
+  private static double sumSquares(@NonNull ShortBuffer samples, int from, int to) {
+    final int start = samples.position();
+    long sum = 0;
+    for (int i = start + from; i < start + to; i++) {
+      final int sample = samples.get(i);
+      sum += sample * sample;
+    }
+    return sum / (32768.0 * 32768.0);
+  }
+
+  private static double sumSquares(@NonNull FloatBuffer samples, int from, int to) {
+    final int start = samples.position();
+    double sum = 0;
+    for (int i = start + from; i < start + to; i++) {
+      final float sample = samples.get(i);
+      sum += sample * sample;
+    }
+    return sum;
+  }
+
+  /**
+   * 计算 并 写出一个文件的缩略图
+   *
+   * @param outputDirectory 输出目录，null 时写到 wav 文件旁
+   */
+  @NonNull
+  public Thumbnail generate(@NonNull File wavFile, @Nullable File outputDirectory) throws IOException {
+    final Thumbnail thumbnail = compute(wavFile);
+    final File directory = outputDirectory != null ? outputDirectory : wavFile.getAbsoluteFile().getParentFile();
+    thumbnail.write(new File(directory, wavFile.getName() + DATA_SUFFIX));
+    if (mOptions.mImageWidth > 0) {
+      writePng(new File(directory, wavFile.getName() + PNG_SUFFIX), thumbnail.getLevels());
+    }
+    return thumbnail;
+  }
+
+  /**
+   * 并行处理多个文件，阻塞到全部完成
+   *
+   * @param wavFiles wav 文件
+   * @param outputDirectory 输出目录，null 时写到各 wav 文件旁
+   * @param threadCount 线程数，0 表示处理器核数
+   * @param listener 回调，在工作线程调用
+   * @return 处理结果 与 吞吐量
+   */
+  @NonNull
+  public BatchResult generateAll(@NonNull List<File> wavFiles, @Nullable final File outputDirectory,
+                                 int threadCount, @Nullable final OnThumbnailListener listener) {
+    final int threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+    // 队列满时提交线程自己处理一个文件，不会一次把所有任务放进内存
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+    final AtomicInteger succeeded = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    final AtomicLong inputBytes = new AtomicLong();
+    final long start = System.nanoTime();
+    for (final File wavFile : wavFiles) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            final Thumbnail thumbnail = generate(wavFile, outputDirectory);
+            succeeded.incrementAndGet();
+            inputBytes.addAndGet(wavFile.length());
+            if (listener != null) {
+              listener.onThumbnail(wavFile, thumbnail);
+            }
+          } catch (IOException e) {
+            failed.incrementAndGet();
+            if (listener != null) {
+              listener.onError(wavFile, e);
+            }
+          } catch (RuntimeException e) {
+            // 文件内容异常导致的参数错误等，按失败计数，不影响其他文件
+            failed.incrementAndGet();
+            if (listener != null) {
+              listener.onError(wavFile, new IOException(e));
+            }
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        // 等待剩余任务
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    return new BatchResult(succeeded.get(), failed.get(), inputBytes.get(), System.nanoTime() - start);
+  }
+
+  //<editor-fold desc="PNG">
+  /**
+   * 按 {@link VoiceGraphRenderer} 的布局画柱子，透明背景，柱子不画圆头
+   */
+  private void writePng(@NonNull File pngFile, @NonNull float[] levels) throws IOException {
+    final Options options = mOptions;
+    final int width = options.mImageWidth;
+    final int height = options.mImageHeight;
+    final int stroke = options.mStrokeWidth;
+    // 每行前有一个滤波类型字节，0 表示不滤波
+    final int stride = width * 4 + 1;
+    final byte[] pixels = new byte[stride * height];
+    final float centerDis = (width - (levels.length * stroke + (levels.length - 1) * options.mLineInterval)) / 2f;
+    final float maxHalf = height / 2f - stroke;
+    // 与渲染器相同，电平 1 对应柱子画满
+    final float maxValue = maxHalf / options.mAmplitudePixel;
+    for (int i = 0; i < levels.length; i++) {
+      final float x = i * (options.mLineInterval + stroke) + stroke / 2f + centerDis;
+      final double value = levels[i] * maxValue;
+      final float half = value < 4 ? 1 : (float) Math.min(value * options.mAmplitudePixel, maxHalf);
+      final int left = Math.max(0, Math.round(x - stroke / 2f));
+      final int right = Math.min(width, Math.round(x + stroke / 2f));
+      final int top = Math.max(0, Math.round(height / 2f - half - stroke / 2f));
+      final int bottom = Math.min(height, Math.round(height / 2f + half + stroke / 2f));
+      for (int y = top; y < bottom; y++) {
+        for (int px = left; px < right; px++) {
+          final int index = y * stride + 1 + px * 4;
+          pixels[index] = (byte) (options.mColor >> 16);
+          pixels[index + 1] = (byte) (options.mColor >> 8);
+          pixels[index + 2] = (byte) options.mColor;
+          pixels[index + 3] = (byte) (options.mColor >>> 24);
+        }
+      }
+    }
+    final DataOutputStream out = new DataOutputStream(new FileOutputStream(pngFile));
+    try {
+      out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+      final ByteBuffer header = ByteBuffer.allocate(13);
+      // 8 位 RGBA，不隔行
+      header.putInt(width).putInt(height).put((byte) 8).put((byte) 6).put((byte) 0).put((byte) 0).put((byte) 0);
+      writeChunk(out, "IHDR", header.array());
+      writeChunk(out, "IDAT", deflate(pixels));
+      writeChunk(out, "IEND", new byte[0]);
+    } finally {
+      out.close();
+    }
+  }
+
+  @NonNull
+  private static byte[] deflate(@NonNull byte[] data) {
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 8 + 64);
+      final byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static void writeChunk(@NonNull DataOutputStream out, @NonNull String type, @NonNull byte[] data)
+      throws IOException {
+    final byte[] typeBytes = type.getBytes("US-ASCII");
+    final CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data);
+    out.writeInt(data.length);
+    out.write(typeBytes);
+    out.write(data);
+    out.writeInt((int) crc.getValue());
+  }
+  //</editor-fold>
+}
@@ -0,0 +1,59 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 字节、短整型输入都累积到同一个分析窗口
+ */
+public class AudioAnalyzerTest {
+    private static final int FFT_SIZE = 256;
+    private static final int BAND_COUNT = 8;
+    private static final int CHUNK = 40;
+
+    @Test
+    public void bytePath_usesWindow() {
+        final short[] samples = new short[FFT_SIZE * 3];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (8000 * Math.sin(2 * Math.PI * 1000 * i / 16000.0));
+        }
+        final byte[] bytes = new byte[samples.length * 2];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(samples);
+
+        final AudioAnalyzer fromShorts = create();
+        final AudioAnalyzer fromBytes = create();
+        // 小块输入，每块都发布整窗的结果
+        for (int offset = 0; offset < samples.length; offset += CHUNK) {
+            final int count = Math.min(CHUNK, samples.length - offset);
+            fromShorts.analyze(ShortBuffer.wrap(samples, offset, count).slice(), count);
+            final byte[] chunk = new byte[count * 2];
+            System.arraycopy(bytes, offset * 2, chunk, 0, chunk.length);
+            fromBytes.analyze(chunk, chunk.length);
+            assertArrayEquals(fromShorts.acquireLatest().getBandLevels(),
+                    fromBytes.acquireLatest().getBandLevels(), 1e-6f);
+        }
+        assertTrue(fromBytes.acquireLatest().isSpectrum());
+    }
+
+    @Test
+    public void bytePath_withoutWindowAnalyzesChunkOnly() {
+        final AudioAnalyzer analyzer = new AudioAnalyzer(BAND_COUNT);
+        final byte[] silence = new byte[CHUNK * 2];
+        analyzer.analyze(silence, silence.length);
+        final AudioFeatures features = analyzer.acquireLatest();
+        assertEquals(0, features.getSequence());
+        assertArrayEquals(new float[BAND_COUNT], features.getBandLevels(), 0f);
+    }
+
+    private static AudioAnalyzer create() {
+        final AudioAnalyzer analyzer = new AudioAnalyzer(BAND_COUNT);
+        analyzer.setSpectrumAnalyzer(new SpectrumAnalyzer(FFT_SIZE, 16000, BAND_COUNT));
+        analyzer.setWindowSize(FFT_SIZE);
+        return analyzer;
+    }
+}
@@ -0,0 +1,91 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 起音 / 释放 按帧时间指数逼近，与帧率无关
+ */
+public class BarSmootherTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void attack_followsTimeConstant() {
+        final BarSmoother smoother = new BarSmoother(1);
+        smoother.advance(1000 * MS);
+        smoother.setTarget(new float[]{1f});
+        // 经过一个起音时间常数到达 1 - 1/e
+        smoother.advance(1040 * MS);
+        assertEquals(1 - Math.exp(-1), smoother.getLevels()[0], 1e-4);
+        assertFalse(smoother.isSettled());
+    }
+
+    @Test
+    public void release_isSlowerThanAttack() {
+        final BarSmoother smoother = new BarSmoother(1);
+        smoother.setBallistics(0, 250);
+        smoother.advance(1 * MS);
+        smoother.setTarget(new float[]{1f});
+        smoother.advance(2 * MS);
+        assertEquals(1f, smoother.getLevels()[0], 0f);
+        smoother.setTarget(new float[]{0f});
+        smoother.advance(252 * MS);
+        assertEquals(Math.exp(-1), smoother.getLevels()[0], 1e-4);
+    }
+
+    @Test
+    public void frameRate_doesNotChangeTrajectory() {
+        final BarSmoother at60 = new BarSmoother(2);
+        final BarSmoother at120 = new BarSmoother(2);
+        final float[] target = {0.8f, 0.3f};
+        at60.advance(1);
+        at120.advance(1);
+        at60.setTarget(target);
+        at120.setTarget(target);
+        // 同样 100ms，60Hz 走 6 帧，120Hz 走 12 帧
+        for (int frame = 1; frame <= 12; frame++) {
+            if (frame % 2 == 0) {
+                at60.advance(1 + frame * 100 * MS / 12);
+            }
+            at120.advance(1 + frame * 100 * MS / 12);
+        }
+        assertArrayEquals(at60.getLevels(), at120.getLevels(), 1e-4f);
+    }
+
+    @Test
+    public void settles_andStopsAnimating() {
+        final BarSmoother smoother = new BarSmoother(3);
+        assertTrue(smoother.isSettled());
+        smoother.advance(1);
+        smoother.setTarget(new float[]{0.5f});
+        long time = 1;
+        for (int frame = 0; frame < 200 && !smoother.isSettled(); frame++) {
+            time += 16 * MS;
+            smoother.advance(time);
+        }
+        assertTrue(smoother.isSettled());
+        // 不足的柱子目标为 0
+        assertArrayEquals(new float[]{0.5f, 0f, 0f}, smoother.getLevels(), 0f);
+
+        smoother.reset();
+        assertTrue(smoother.isSettled());
+        assertArrayEquals(new float[3], smoother.getLevels(), 0f);
+    }
+
+    @Test
+    public void firstAdvance_onlyRecordsTime() {
+        final BarSmoother smoother = new BarSmoother(1);
+        smoother.setTarget(new float[]{1f});
+        smoother.advance(500 * MS);
+        assertEquals(0f, smoother.getLevels()[0], 0f);
+        smoother.setBallistics(0, 0);
+        smoother.advance(501 * MS);
+        assertEquals(1f, smoother.getLevels()[0], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeBallistics_throw() {
+        new BarSmoother(1).setBallistics(-1, 0);
+    }
+}
@@ -0,0 +1,128 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * IMA ADPCM 编解码 与 WAV 写入、读取的往返
+ */
+public class ImaAdpcmTest {
+    // 新的编码器步长从最小开始，前几个样本还在追赶信号，不计入信噪比
+    private static final int WARM_UP = 16;
+
+    @Test
+    public void codec_roundTripKeepsSignal() {
+        final ImaAdpcmCodec codec = new ImaAdpcmCodec(1, 256);
+        final int frames = codec.getSamplesPerBlock();
+        final short[] samples = sine(frames, 1, 16000);
+        final byte[] block = new byte[codec.getBlockAlign()];
+        codec.encodeBlock(samples, frames, block, 0);
+
+        final short[] decoded = new short[frames];
+        assertEquals(frames, ImaAdpcmCodec.decodeBlock(block, 0, block.length, 1, decoded));
+        // 块头保存首个样本原值
+        assertEquals(samples[0], decoded[0]);
+        assertTrue(snr(samples, decoded, WARM_UP, samples.length) > 20);
+    }
+
+    @Test
+    public void codec_padsShortBlockWithLastSample() {
+        final ImaAdpcmCodec codec = new ImaAdpcmCodec(2, 512);
+        final int frames = 100;
+        final short[] samples = sine(frames, 2, 16000);
+        final byte[] block = new byte[codec.getBlockAlign()];
+        codec.encodeBlock(samples, frames, block, 0);
+
+        final short[] decoded = new short[codec.getSamplesPerBlock() * 2];
+        assertEquals(codec.getSamplesPerBlock(), ImaAdpcmCodec.decodeBlock(block, 0, block.length, 2, decoded));
+        assertTrue(snr(samples, decoded, WARM_UP * 2, frames * 2) > 20);
+        // 补齐的部分收敛到各声道最后一个样本
+        final int end = codec.getSamplesPerBlock() - 1;
+        for (int c = 0; c < 2; c++) {
+            final int last = samples[(frames - 1) * 2 + c];
+            assertEquals(last, decoded[end * 2 + c], 64);
+        }
+    }
+
+    @Test
+    public void wavFile_roundTripDropsPadding() throws IOException {
+        final int sampleRate = 16000;
+        final int channels = 2;
+        // 不是整块，最后一块需要补齐
+        final int frames = sampleRate + 123;
+        final short[] samples = sine(frames, channels, sampleRate);
+        final byte[] pcm = new byte[samples.length * 2];
+        ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(samples);
+        final File file = File.createTempFile("adpcm", ".wav");
+        try {
+            final ImaAdpcmWavWriter writer = new ImaAdpcmWavWriter(file, sampleRate, channels);
+            // 分成不对齐块大小的多次写入
+            for (int offset = 0; offset < pcm.length; offset += 1000) {
+                writer.write(pcm, offset, Math.min(1000, pcm.length - offset));
+            }
+            writer.close();
+
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            final WavHeader header;
+            try {
+                header = WavHeader.read(raf.getChannel());
+            } finally {
+                raf.close();
+            }
+            assertEquals(WavHeader.FORMAT_IMA_ADPCM, header.getFormatTag());
+            assertEquals(0, header.getDataLength() % header.getBlockAlign());
+
+            final ImaAdpcmPcmSource source = new ImaAdpcmPcmSource(file, 4096, false);
+            assertEquals(frames, source.getFrameCount());
+            final byte[] decoded = new byte[pcm.length + 4096];
+            int length = 0;
+            try {
+                source.start();
+                int read;
+                while ((read = source.read(decoded, length, 4096)) != PcmSource.END_OF_STREAM) {
+                    length += read;
+                }
+            } finally {
+                source.release();
+            }
+            // 补齐的样本不会读出
+            assertEquals(pcm.length, length);
+            final short[] result = new short[samples.length];
+            ByteBuffer.wrap(decoded, 0, length).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(result);
+            assertTrue(snr(samples, result, 0, samples.length) > 20);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * 交错排列的两个不同频率的正弦
+     */
+    private static short[] sine(int frames, int channels, int sampleRate) {
+        final short[] samples = new short[frames * channels];
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++) {
+                samples[i * channels + c] = (short) (12000 * Math.sin(2 * Math.PI * (440 + c * 220) * i / sampleRate));
+            }
+        }
+        return samples;
+    }
+
+    private static double snr(short[] expected, short[] actual, int from, int to) {
+        double signal = 0;
+        double noise = 0;
+        for (int i = from; i < to; i++) {
+            signal += (double) expected[i] * expected[i];
+            final double diff = expected[i] - actual[i];
+            noise += diff * diff;
+        }
+        return 10 * Math.log10(signal / noise);
+    }
+}
@@ -0,0 +1,62 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查表 dBFS 换算的精度 与 电平表读数
+ */
+public class LevelMeterTest {
+    @Test
+    public void powerToDb_matchesLog10() {
+        float maxError = 0;
+        // 从 -95dB 到 +6dB 扫一遍，覆盖所有指数 与 表格下标
+        for (double db = -95; db <= 6; db += 0.013) {
+            final float power = (float) Math.pow(10, db / 10);
+            final float exact = (float) (10 * Math.log10(power));
+            maxError = Math.max(maxError, Math.abs(LevelMeter.powerToDb(power) - exact));
+        }
+        assertTrue("max error " + maxError, maxError < 0.01f);
+        assertEquals(0f, LevelMeter.powerToDb(1f), 0.01f);
+        assertEquals(-6.02f, LevelMeter.amplitudeToDb(0.5f), 0.01f);
+    }
+
+    @Test
+    public void powerToDb_floorsAtMinDb() {
+        assertEquals(LevelMeter.MIN_DB, LevelMeter.powerToDb(0f), 0f);
+        assertEquals(LevelMeter.MIN_DB, LevelMeter.powerToDb(-1f), 0f);
+        assertEquals(LevelMeter.MIN_DB, LevelMeter.powerToDb(Float.NaN), 0f);
+        assertEquals(LevelMeter.MIN_DB, LevelMeter.powerToDb(1e-12f), 0f);
+    }
+
+    @Test
+    public void toLevel_clampsToRange() {
+        assertEquals(0f, LevelMeter.toLevel(-70, 60), 0f);
+        assertEquals(0.5f, LevelMeter.toLevel(-30, 60), 1e-6f);
+        assertEquals(1f, LevelMeter.toLevel(3, 60), 0f);
+    }
+
+    @Test
+    public void fullScaleSine_readsMinusThreeDb() {
+        final int sampleRate = 16000;
+        final short[] samples = new short[sampleRate / 10];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(32767 * Math.sin(2 * Math.PI * 1000 * i / sampleRate));
+        }
+        final float level = LevelMeter.sliceLevel(ShortBuffer.wrap(samples), 0, samples.length);
+        assertEquals(LevelMeter.toLevel(-3.01f, LevelMeter.DEFAULT_RANGE_DB), level, 0.001f);
+
+        final LevelMeter meter = new LevelMeter();
+        meter.setSampleRate(sampleRate);
+        meter.process(ShortBuffer.wrap(samples), samples.length);
+        assertEquals(-3.01f, meter.getRmsDb(), 0.02f);
+        assertEquals(0f, meter.getPeakDb(), 0.02f);
+        assertTrue(meter.getClipCount() > 0);
+        meter.reset();
+        assertEquals(0, meter.getClipCount());
+        assertEquals(LevelMeter.MIN_DB, meter.getRmsDb(), 0f);
+    }
+}
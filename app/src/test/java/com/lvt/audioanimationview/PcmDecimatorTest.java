@@ -0,0 +1,82 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 降采样的直流增益为 1，分块输入 与 一次输入结果相同
+ */
+public class PcmDecimatorTest {
+    private static final int INPUT_RATE = 48000;
+    private static final int ANALYSIS_RATE = 16000;
+    // 梳状器需要 ORDER 个输出才填满延迟线
+    private static final int SETTLE = 4;
+
+    @Test
+    public void factor_keepsRateAboveRequested() {
+        assertEquals(3, PcmDecimator.getFactor(INPUT_RATE, ANALYSIS_RATE));
+        assertEquals(2, PcmDecimator.getFactor(44100, ANALYSIS_RATE));
+        assertEquals(22050, PcmDecimator.getOutputSampleRate(44100, ANALYSIS_RATE));
+        assertEquals(1, PcmDecimator.getFactor(8000, ANALYSIS_RATE));
+        assertEquals(256, PcmDecimator.getFactor(1 << 20, 1));
+    }
+
+    @Test
+    public void dcInput_hasUnityGain() {
+        for (short level : new short[]{12345, -32768, 32767}) {
+            final PcmDecimator decimator = new PcmDecimator(INPUT_RATE, ANALYSIS_RATE, 960);
+            final short[] samples = new short[960];
+            Arrays.fill(samples, level);
+            final int count = decimator.process(ShortBuffer.wrap(samples), samples.length);
+            assertEquals(960 / 3, count);
+            final ShortBuffer out = decimator.getShorts();
+            for (int i = SETTLE; i < count; i++) {
+                assertEquals(level, out.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void dcFloatInput_hasUnityGain() {
+        final PcmDecimator decimator = new PcmDecimator(INPUT_RATE, 8000, 960);
+        final float[] samples = new float[960];
+        Arrays.fill(samples, -0.75f);
+        final int count = decimator.process(FloatBuffer.wrap(samples), samples.length);
+        assertEquals(960 / 6, count);
+        final FloatBuffer out = decimator.getFloats();
+        for (int i = SETTLE; i < count; i++) {
+            assertEquals(-0.75f, out.get(i), 1e-5f);
+        }
+    }
+
+    @Test
+    public void chunkedInput_matchesSingleCall() {
+        final short[] samples = new short[4800];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (10000 * Math.sin(2 * Math.PI * 1000 * i / INPUT_RATE));
+        }
+        final PcmDecimator whole = new PcmDecimator(INPUT_RATE, ANALYSIS_RATE, samples.length);
+        final int expectedCount = whole.process(ShortBuffer.wrap(samples), samples.length);
+        final short[] expected = new short[expectedCount];
+        whole.getShorts().get(expected, 0, expectedCount);
+
+        // 块长不是降采样倍数的整数倍，相位跨缓冲保留
+        final PcmDecimator chunked = new PcmDecimator(INPUT_RATE, ANALYSIS_RATE, 100);
+        final short[] actual = new short[expectedCount];
+        int length = 0;
+        for (int offset = 0; offset < samples.length; offset += 100) {
+            final ShortBuffer chunk = ShortBuffer.wrap(samples, offset, Math.min(100, samples.length - offset));
+            final int count = chunked.process(chunk, chunk.remaining());
+            for (int i = 0; i < count; i++) {
+                actual[length++] = chunked.getShorts().get(i);
+            }
+        }
+        assertEquals(expectedCount, length);
+        assertArrayEquals(expected, actual);
+    }
+}
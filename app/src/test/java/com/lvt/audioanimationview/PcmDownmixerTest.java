@@ -0,0 +1,121 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多声道取平均、8 位转换，单声道直接使用原缓冲的视图
+ */
+public class PcmDownmixerTest {
+    @Test
+    public void stereo16Bit_averagesChannels() {
+        final PcmDownmixer downmixer = new PcmDownmixer(PcmSource.ENCODING_PCM_16BIT, 2, 16);
+        final byte[] data = shorts(1000, 3000, -32768, -32768, 32767, -32767, 0, 1);
+        downmixer.mix(data, data.length);
+        assertFalse(downmixer.isFloat());
+        assertEquals(4, downmixer.getSampleCount());
+        final ShortBuffer samples = downmixer.getShorts();
+        assertEquals(2000, samples.get(0));
+        assertEquals(-32768, samples.get(1));
+        assertEquals(0, samples.get(2));
+        assertEquals(0, samples.get(3));
+    }
+
+    @Test
+    public void eightBit_convertsToSigned16Bit() {
+        final PcmDownmixer downmixer = new PcmDownmixer(PcmSource.ENCODING_PCM_8BIT, 1, 4);
+        downmixer.mix(new byte[]{(byte) 128, 0, (byte) 255, (byte) 192}, 4);
+        final ShortBuffer samples = downmixer.getShorts();
+        assertEquals(0, samples.get(0));
+        assertEquals(-32768, samples.get(1));
+        assertEquals(127 << 8, samples.get(2));
+        assertEquals(64 << 8, samples.get(3));
+    }
+
+    @Test
+    public void stereoFloat_averagesWithoutIntegerConversion() {
+        final PcmDownmixer downmixer = new PcmDownmixer(PcmSource.ENCODING_PCM_FLOAT, 2, 16);
+        final byte[] data = floats(0.25f, 0.75f, -1f, 0.5f);
+        downmixer.mix(data, data.length);
+        assertTrue(downmixer.isFloat());
+        assertEquals(2, downmixer.getSampleCount());
+        final FloatBuffer samples = downmixer.getFloats();
+        assertEquals(0.5f, samples.get(0), 0f);
+        assertEquals(-0.25f, samples.get(1), 0f);
+    }
+
+    @Test
+    public void mono_passesThroughWithoutCopy() {
+        final PcmDownmixer downmixer = new PcmDownmixer(PcmSource.ENCODING_PCM_16BIT, 1, 8);
+        final byte[] data = shorts(1, 2, 3, 4);
+        downmixer.mix(data, data.length);
+        final ShortBuffer first = downmixer.getShorts();
+        assertTrue(first.isReadOnly());
+        // 同一数组复用视图，改动原数据可直接看到
+        data[0] = 9;
+        downmixer.mix(data, data.length);
+        assertSame(first, downmixer.getShorts());
+        assertEquals(9, downmixer.getShorts().get(0));
+    }
+
+    @Test
+    public void mono_ringBlocksReuseTheirViews() {
+        final PcmRingBuffer ring = new PcmRingBuffer(2, 8);
+        final PcmDownmixer downmixer = new PcmDownmixer(PcmSource.ENCODING_PCM_16BIT, 1, 8);
+        final ShortBuffer[] views = new ShortBuffer[2];
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 2; i++) {
+                final PcmRingBuffer.Block block = ring.claim();
+                System.arraycopy(shorts(round, i, 0, 0), 0, block.getData(), 0, 8);
+                ring.publish(block, 4, 0);
+                downmixer.mix(block, 4);
+                assertEquals(2, downmixer.getSampleCount());
+                final ShortBuffer view = downmixer.getShorts();
+                assertEquals(0, view.position());
+                assertEquals(round, view.get(0));
+                assertEquals(i, view.get(1));
+                if (views[i] == null) {
+                    views[i] = view;
+                }
+                // 数据块轮换时不再创建新的视图
+                assertSame(views[i], view);
+                ring.release(ring.acquire());
+            }
+        }
+        assertNotSame(views[0], views[1]);
+    }
+
+    @Test
+    public void directBuffer_positionsViewAtOffset() {
+        final PcmDownmixer downmixer = new PcmDownmixer(PcmSource.ENCODING_PCM_16BIT, 1, 8);
+        final ByteBuffer data = ByteBuffer.allocateDirect(8).order(ByteOrder.nativeOrder());
+        data.asShortBuffer().put(new short[]{5, 6, 7, 8});
+        downmixer.mix(data, 4, 4);
+        assertEquals(2, downmixer.getSampleCount());
+        final ShortBuffer samples = downmixer.getShorts();
+        assertEquals(7, samples.get(samples.position()));
+        assertEquals(0, data.position());
+    }
+
+    private static byte[] shorts(int... values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int value : values) {
+            buffer.putShort((short) value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] floats(float... values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : values) {
+            buffer.putFloat(value);
+        }
+        return buffer.array();
+    }
+}
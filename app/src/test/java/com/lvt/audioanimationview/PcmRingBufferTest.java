@@ -0,0 +1,72 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 环形缓冲的溢出 与 只取最新数据块
+ */
+public class PcmRingBufferTest {
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(8, new PcmRingBuffer(5, 16).getCapacity());
+        assertEquals(4, new PcmRingBuffer(4, 16).getCapacity());
+    }
+
+    @Test
+    public void publish_whenFull_countsOverrunAndKeepsQueuedBlocks() {
+        final PcmRingBuffer ring = new PcmRingBuffer(2, 4);
+        assertTrue(publish(ring, 1));
+        assertTrue(publish(ring, 2));
+        // 环满时写入备用块，不入队
+        assertFalse(publish(ring, 3));
+        assertEquals(1, ring.getOverrunCount());
+        assertEquals(2, ring.size());
+
+        final PcmRingBuffer.Block block = ring.acquire();
+        assertNotNull(block);
+        assertEquals(1, block.getData()[0]);
+        assertEquals(0, block.getSequence());
+        ring.release(block);
+
+        // 释放后可以继续入队，序号跳过溢出的数据块
+        assertTrue(publish(ring, 4));
+        assertEquals(2, ring.acquire().getData()[0]);
+        ring.release(ring.acquire());
+        final PcmRingBuffer.Block last = ring.acquire();
+        assertEquals(4, last.getData()[0]);
+        assertEquals(3, last.getSequence());
+        ring.release(last);
+        assertNull(ring.acquire());
+    }
+
+    @Test
+    public void acquireLatest_skipsBacklog() {
+        final PcmRingBuffer ring = new PcmRingBuffer(4, 4);
+        assertNull(ring.acquireLatest());
+        for (int i = 1; i <= 3; i++) {
+            publish(ring, i);
+        }
+        final PcmRingBuffer.Block block = ring.acquireLatest();
+        assertNotNull(block);
+        assertEquals(3, block.getData()[0]);
+        assertEquals(2, ring.getSkippedCount());
+        ring.release(block);
+        assertEquals(0, ring.size());
+        assertNull(ring.acquireLatest());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void release_withoutAcquire_throws() {
+        final PcmRingBuffer ring = new PcmRingBuffer(2, 4);
+        publish(ring, 1);
+        ring.release(ring.claim());
+    }
+
+    private static boolean publish(PcmRingBuffer ring, int value) {
+        final PcmRingBuffer.Block block = ring.claim();
+        block.getData()[0] = (byte) value;
+        return ring.publish(block, 1, 0);
+    }
+}
@@ -0,0 +1,173 @@
+package com.lvt.audioanimationview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 索引写入后读出的条目 与 概览 和 直接遍历样本的结果一致
+ */
+public class PeakIndexTest {
+    private static final int[] SAMPLES_PER_ENTRY = {4, 16, 64};
+    // 最后一条不满
+    private static final int SAMPLE_COUNT = 1000;
+
+    private short[] mSamples;
+    private File mFile;
+    private PeakIndex mIndex;
+
+    @Before
+    public void setUp() throws IOException {
+        mSamples = new short[SAMPLE_COUNT];
+        final Random random = new Random(7);
+        for (int i = 0; i < mSamples.length; i++) {
+            mSamples[i] = (short) (random.nextInt(65536) - 32768);
+        }
+        final PeakIndexBuilder builder = new PeakIndexBuilder(16000, SAMPLES_PER_ENTRY);
+        // 分块长度不是条目大小的整数倍
+        for (int offset = 0; offset < mSamples.length; offset += 7) {
+            final ShortBuffer chunk = ShortBuffer.wrap(mSamples, offset, Math.min(7, mSamples.length - offset));
+            builder.add(chunk, chunk.remaining());
+        }
+        assertEquals(SAMPLE_COUNT, builder.getSampleCount());
+        mFile = File.createTempFile("audio", PeakIndex.FILE_SUFFIX);
+        builder.write(mFile);
+        mIndex = PeakIndex.open(mFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mIndex.close();
+        mFile.delete();
+    }
+
+    @Test
+    public void header_roundTrips() {
+        assertEquals(16000, mIndex.getSampleRateInHz());
+        assertEquals(SAMPLE_COUNT, mIndex.getSampleCount());
+        assertEquals(SAMPLES_PER_ENTRY.length, mIndex.getLevelCount());
+        for (int level = 0; level < SAMPLES_PER_ENTRY.length; level++) {
+            assertEquals(SAMPLES_PER_ENTRY[level], mIndex.getSamplesPerEntry(level));
+            final int expected = (SAMPLE_COUNT + SAMPLES_PER_ENTRY[level] - 1) / SAMPLES_PER_ENTRY[level];
+            assertEquals(expected, mIndex.getEntryCount(level));
+        }
+    }
+
+    @Test
+    public void readEntries_matchSamples() throws IOException {
+        for (int level = 0; level < SAMPLES_PER_ENTRY.length; level++) {
+            final int count = mIndex.getEntryCount(level);
+            final short[] entries = new short[count * PeakIndex.ENTRY_SHORTS];
+            assertEquals(count, mIndex.readEntries(level, 0, count + 10, entries));
+            for (int entry = 0; entry < count; entry++) {
+                final int from = entry * SAMPLES_PER_ENTRY[level];
+                assertEntry(from, from + SAMPLES_PER_ENTRY[level], entries, entry);
+            }
+        }
+        // 超出范围不读取
+        assertEquals(0, mIndex.readEntries(0, mIndex.getEntryCount(0), 1, new short[3]));
+    }
+
+    @Test
+    public void selectLevel_picksCoarsestFitting() {
+        assertEquals(0, mIndex.selectLevel(1));
+        assertEquals(0, mIndex.selectLevel(15));
+        assertEquals(1, mIndex.selectLevel(16));
+        assertEquals(2, mIndex.selectLevel(1000));
+    }
+
+    @Test
+    public void readOverview_matchesSamplesPerColumn() throws IOException {
+        // 每列 64 个样本，用最粗一级；每列 16 个样本，用中间一级
+        for (int columns : new int[]{8, 32}) {
+            final long first = 128;
+            final long count = 512;
+            final short[] out = new short[columns * PeakIndex.ENTRY_SHORTS];
+            mIndex.readOverview(first, count, columns, out);
+            final int perColumn = (int) (count / columns);
+            for (int column = 0; column < columns; column++) {
+                final int from = (int) first + column * perColumn;
+                assertEntry(from, from + perColumn, out, column);
+            }
+        }
+    }
+
+    @Test
+    public void readOverview_pastEndLeavesZeroColumns() throws IOException {
+        final int columns = 4;
+        final short[] out = new short[columns * PeakIndex.ENTRY_SHORTS];
+        // 后一半在录音结尾之后
+        mIndex.readOverview(SAMPLE_COUNT - 256, 512, columns, out);
+        for (int i = 2 * PeakIndex.ENTRY_SHORTS; i < out.length; i++) {
+            assertEquals(0, out[i]);
+        }
+        assertTrue(out[1] > out[0]);
+        assertTrue(out[PeakIndex.ENTRY_SHORTS + 1] > out[PeakIndex.ENTRY_SHORTS]);
+    }
+
+    @Test
+    public void readOverview_zoomedIn_fillsEveryColumn() throws IOException {
+        // 每列 2 个样本，不足一条，每列取覆盖它的条目
+        final int columns = 20;
+        final short[] out = new short[columns * PeakIndex.ENTRY_SHORTS];
+        mIndex.readOverview(102, 40, columns, out);
+        for (int column = 0; column < columns; column++) {
+            final int from = (102 + column * 2) / 4 * 4;
+            final int to = ((102 + column * 2 + 2) + 3) / 4 * 4;
+            assertEntry(from, to, out, column);
+        }
+    }
+
+    @Test
+    public void readOverview_zoomedIn_constantSignalHasNoHoles() throws IOException {
+        final short[] samples = new short[2560];
+        Arrays.fill(samples, (short) 1000);
+        final PeakIndexBuilder builder = new PeakIndexBuilder(16000, PeakIndex.DEFAULT_SAMPLES_PER_ENTRY);
+        builder.add(ShortBuffer.wrap(samples), samples.length);
+        final File file = File.createTempFile("constant", PeakIndex.FILE_SUFFIX);
+        try {
+            builder.write(file);
+            final PeakIndex index = PeakIndex.open(file);
+            try {
+                final int columns = 40;
+                final short[] out = new short[columns * PeakIndex.ENTRY_SHORTS];
+                index.readOverview(0, samples.length, columns, out);
+                for (int column = 0; column < columns; column++) {
+                    final int offset = column * PeakIndex.ENTRY_SHORTS;
+                    assertEquals(1000, out[offset]);
+                    assertEquals(1000, out[offset + 1]);
+                    assertEquals(1000, out[offset + 2]);
+                }
+            } finally {
+                index.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertEntry(int from, int to, short[] entries, int entry) {
+        to = Math.min(to, mSamples.length);
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        double sumSquares = 0;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, mSamples[i]);
+            max = Math.max(max, mSamples[i]);
+            sumSquares += (double) mSamples[i] * mSamples[i];
+        }
+        final int index = entry * PeakIndex.ENTRY_SHORTS;
+        assertEquals(min, entries[index]);
+        assertEquals(max, entries[index + 1]);
+        // 概览按条目 RMS 合并，与逐样本结果略有差别
+        assertEquals(Math.sqrt(sumSquares / (to - from)), entries[index + 2], 1);
+    }
+}
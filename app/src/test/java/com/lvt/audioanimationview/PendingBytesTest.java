@@ -0,0 +1,84 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 视图待绘制数据的复制与数组回收
+ */
+public class PendingBytesTest {
+
+    @Test
+    public void offer_copiesCallerBuffer() {
+        PendingBytes pending = new PendingBytes();
+        byte[] buffer = {1, 2, 3, 4};
+        pending.offer(buffer);
+        buffer[0] = 9;
+        byte[] drawn = pending.take(null);
+        assertNotSame(buffer, drawn);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, drawn);
+    }
+
+    @Test
+    public void offer_neverWritesIntoDrawnArray() {
+        PendingBytes pending = new PendingBytes();
+        byte[] buffer = new byte[8];
+        byte[] drawn = null;
+        for (int i = 0; i < 10; i++) {
+            buffer[0] = (byte) i;
+            pending.offer(buffer);
+            drawn = pending.take(drawn);
+            buffer[0] = (byte) (i + 100);
+            pending.offer(buffer);
+            assertEquals(i, drawn[0]);
+            drawn = pending.take(drawn);
+            assertEquals(i + 100, drawn[0]);
+        }
+    }
+
+    @Test
+    public void take_returnsNewArrayForEveryOffer() {
+        PendingBytes pending = new PendingBytes();
+        byte[] buffer = new byte[8];
+        byte[] drawn = null;
+        for (int i = 0; i < 4; i++) {
+            pending.offer(buffer);
+            byte[] next = pending.take(drawn);
+            assertNotSame(drawn, next);
+            drawn = next;
+        }
+        assertSame(drawn, pending.take(drawn));
+    }
+
+    @Test
+    public void offer_reportsOverwrittenData() {
+        PendingBytes pending = new PendingBytes();
+        assertFalse(pending.offer(new byte[4]));
+        assertTrue(pending.offer(new byte[4]));
+        assertTrue(pending.hasPending());
+        pending.take(null);
+        assertFalse(pending.hasPending());
+        assertFalse(pending.offer(null));
+        assertFalse(pending.hasPending());
+    }
+
+    @Test
+    public void offerNull_clearsDrawnData() {
+        PendingBytes pending = new PendingBytes();
+        pending.offer(new byte[4]);
+        byte[] drawn = pending.take(null);
+        pending.offer(null);
+        assertNull(pending.take(drawn));
+    }
+
+    @Test
+    public void obtain_allocatesWhenLengthChanges() {
+        PendingBytes pending = new PendingBytes();
+        byte[] array = pending.obtain(4);
+        pending.recycle(array);
+        assertSame(array, pending.obtain(4));
+        pending.recycle(array);
+        assertEquals(6, pending.obtain(6).length);
+    }
+}
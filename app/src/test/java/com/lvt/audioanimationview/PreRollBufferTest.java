@@ -0,0 +1,86 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预录缓冲写满后覆盖最旧的数据，按整帧从最旧的开始取出
+ */
+public class PreRollBufferTest {
+    // 100ms、1kHz、每帧 2 字节，容量 200 字节
+    private static final int CAPACITY = 200;
+
+    @Test
+    public void wrapAround_keepsNewestBytesInOrder() {
+        final PreRollBuffer buffer = new PreRollBuffer(100, 1000, 2);
+        // 写入 3 倍容量，每次长度不同，多次跨过末尾
+        final byte[] written = sequence(CAPACITY * 3);
+        final Random random = new Random(1);
+        int offset = 0;
+        while (offset < written.length) {
+            final int length = Math.min(written.length - offset, 2 * (1 + random.nextInt(40)));
+            buffer.write(written, offset, length);
+            offset += length;
+        }
+        assertEquals(CAPACITY, buffer.size());
+        assertEquals(100, buffer.getDurationMs());
+
+        final byte[] read = readAll(buffer, 30);
+        assertEquals(CAPACITY, read.length);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(written[written.length - CAPACITY + i], read[i]);
+        }
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void writeLongerThanCapacity_keepsTail() {
+        final PreRollBuffer buffer = new PreRollBuffer(100, 1000, 2);
+        buffer.write(sequence(10), 0, 10);
+        final byte[] written = sequence(CAPACITY + 50);
+        buffer.write(written, 0, written.length);
+        final byte[] read = readAll(buffer, CAPACITY);
+        assertEquals(CAPACITY, read.length);
+        assertEquals(written[50], read[0]);
+        assertEquals(written[written.length - 1], read[CAPACITY - 1]);
+    }
+
+    @Test
+    public void read_returnsWholeFramesOnly() {
+        final PreRollBuffer buffer = new PreRollBuffer(100, 1000, 4);
+        buffer.write(sequence(12), 0, 12);
+        final byte[] out = new byte[7];
+        // 7 字节只能取出 1 帧
+        assertEquals(4, buffer.read(out, 0, out.length));
+        assertEquals(8, buffer.size());
+        buffer.clear();
+        assertEquals(0, buffer.read(out, 0, out.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badParameters_throw() {
+        new PreRollBuffer(0, 1000, 2);
+    }
+
+    private static byte[] sequence(int length) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static byte[] readAll(PreRollBuffer buffer, int chunk) {
+        final byte[] out = new byte[buffer.size()];
+        int length = 0;
+        int read;
+        while ((read = buffer.read(out, length, Math.min(chunk, out.length - length))) > 0) {
+            length += read;
+        }
+        assertEquals(out.length, length);
+        return out;
+    }
+}
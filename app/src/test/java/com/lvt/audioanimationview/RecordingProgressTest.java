@@ -0,0 +1,83 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 进度快照的通知合并 与 读取
+ */
+public class RecordingProgressTest {
+
+    @Test
+    public void update_notifiesOnceUntilConsumed() {
+        final RecordingProgress progress = new RecordingProgress();
+        progress.setMaxRate(0);
+        progress.reset();
+        final LevelMeter meter = new LevelMeter();
+        assertTrue(progress.update(meter, 10));
+        // 上次通知还没处理，只更新快照
+        assertFalse(progress.update(meter, 20));
+        assertFalse(progress.update(meter, 30));
+        final WavRecorderUtils.RecordingResult result = new WavRecorderUtils.RecordingResult();
+        progress.consume(result);
+        assertEquals(30, result.getDuration());
+        assertTrue(progress.update(meter, 40));
+    }
+
+    @Test
+    public void update_limitsRate() {
+        final RecordingProgress progress = new RecordingProgress();
+        // 间隔 1000 秒，测试期间只会通知重置后的第一次
+        progress.setMaxRate(0.001f);
+        progress.reset();
+        final LevelMeter meter = new LevelMeter();
+        final WavRecorderUtils.RecordingResult result = new WavRecorderUtils.RecordingResult();
+        assertTrue(progress.update(meter, 10));
+        progress.consume(result);
+        assertFalse(progress.update(meter, 20));
+        progress.consume(result);
+        assertEquals(20, result.getDuration());
+        // 新的录音立即通知
+        progress.reset();
+        assertTrue(progress.update(meter, 0));
+    }
+
+    @Test
+    public void reset_clearsPendingNotification() {
+        final RecordingProgress progress = new RecordingProgress();
+        progress.setMaxRate(0);
+        progress.reset();
+        final LevelMeter meter = new LevelMeter();
+        assertTrue(progress.update(meter, 10));
+        // 上次录音的通知没有处理，不影响下一次录音
+        progress.reset();
+        assertTrue(progress.update(meter, 0));
+    }
+
+    @Test
+    public void consume_copiesMeterReadings() {
+        final RecordingProgress progress = new RecordingProgress();
+        progress.reset();
+        final LevelMeter meter = new LevelMeter();
+        meter.setSampleRate(8000);
+        final short[] samples = new short[160];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i % 2 == 0 ? Short.MAX_VALUE : -Short.MAX_VALUE);
+        }
+        meter.process(ShortBuffer.wrap(samples), samples.length);
+        progress.update(meter, 1234);
+        final WavRecorderUtils.RecordingResult result = new WavRecorderUtils.RecordingResult();
+        progress.consume(result);
+        assertEquals(meter.getLevel(), result.getVolumeProcess(), 0f);
+        assertEquals(meter.getRmsDb(), result.getRmsDb(), 0f);
+        assertEquals(meter.getPeakDb(), result.getPeakDb(), 0f);
+        assertEquals(meter.getVuDb(), result.getVuDb(), 0f);
+        assertEquals(meter.getPpmDb(), result.getPpmDb(), 0f);
+        assertEquals(meter.getClipCount(), result.getClipCount());
+        assertEquals(1234, result.getDuration());
+        assertTrue(result.getPeakDb() > -1f);
+    }
+}
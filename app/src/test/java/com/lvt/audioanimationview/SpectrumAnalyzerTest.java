@@ -0,0 +1,73 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 纯音落在对应频带，电平按 dBFS 换算
+ */
+public class SpectrumAnalyzerTest {
+    private static final int FFT_SIZE = 1024;
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BAR_COUNT = 16;
+    // 正好落在第 64 个频点上
+    private static final double FREQUENCY = 64.0 * SAMPLE_RATE / FFT_SIZE;
+
+    @Test
+    public void pureTone_peaksInItsBand() {
+        final float[] bars = new float[BAR_COUNT];
+        new SpectrumAnalyzer(FFT_SIZE, SAMPLE_RATE, BAR_COUNT).analyze(ShortBuffer.wrap(tone(32767)), FFT_SIZE, bars);
+        // 60Hz ~ 8kHz 按对数刻度分 16 段，1kHz 在第 9 段
+        final int expected = (int) (BAR_COUNT * Math.log(FREQUENCY / 60) / Math.log(SAMPLE_RATE / 2.0 / 60));
+        assertEquals(expected, argMax(bars));
+        // 满幅正弦为 0dBFS
+        assertEquals(1f, bars[expected], 0.01f);
+        assertTrue(bars[0] < 0.3f);
+        assertTrue(bars[BAR_COUNT - 1] < 0.3f);
+    }
+
+    @Test
+    public void halfAmplitude_isSixDbLower() {
+        final float[] bars = new float[BAR_COUNT];
+        new SpectrumAnalyzer(FFT_SIZE, SAMPLE_RATE, BAR_COUNT).analyze(ShortBuffer.wrap(tone(16384)), FFT_SIZE, bars);
+        // 默认 -80dB 对应 0，-6.02dB 对应 1 - 6.02 / 80
+        assertEquals(1 - 6.02f / 80, bars[argMax(bars)], 0.01f);
+    }
+
+    @Test
+    public void floatSamples_matchShortSamples() {
+        final short[] shorts = tone(20000);
+        final float[] floats = new float[shorts.length];
+        for (int i = 0; i < shorts.length; i++) {
+            floats[i] = shorts[i] / 32768f;
+        }
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(FFT_SIZE, SAMPLE_RATE, BAR_COUNT);
+        final float[] fromShorts = new float[BAR_COUNT];
+        final float[] fromFloats = new float[BAR_COUNT];
+        analyzer.analyze(ShortBuffer.wrap(shorts), FFT_SIZE, fromShorts);
+        analyzer.analyze(FloatBuffer.wrap(floats), FFT_SIZE, fromFloats);
+        assertArrayEquals(fromShorts, fromFloats, 1e-4f);
+    }
+
+    private static short[] tone(int amplitude) {
+        final short[] samples = new short[FFT_SIZE];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * FREQUENCY * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+
+    private static int argMax(float[] values) {
+        int index = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+}
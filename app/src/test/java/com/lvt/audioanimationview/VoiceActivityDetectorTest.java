@@ -0,0 +1,120 @@
+package com.lvt.audioanimationview;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 人声检测的起始、保持时长 与 噪声基底，时长都按样本数计算
+ */
+public class VoiceActivityDetectorTest {
+    private static final int BUFFER_MS = 20;
+    // 约 -64dBFS 的底噪
+    private static final double NOISE_RMS = 20;
+
+    private final Random mRandom = new Random(3);
+    private long mPhase;
+
+    @Test
+    public void silence_turnsOffAfterHangover() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector(16000);
+        assertTrue(detector.isVoice());
+        final int changedAt = feed(detector, 16000, 0, 5000);
+        // 第一个缓冲确定基底，与基底相差 0dB 也算静音
+        assertEquals(3000, changedAt);
+        assertFalse(detector.isVoice());
+    }
+
+    @Test
+    public void tone_turnsOnAfterOnset() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector(16000);
+        feed(detector, 16000, 0, 4000);
+        assertFalse(detector.isVoice());
+        // 高出底噪 20dB 的 300Hz 正弦，过零率很低，60ms 后判为有人声
+        assertEquals(60, feed(detector, 16000, 20, 1000));
+        assertTrue(detector.isVoice());
+    }
+
+    @Test
+    public void steadyTone_keepsFloorAndStaysVoice() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector(16000);
+        feed(detector, 16000, 0, 4000);
+        final float floor = detector.getNoiseFloorDb();
+        // 高出底噪 37dB 的持续人声，基底不随之上升
+        assertEquals(60, feed(detector, 16000, 37, 30000));
+        assertTrue(detector.isVoice());
+        assertEquals(floor, detector.getNoiseFloorDb(), 1f);
+    }
+
+    @Test
+    public void voiceStopping_waitsForHangover() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector(16000);
+        feed(detector, 16000, 0, 500);
+        feed(detector, 16000, 30, 2000);
+        assertTrue(detector.isVoice());
+        assertEquals(3000, feed(detector, 16000, 0, 5000));
+        assertFalse(detector.isVoice());
+    }
+
+    @Test
+    public void loudWhiteNoise_isNotVoice() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector(16000);
+        feed(detector, 16000, 0, 4000);
+        assertFalse(detector.isVoice());
+        // 高出 15dB 的白噪声过零率约 0.5，不判为人声，基底随之上升
+        assertEquals(-1, feed(detector, 16000, -15, 20000));
+        assertTrue(detector.getNoiseFloorDb() > -55);
+    }
+
+    @Test
+    public void sampleRate_keepsTimingInMilliseconds() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector();
+        detector.setSampleRate(48000);
+        assertEquals(3000, feed(detector, 48000, 0, 5000));
+        assertEquals(60, feed(detector, 48000, 20, 1000));
+    }
+
+    @Test
+    public void leadingZeros_doNotSetFloor() {
+        final VoiceActivityDetector detector = new VoiceActivityDetector(16000);
+        final short[] zeros = new short[320];
+        for (int i = 0; i < 10; i++) {
+            assertFalse(detector.process(ShortBuffer.wrap(zeros), zeros.length));
+        }
+        // 基底从第一个非零缓冲开始
+        feed(detector, 16000, 0, 20);
+        assertEquals(20 * Math.log10(NOISE_RMS / 32768), detector.getNoiseFloorDb(), 1.5);
+        detector.reset();
+        assertTrue(detector.isVoice());
+    }
+
+    /**
+     * 按缓冲送入底噪 叠加 信号，返回第一次状态改变时已送入的毫秒数，没有改变返回 -1
+     *
+     * @param marginDb 信号高出底噪的分贝数，0 表示只有底噪，负数表示白噪声
+     */
+    private int feed(VoiceActivityDetector detector, int sampleRate, int marginDb, int durationMs) {
+        final int bufferSize = sampleRate * BUFFER_MS / 1000;
+        final short[] buffer = new short[bufferSize];
+        final double amplitude = marginDb == 0 ? 0 : NOISE_RMS * Math.pow(10, Math.abs(marginDb) / 20.0);
+        int changedAt = -1;
+        for (int ms = BUFFER_MS; ms <= durationMs; ms += BUFFER_MS) {
+            for (int i = 0; i < bufferSize; i++) {
+                double value = mRandom.nextGaussian() * NOISE_RMS;
+                if (marginDb > 0) {
+                    value += amplitude * Math.sqrt(2) * Math.sin(2 * Math.PI * 300 * mPhase++ / sampleRate);
+                } else if (marginDb < 0) {
+                    value += mRandom.nextGaussian() * amplitude;
+                }
+                buffer[i] = (short) Math.round(value);
+            }
+            if (detector.process(ShortBuffer.wrap(buffer), bufferSize) && changedAt < 0) {
+                changedAt = ms;
+            }
+        }
+        return changedAt;
+    }
+}
@@ -0,0 +1,215 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流式写入的头部回填 与 数据内容
+ */
+public class WavFileWriterTest {
+
+    @Test
+    public void newFile_hasPlaceholderHeader() throws IOException {
+        final File file = createTempFile();
+        final WavFileWriter writer = new WavFileWriter(file, 16000, 1, 16);
+        try {
+            final ByteBuffer header = readHeader(file, WavFileWriter.HEADER_SIZE);
+            assertEquals(WavFileWriter.HEADER_SIZE, file.length());
+            assertChunkId("RIFF", header, 0);
+            assertEquals(36, header.getInt(4));
+            assertChunkId("WAVE", header, 8);
+            assertChunkId("fmt ", header, 12);
+            assertEquals(16, header.getInt(16));
+            assertEquals(WavHeader.FORMAT_PCM, header.getShort(20));
+            assertEquals(1, header.getShort(22));
+            assertEquals(16000, header.getInt(24));
+            assertEquals(32000, header.getInt(28));
+            assertEquals(2, header.getShort(32));
+            assertEquals(16, header.getShort(34));
+            assertChunkId("data", header, 36);
+            assertEquals(0, header.getInt(40));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void flush_patchesLengthsAndKeepsAppending() throws IOException {
+        final File file = createTempFile();
+        final WavFileWriter writer = new WavFileWriter(file, 8000, 2, 16, 64);
+        try {
+            writer.write(ramp(0, 100), 0, 100);
+            writer.flush();
+            ByteBuffer header = readHeader(file, WavFileWriter.HEADER_SIZE);
+            assertEquals(WavFileWriter.HEADER_SIZE + 100, file.length());
+            assertEquals(36 + 100, header.getInt(4));
+            assertEquals(100, header.getInt(40));
+
+            // 回填头部后继续从数据末尾写入
+            writer.write(ramp(100, 60), 0, 60);
+            writer.flush();
+            header = readHeader(file, WavFileWriter.HEADER_SIZE);
+            assertEquals(36 + 160, header.getInt(4));
+            assertEquals(160, header.getInt(40));
+            assertArrayEquals(ramp(0, 160), readData(file, WavFileWriter.HEADER_SIZE));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void close_writesBufferedDataAndPatchesLengths() throws IOException {
+        final File file = createTempFile();
+        final WavFileWriter writer = new WavFileWriter(file, 8000, 1, 16, 1024);
+        writer.write(ramp(0, 10), 2, 8);
+        writer.write(ByteBuffer.wrap(ramp(10, 30), 4, 20));
+        assertEquals(28, writer.getDataLength());
+        // 未满缓冲的数据还没写出
+        assertEquals(WavFileWriter.HEADER_SIZE, file.length());
+        writer.close();
+
+        final ByteBuffer header = readHeader(file, WavFileWriter.HEADER_SIZE);
+        assertEquals(36 + 28, header.getInt(4));
+        assertEquals(28, header.getInt(40));
+        final byte[] expected = new byte[28];
+        System.arraycopy(ramp(0, 10), 2, expected, 0, 8);
+        System.arraycopy(ramp(10, 30), 4, expected, 8, 20);
+        assertArrayEquals(expected, readData(file, WavFileWriter.HEADER_SIZE));
+    }
+
+    @Test
+    public void close_isIdempotentAndRejectsLaterWrites() throws IOException {
+        final File file = createTempFile();
+        final WavFileWriter writer = new WavFileWriter(file, 8000, 1, 16);
+        writer.write(ramp(0, 4), 0, 4);
+        writer.close();
+        writer.close();
+        writer.flush();
+        try {
+            writer.write(ramp(0, 4), 0, 4);
+            fail("write after close");
+        } catch (IOException expected) {
+            // 已关闭
+        }
+        assertEquals(WavFileWriter.HEADER_SIZE + 4, file.length());
+    }
+
+    @Test
+    public void reopen_truncatesOldFile() throws IOException {
+        final File file = createTempFile();
+        WavFileWriter writer = new WavFileWriter(file, 8000, 1, 16);
+        writer.write(ramp(0, 200), 0, 200);
+        writer.close();
+        writer = new WavFileWriter(file, 8000, 1, 16);
+        writer.write(ramp(50, 10), 0, 10);
+        writer.close();
+        assertEquals(WavFileWriter.HEADER_SIZE + 10, file.length());
+        assertEquals(10, readHeader(file, WavFileWriter.HEADER_SIZE).getInt(40));
+        assertArrayEquals(ramp(50, 10), readData(file, WavFileWriter.HEADER_SIZE));
+    }
+
+    @Test
+    public void floatFormat_hasExtendedFmtAndFactChunk() throws IOException {
+        final File file = createTempFile();
+        final int headerSize = WavFileWriter.getHeaderSize(WavHeader.FORMAT_IEEE_FLOAT);
+        assertEquals(58, headerSize);
+        final WavFileWriter writer = new WavFileWriter(file, WavHeader.FORMAT_IEEE_FLOAT, 48000, 2, 32, 256);
+        final ByteBuffer samples = ByteBuffer.allocate(8 * 10).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 20; i++) {
+            samples.putFloat(i / 20f - 0.5f);
+        }
+        samples.flip();
+        writer.write(samples);
+        writer.flush();
+        // fact 块的样本数随 flush 回填
+        assertEquals(10, readHeader(file, headerSize).getInt(46));
+        writer.write(samples.array(), 0, 40);
+        writer.close();
+
+        final ByteBuffer header = readHeader(file, headerSize);
+        assertEquals(headerSize + 120, file.length());
+        assertChunkId("RIFF", header, 0);
+        assertEquals(headerSize - 8 + 120, header.getInt(4));
+        assertChunkId("fmt ", header, 12);
+        assertEquals(18, header.getInt(16));
+        assertEquals(WavHeader.FORMAT_IEEE_FLOAT, header.getShort(20));
+        assertEquals(2, header.getShort(22));
+        assertEquals(48000, header.getInt(24));
+        assertEquals(48000 * 8, header.getInt(28));
+        assertEquals(8, header.getShort(32));
+        assertEquals(32, header.getShort(34));
+        // 扩展长度 0
+        assertEquals(0, header.getShort(36));
+        assertChunkId("fact", header, 38);
+        assertEquals(4, header.getInt(42));
+        // 每声道 15 个样本
+        assertEquals(15, header.getInt(46));
+        assertChunkId("data", header, 50);
+        assertEquals(120, header.getInt(54));
+        final ByteBuffer data = ByteBuffer.wrap(readData(file, headerSize)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(-0.5f, data.getFloat(0), 0f);
+        assertEquals(19 / 20f - 0.5f, data.getFloat(76), 0f);
+        assertEquals(-0.5f, data.getFloat(80), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void floatFormat_rejectsOtherSampleSizes() throws IOException {
+        new WavFileWriter(createTempFile(), WavHeader.FORMAT_IEEE_FLOAT, 48000, 1, 16, 256);
+    }
+
+    @NonNull
+    private static File createTempFile() throws IOException {
+        final File file = File.createTempFile("writer", ".wav");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @NonNull
+    private static byte[] ramp(int start, int length) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (start + i);
+        }
+        return data;
+    }
+
+    private static void assertChunkId(@NonNull String expected, @NonNull ByteBuffer header, int offset) {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(expected.charAt(i), (char) header.get(offset + i));
+        }
+    }
+
+    @NonNull
+    private static ByteBuffer readHeader(@NonNull File file, int headerSize) throws IOException {
+        final byte[] header = new byte[headerSize];
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            input.readFully(header);
+        } finally {
+            input.close();
+        }
+        return ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @NonNull
+    private static byte[] readData(@NonNull File file, int headerSize) throws IOException {
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            final byte[] data = new byte[(int) input.length() - headerSize];
+            input.seek(headerSize);
+            input.readFully(data);
+            return data;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * 布防、预录 与 布防后录音的流程，录音线程的任务在调用线程同步执行，由数据源的读取次数驱动
+ */
+public class WavRecorderUtilsArmTest {
+    private static final int SAMPLE_RATE = 8000;
+    private static final int PRE_ROLL_MS = 100;
+    // 每次读 160 帧，即 20 毫秒
+    private static final int BUFFER_SIZE = 320;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void zeroReadsWhileArmed_disarms() {
+        final Events events = new Events();
+        final WavRecorderUtils recorder = new WavRecorderUtils(events, DIRECT);
+        final FakeSource source = new FakeSource(true);
+        recorder.arm(source, PRE_ROLL_MS);
+        assertFalse(recorder.isArmed());
+        assertTrue(source.mStopped);
+        assertEquals(1, events.mErrors.size());
+        assertNull(events.mFinish);
+        assertEquals(0, events.mStarts);
+    }
+
+    @Test
+    public void failedRecording_disarms() throws IOException {
+        final Events events = new Events();
+        final WavRecorderUtils recorder = new WavRecorderUtils(events, DIRECT);
+        // 目录不存在，创建文件失败
+        final File missing = new File(System.getProperty("java.io.tmpdir"), "missing-" + System.nanoTime() + "/out.wav");
+        final FakeSource source = new FakeSource(false) {
+            @Override
+            void onRead(int reads) {
+                if (reads == 3) {
+                    recorder.record(missing.getPath(), new FakeSource(false));
+                }
+            }
+        };
+        recorder.arm(source, PRE_ROLL_MS);
+        assertFalse(recorder.isArmed());
+        assertTrue(source.mStopped);
+        // 出错后布防线程退出，不再读取
+        assertEquals(3, source.mReads);
+        assertEquals(1, events.mErrors.size());
+        assertTrue(events.mErrors.get(0) instanceof IOException);
+        assertFalse(missing.exists());
+    }
+
+    @Test
+    public void armedRecording_writesPreRollThenNewData() throws IOException {
+        final Events events = new Events();
+        final WavRecorderUtils recorder = new WavRecorderUtils(events, DIRECT);
+        final File wavFile = File.createTempFile("armed", ".wav");
+        wavFile.deleteOnExit();
+        final FakeSource source = new FakeSource(false) {
+            @Override
+            void onRead(int reads) {
+                if (reads == 10) {
+                    // 前 10 次共 200 毫秒，只保留后 100 毫秒
+                    recorder.record(wavFile.getPath(), new FakeSource(false));
+                } else if (reads == 15) {
+                    recorder.stop();
+                } else if (reads == 16) {
+                    recorder.disarm();
+                }
+            }
+        };
+        recorder.arm(source, PRE_ROLL_MS);
+        assertFalse(recorder.isArmed());
+        assertTrue(events.mErrors.isEmpty());
+        assertEquals(1, events.mStarts);
+        assertNotNull(events.mFinish);
+        // 预录 800 帧 加 录音时读到的 5 次 800 帧
+        assertEquals(200, events.mFinish.getDuration());
+
+        final short[] samples = readSamples(wavFile);
+        assertEquals(1600, samples.length);
+        // 文件从预录保留的第一帧开始，中间没有缺失 或 重复
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(800 + i, samples[i]);
+        }
+    }
+
+    @Test
+    public void recordingAfterStop_startsFromPreRollAgain() throws IOException {
+        final Events events = new Events();
+        final WavRecorderUtils recorder = new WavRecorderUtils(events, DIRECT);
+        final File first = File.createTempFile("armed", ".wav");
+        final File second = File.createTempFile("armed", ".wav");
+        first.deleteOnExit();
+        second.deleteOnExit();
+        final FakeSource source = new FakeSource(false) {
+            @Override
+            void onRead(int reads) {
+                if (reads == 10) {
+                    recorder.record(first.getPath(), new FakeSource(false));
+                } else if (reads == 12) {
+                    recorder.stop();
+                } else if (reads == 20) {
+                    recorder.record(second.getPath(), new FakeSource(false));
+                } else if (reads == 21) {
+                    recorder.stop();
+                } else if (reads == 22) {
+                    recorder.disarm();
+                }
+            }
+        };
+        recorder.arm(source, PRE_ROLL_MS);
+        assertTrue(events.mErrors.isEmpty());
+        assertEquals(2, events.mStarts);
+        // 第二次录音的预录是停止后读到的数据，第 16~20 次
+        final short[] samples = readSamples(second);
+        assertEquals(960, samples.length);
+        assertEquals(15 * 160, samples[0]);
+        assertEquals(21 * 160 - 1, samples[samples.length - 1]);
+        assertEquals(120, events.mFinish.getDuration());
+    }
+
+    /**
+     * 读取 16 位单声道 WAV 的样本，头部为 44 字节
+     */
+    @NonNull
+    private static short[] readSamples(@NonNull File wavFile) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(wavFile, "r");
+        try {
+            final byte[] data = new byte[(int) file.length() - 44];
+            file.seek(44);
+            file.readFully(data);
+            final short[] samples = new short[data.length / 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) ((data[2 * i] & 0xff) | (data[2 * i + 1] << 8));
+            }
+            return samples;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * 记录录音线程发出的通知
+     */
+    private static final class Events implements WavRecorderUtils.RecordEvents {
+        private int mStarts;
+        private WavRecorderUtils.FinishResult mFinish;
+        private final List<Throwable> mErrors = new ArrayList<>();
+
+        @Override
+        public void sendStartMessage() {
+            mStarts++;
+        }
+
+        @Override
+        public void sendRecordingMessage() {
+        }
+
+        @Override
+        public void sendVoiceMessage(boolean voice) {
+        }
+
+        @Override
+        public void sendFinishMessage(@NonNull WavRecorderUtils.FinishResult result) {
+            mFinish = result;
+        }
+
+        @Override
+        public void sendErrorMessage(@NonNull Throwable e) {
+            mErrors.add(e);
+        }
+    }
+
+    /**
+     * 16 位单声道，每次读满，样本值为帧序号 或 一直读不到数据；每次读完后回调 {@link #onRead(int)}
+     */
+    private static class FakeSource implements PcmSource {
+        private final boolean mZero;
+        private int mReads;
+        private int mFrames;
+        private boolean mStopped;
+
+        FakeSource(boolean zero) {
+            mZero = zero;
+        }
+
+        /**
+         * 模拟其他线程在两次读取之间的操作
+         *
+         * @param reads 已读取的次数
+         */
+        void onRead(int reads) {
+        }
+
+        @Override
+        public int getSampleRateInHz() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public int getChannelCount() {
+            return 1;
+        }
+
+        @Override
+        public int getBitsPerSample() {
+            return 16;
+        }
+
+        @Override
+        public int getEncoding() {
+            return ENCODING_PCM_16BIT;
+        }
+
+        @Override
+        public int getBufferSize() {
+            return BUFFER_SIZE;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) {
+            if (mZero) {
+                mReads++;
+                onRead(mReads);
+                return 0;
+            }
+            for (int i = 0; i < length / 2; i++) {
+                final int sample = mFrames++;
+                buffer[offset + 2 * i] = (byte) sample;
+                buffer[offset + 2 * i + 1] = (byte) (sample >> 8);
+            }
+            mReads++;
+            onRead(mReads);
+            return length / 2 * 2;
+        }
+
+        @Override
+        public int read(@NonNull ByteBuffer buffer, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stop() {
+            mStopped = true;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
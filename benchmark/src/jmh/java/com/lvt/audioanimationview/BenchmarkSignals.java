@@ -0,0 +1,36 @@
+package com.lvt.audioanimationview;
+
+import java.util.Random;
+
+/**
+ * benchmark 输入数据
+ */
+final class BenchmarkSignals {
+  private BenchmarkSignals() {
+  }
+
+  /**
+   * 16 位小端单声道，基频加谐波再叠加噪声，幅度按音节起伏，近似语音
+   *
+   * @param sampleRateInHz 采样率
+   * @param durationMs 时长
+   * @return pcm 数据
+   */
+  static byte[] speechLike(int sampleRateInHz, int durationMs) {
+    final int samples = sampleRateInHz * durationMs / 1000;
+    final byte[] buffer = new byte[samples * 2];
+    final Random random = new Random(42);
+    for (int i = 0; i < samples; i++) {
+      double t = (double) i / sampleRateInHz;
+      double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 4 * t);
+      double voice = Math.sin(2 * Math.PI * 150 * t)
+          + 0.5 * Math.sin(2 * Math.PI * 300 * t)
+          + 0.25 * Math.sin(2 * Math.PI * 450 * t);
+      double value = (voice * envelope * 0.4 + random.nextGaussian() * 0.02) * Short.MAX_VALUE;
+      short sample = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+      buffer[i * 2] = (byte) sample;
+      buffer[i * 2 + 1] = (byte) (sample >> 8);
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,106 @@
+package com.lvt.audioanimationview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 录音线程每个缓冲的处理开销：字节数组路径 与 直接缓冲 short 视图路径
+ * <p>
+ * 读取用一次拷贝模拟 AudioRecord 写入缓冲，之后用电平表测量并分析，不含写文件。
+ * decimated 先降到 {@link #ANALYSIS_SAMPLE_RATE} 再分析，开销应基本不随采样率变化。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CaptureBenchmark {
+  private static final int BAR_COUNT = 20;
+  private static final int ANALYSIS_SAMPLE_RATE = 8000;
+
+  @Param({"16000", "48000"})
+  public int sampleRateInHz;
+  @Param({"10", "80"})
+  public int bufferMs;
+  @Param({"false", "true"})
+  public boolean spectrum;
+
+  private byte[] mSource;
+  private ByteBuffer mDirectSource;
+  private byte[] mBuffer;
+  private ByteBuffer mDirectBuffer;
+  private ShortBuffer mSamples;
+  private AudioAnalyzer mAnalyzer;
+  private PcmDecimator mDecimator;
+  private AudioAnalyzer mDecimatedAnalyzer;
+  private LevelMeter mMeter;
+
+  @Setup
+  public void setup() {
+    mSource = BenchmarkSignals.speechLike(sampleRateInHz, bufferMs);
+    mDirectSource = ByteBuffer.allocateDirect(mSource.length).order(ByteOrder.nativeOrder());
+    mDirectSource.put(mSource).clear();
+    mBuffer = new byte[mSource.length];
+    mDirectBuffer = ByteBuffer.allocateDirect(mSource.length).order(ByteOrder.nativeOrder());
+    mSamples = mDirectBuffer.asShortBuffer().asReadOnlyBuffer();
+    mMeter = new LevelMeter();
+    mMeter.setSampleRate(sampleRateInHz);
+    mAnalyzer = new AudioAnalyzer(BAR_COUNT);
+    if (spectrum) {
+      mAnalyzer.setSpectrumAnalyzer(new SpectrumAnalyzer(512, sampleRateInHz, BAR_COUNT));
+    }
+    mDecimator = new PcmDecimator(sampleRateInHz, ANALYSIS_SAMPLE_RATE, mSource.length / 2);
+    mDecimatedAnalyzer = new AudioAnalyzer(BAR_COUNT);
+    // 与录音时相同，电平以原采样率的测量为准
+    mDecimatedAnalyzer.setSharedLevelMeter(mMeter);
+    if (spectrum) {
+      mDecimatedAnalyzer.setSpectrumAnalyzer(
+          new SpectrumAnalyzer(512, mDecimator.getOutputSampleRate(), BAR_COUNT));
+    }
+  }
+
+  @Benchmark
+  public float bytes() {
+    System.arraycopy(mSource, 0, mBuffer, 0, mSource.length);
+    final int read = mBuffer.length;
+    mAnalyzer.analyze(mBuffer, read);
+    return mAnalyzer.getLevelMeter().getLevel();
+  }
+
+  @Benchmark
+  public float direct() {
+    mDirectSource.clear();
+    mDirectBuffer.clear();
+    mDirectBuffer.put(mDirectSource);
+    final int sampleCount = mDirectBuffer.position() / 2;
+    mAnalyzer.analyze(mSamples, sampleCount);
+    return mAnalyzer.getLevelMeter().getLevel();
+  }
+
+  @Benchmark
+  public float decimated() {
+    mDirectSource.clear();
+    mDirectBuffer.clear();
+    mDirectBuffer.put(mDirectSource);
+    final int sampleCount = mDirectBuffer.position() / 2;
+    mMeter.process(mSamples, sampleCount);
+    final int decimated = mDecimator.process(mSamples, sampleCount);
+    mDecimatedAnalyzer.analyze(mDecimator.getShorts(), decimated);
+    return mMeter.getLevel();
+  }
+}
@@ -0,0 +1,50 @@
+package com.lvt.audioanimationview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个缓冲的频谱分析开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpectrumBenchmark {
+  @Param({"16000", "48000"})
+  public int sampleRateInHz;
+  @Param({"512", "2048"})
+  public int fftSize;
+  @Param({"20", "64"})
+  public int barCount;
+
+  private SpectrumAnalyzer mAnalyzer;
+  private byte[] mBuffer;
+  private float[] mBars;
+
+  @Setup
+  public void setup() {
+    mAnalyzer = new SpectrumAnalyzer(fftSize, sampleRateInHz, barCount);
+    mBuffer = BenchmarkSignals.speechLike(sampleRateInHz, 80);
+    mBars = new float[barCount];
+  }
+
+  @Benchmark
+  public float[] analyze() {
+    mAnalyzer.analyze(mBuffer, mBuffer.length, mBars);
+    return mBars;
+  }
+}
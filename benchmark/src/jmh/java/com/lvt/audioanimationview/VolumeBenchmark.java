@@ -0,0 +1,61 @@
+package com.lvt.audioanimationview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个缓冲的音量计算开销
+ * <p>
+ * barLevels 对应渲染器对所有柱子调用的查表 dBFS 电平，levelMeter 对应录音线程的表头计算，含 VU / PPM 与削波计数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VolumeBenchmark {
+  @Param({"8000", "16000", "48000"})
+  public int sampleRateInHz;
+  @Param({"10", "80"})
+  public int bufferMs;
+  @Param({"20", "64"})
+  public int barCount;
+
+  private byte[] mBuffer;
+  private int mInterval;
+  private LevelMeter mMeter;
+
+  @Setup
+  public void setup() {
+    mBuffer = BenchmarkSignals.speechLike(sampleRateInHz, bufferMs);
+    mInterval = (mBuffer.length / barCount) / 2 * 2;
+    mMeter = new LevelMeter();
+    mMeter.setSampleRate(sampleRateInHz);
+  }
+
+  @Benchmark
+  public void barLevels(Blackhole blackhole) {
+    for (int i = 0; i < barCount; i++) {
+      blackhole.consume(LevelMeter.sliceLevel(mBuffer, i * mInterval, mInterval));
+    }
+  }
+
+  @Benchmark
+  public float levelMeter() {
+    mMeter.process(mBuffer, mBuffer.length);
+    return mMeter.getPpmDb();
+  }
+}
@@ -0,0 +1,70 @@
+package com.lvt.audioanimationview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个缓冲写入 WAV 文件的开销，每轮迭代重新创建文件，结束时回填头部。
+ * adpcm 包含 IMA ADPCM 编码，可与缓冲时长对比确认单核能否实时编码
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WavWriterBenchmark {
+  @Param({"16000", "48000"})
+  public int sampleRateInHz;
+  @Param({"10", "80"})
+  public int bufferMs;
+  @Param({"pcm", "adpcm"})
+  public String format;
+
+  private byte[] mBuffer;
+  private File mFile;
+  private PcmFileWriter mWriter;
+
+  @Setup(Level.Trial)
+  public void createFile() throws IOException {
+    mBuffer = BenchmarkSignals.speechLike(sampleRateInHz, bufferMs);
+    mFile = File.createTempFile("benchmark", ".wav");
+  }
+
+  @Setup(Level.Iteration)
+  public void openWriter() throws IOException {
+    mWriter = "adpcm".equals(format)
+        ? new ImaAdpcmWavWriter(mFile, sampleRateInHz, 1)
+        : new WavFileWriter(mFile, sampleRateInHz, 1, 16);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeWriter() throws IOException {
+    mWriter.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFile() {
+    mFile.delete();
+  }
+
+  @Benchmark
+  public void write() throws IOException {
+    mWriter.write(mBuffer, 0, mBuffer.length);
+  }
+}
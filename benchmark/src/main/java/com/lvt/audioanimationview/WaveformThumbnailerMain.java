@@ -0,0 +1,65 @@
+package com.lvt.audioanimationview;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link WaveformThumbnailer} 的命令行入口，只在 JVM 上运行，不打包进 app
+ * <p>
+ * {@code WaveformThumbnailerMain [-o 输出目录] [-j 线程数] [-bars 柱子数] [-png 宽x高] 目录或文件...}
+ */
+public final class WaveformThumbnailerMain {
+
+  private WaveformThumbnailerMain() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    File outputDirectory = null;
+    int threads = 0;
+    final WaveformThumbnailer.Options.Builder builder = new WaveformThumbnailer.Options.Builder();
+    final List<File> files = new ArrayList<File>();
+    for (int i = 0; i < args.length; i++) {
+      final String arg = args[i];
+      if ("-o".equals(arg) && i + 1 < args.length) {
+        outputDirectory = new File(args[++i]);
+      } else if ("-j".equals(arg) && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if ("-bars".equals(arg) && i + 1 < args.length) {
+        builder.setBarCount(Integer.parseInt(args[++i]));
+      } else if ("-png".equals(arg) && i + 1 < args.length) {
+        final String[] size = args[++i].split("x");
+        builder.setImageSize(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+      } else {
+        final File file = new File(arg);
+        if (file.isDirectory()) {
+          files.addAll(WaveformThumbnailer.listWavFiles(file));
+        } else {
+          files.add(file);
+        }
+      }
+    }
+    if (files.isEmpty()) {
+      System.err.println("usage: WaveformThumbnailerMain [-o dir] [-j threads] [-bars count] [-png WxH] <dir|file>...");
+      System.exit(2);
+    }
+    if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+      throw new IOException("can not create " + outputDirectory);
+    }
+    final WaveformThumbnailer.BatchResult result = new WaveformThumbnailer(builder.build())
+        .generateAll(files, outputDirectory, threads, new WaveformThumbnailer.OnThumbnailListener() {
+          @Override
+          public void onThumbnail(@NonNull File wavFile, @NonNull WaveformThumbnailer.Thumbnail thumbnail) {
+          }
+
+          @Override
+          public void onError(@NonNull File wavFile, @NonNull IOException e) {
+            System.err.println(wavFile + ": " + e.getMessage());
+          }
+        });
+    System.out.println(result);
+  }
+}